@@ -1,6 +1,7 @@
 package com.lenders.app.controller;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,9 +16,12 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Admin;
 import com.lenders.app.persistence.AdminDAO;
+import com.lenders.app.persistence.Checkpointer;
 
 @RestController
 @RequestMapping("admin")
@@ -25,9 +29,13 @@ public class AdminController {
     private static final Logger LOG = Logger.getLogger(AdminController.class.getName());
 
     private AdminDAO adminDAO;
+    private Checkpointer checkpointer;
+    private JsonArrayStream arrays;
 
-    public AdminController(AdminDAO adminDAO) {
+    public AdminController(AdminDAO adminDAO, Checkpointer checkpointer, ObjectMapper objectMapper) {
         this.adminDAO = adminDAO;
+        this.checkpointer = checkpointer;
+        this.arrays = new JsonArrayStream(objectMapper);
     }
 
     @PostMapping("/create")
@@ -78,10 +86,16 @@ public class AdminController {
     }
 
     @GetMapping("/allAdmins")
-    public ResponseEntity<Admin[]> getAllAdmins() throws IOException {
+    public ResponseEntity<StreamingResponseBody> getAllAdmins() throws IOException {
         LOG.info("get /addAdmins");
         Admin[] admins = adminDAO.getAllAdmins();
-        return new ResponseEntity<>(admins, HttpStatus.OK);
+        return arrays.of(admins);
+    }
+
+    @GetMapping("/checkpoints")
+    public ResponseEntity<List<Checkpointer.Stats>> getCheckpoints() {
+        LOG.info("GET /checkpoints");
+        return new ResponseEntity<>(checkpointer.stats(), HttpStatus.OK);
     }
 
     @GetMapping("/get/{id}")
@@ -15,7 +15,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Buyer;
 import com.lenders.app.persistence.BuyerDAO;
 
@@ -24,9 +26,11 @@ import com.lenders.app.persistence.BuyerDAO;
 public class BuyerController {
     private static final Logger LOG = Logger.getLogger(BuyerController.class.getName());
     private BuyerDAO buyerDAO;
+    private JsonArrayStream arrays;
 
-    public BuyerController(BuyerDAO buyerDAO) {
+    public BuyerController(BuyerDAO buyerDAO, ObjectMapper objectMapper) {
         this.buyerDAO = buyerDAO;
+        this.arrays = new JsonArrayStream(objectMapper);
     }
 
     @PostMapping("/create")
@@ -61,10 +65,10 @@ public class BuyerController {
     }
 
     @GetMapping("/allBuyers")
-    public ResponseEntity<Buyer[]> getAllBuyers() throws IOException {
+    public ResponseEntity<StreamingResponseBody> getAllBuyers() throws IOException {
         LOG.info("GET /allBuyers");
         Buyer[] buyers = buyerDAO.getAllBuyers();
-        return new ResponseEntity<>(buyers, HttpStatus.OK);
+        return arrays.of(buyers);
     }
 
     @GetMapping("/get/{id}")
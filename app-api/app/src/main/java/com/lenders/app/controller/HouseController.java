@@ -1,10 +1,14 @@
 package com.lenders.app.controller;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,9 +20,17 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.ApplicationApproval;
+import com.lenders.app.model.ApprovalResult;
 import com.lenders.app.model.House;
+import com.lenders.app.persistence.HouseAutocomplete;
 import com.lenders.app.persistence.HouseDAO;
+import com.lenders.app.persistence.HouseField;
+import com.lenders.app.persistence.HousePage;
+import com.lenders.app.persistence.HouseQuery;
 
 
 /**
@@ -34,25 +46,28 @@ public class HouseController {
 
     private HouseDAO houseDAO;
 
+    private JsonArrayStream arrays;
 
-    public HouseController(HouseDAO houseDAO) {
+
+    public HouseController(HouseDAO houseDAO, ObjectMapper objectMapper) {
         this.houseDAO = houseDAO;
+        this.arrays = new JsonArrayStream(objectMapper);
     }
 
 
     @GetMapping("/allHouses")
-    public ResponseEntity<House[]> getAllHouses() throws IOException{
+    public ResponseEntity<StreamingResponseBody> getAllHouses() throws IOException{
         LOG.info("GET /allHouses");
         House[] houses = houseDAO.getHouses();
-        return new ResponseEntity<>(houses, HttpStatus.OK);
+        return arrays.of(houses);
     
     }
 
     @GetMapping("/allApplications")
-    public ResponseEntity<House[]> getAllApps() throws IOException {
+    public ResponseEntity<StreamingResponseBody> getAllApps() throws IOException {
         LOG.info("GET /allApplications");
         House[] houses = houseDAO.getApplHouses();
-        return new ResponseEntity<>(houses, HttpStatus.OK);
+        return arrays.of(houses);
     }
 
     @GetMapping("/getHouse/{id}")
@@ -124,6 +139,26 @@ public class HouseController {
         }
     }
 
+    @PostMapping("/acceptedHouses")
+    public ResponseEntity<List<ApprovalResult>> acceptHouses(@RequestBody List<ApplicationApproval> approvals) {
+        LOG.info("POST /acceptedHouses " + approvals.size() + " applications");
+        if (approvals.contains(null)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST); // a null entry names no application
+        }
+        try {
+            House[] accepted = houseDAO.acceptApplications(approvals);
+            List<ApprovalResult> results = new ArrayList<>(accepted.length);
+            for (int i = 0; i < accepted.length; i++) {
+                HttpStatus status = accepted[i] != null ? HttpStatus.CREATED : HttpStatus.NOT_FOUND;
+                results.add(new ApprovalResult(approvals.get(i).getApplId(), status.value(), accepted[i]));
+            }
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE,e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @DeleteMapping("/declinedHouse/{id}") 
     public ResponseEntity<House> declineHouse(@PathVariable int id) {
         LOG.info("DELETE /declinedHouse/" + id);
@@ -172,5 +207,122 @@ public class HouseController {
         }
     }
 
-    // TODO search feature for houses, learn how to
+    @GetMapping("/search")
+    public ResponseEntity<StreamingResponseBody> searchHouses(@RequestParam(required = false) String city,
+            @RequestParam(required = false) Integer zipcode,
+            @RequestParam(required = false) List<House.Condition> condition,
+            @RequestParam(name = "exit_strategy", required = false) List<House.ExitStrategy> exitStrategy,
+            @RequestParam(required = false) List<House.Type> unitType,
+            @RequestParam(required = false) List<String> min,
+            @RequestParam(required = false) List<String> max,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "2147483647") int limit) {
+        // an enum parameter given several times, or as a comma separated list, matches any of its values;
+        // min and max are field:value pairs, sort is a field with a leading - for highest first
+        // and after is the X-Next-After header of the previous page
+        HouseQuery query;
+        HousePage page;
+        try {
+            query = new HouseQuery(city, zipcode, anyOf(condition), anyOf(exitStrategy), anyOf(unitType),
+                    ranges(min, max));
+            page = page(sort, after, limit);
+        } catch (IllegalArgumentException e) {
+            LOG.warning("GET /search " + e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        LOG.info("GET /search " + query + " " + page);
+        try {
+            House[] houses = houseDAO.searchHouses(query, page);
+            HttpHeaders headers = new HttpHeaders();
+            if (houses.length > 0 && houses.length == limit) {
+                House last = houses[houses.length - 1];
+                headers.set("X-Next-After", page.orderBy() == null ? Integer.toString(last.getId())
+                        : page.orderBy().format(page.orderBy().value(last)) + "," + last.getId());
+            }
+            return arrays.of(houses, headers);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE,e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/find")
+    public ResponseEntity<StreamingResponseBody> findHouses(@RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        LOG.info("GET /find?q=" + q);
+        try {
+            return arrays.of(houseDAO.findHouses(q, limit));
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE,e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/findApplications")
+    public ResponseEntity<StreamingResponseBody> findApplications(@RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        LOG.info("GET /findApplications?q=" + q);
+        try {
+            return arrays.of(houseDAO.findApplications(q, limit));
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE,e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/autocomplete")
+    public ResponseEntity<HouseAutocomplete.Suggestion[]> autocomplete(@RequestParam String field,
+            @RequestParam String prefix, @RequestParam(defaultValue = "5") int limit) {
+        // called on every keystroke, so not logged
+        try {
+            if ("city".equals(field)) {
+                return new ResponseEntity<>(houseDAO.completeCity(prefix, limit), HttpStatus.OK);
+            }
+            if ("address".equals(field)) {
+                return new ResponseEntity<>(houseDAO.completeAddress(prefix, limit), HttpStatus.OK);
+            }
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE,e.getLocalizedMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static List<HouseQuery.Range> ranges(List<String> min, List<String> max) {
+        List<HouseQuery.Range> ranges = new ArrayList<>();
+        for (String bound : min == null ? List.<String>of() : min) {
+            HouseField field = HouseField.of(bound.substring(0, Math.max(bound.indexOf(':'), 0)));
+            ranges.add(new HouseQuery.Range(field, field.parse(bound.substring(bound.indexOf(':') + 1)), null));
+        }
+        for (String bound : max == null ? List.<String>of() : max) {
+            HouseField field = HouseField.of(bound.substring(0, Math.max(bound.indexOf(':'), 0)));
+            ranges.add(new HouseQuery.Range(field, null, field.parse(bound.substring(bound.indexOf(':') + 1))));
+        }
+        return ranges;
+    }
+
+    private static HousePage page(String sort, String after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Not a page size: " + limit);
+        }
+        if (sort == null) {
+            return new HousePage(null, false, null, after == null ? null : Integer.valueOf(after), limit);
+        }
+        boolean descending = sort.startsWith("-");
+        HouseField field = HouseField.of(descending ? sort.substring(1) : sort);
+        if (after == null) {
+            return new HousePage(field, descending, null, null, limit);
+        }
+        int comma = after.lastIndexOf(',');
+        if (comma < 0) {
+            return new HousePage(field, descending, field.parse(after), null, limit);
+        }
+        return new HousePage(field, descending, field.parse(after.substring(0, comma)),
+                Integer.valueOf(after.substring(comma + 1)), limit);
+    }
+
+    private static <E> Set<E> anyOf(List<E> values) {
+        return values == null ? null : Set.copyOf(values);
+    }
 }
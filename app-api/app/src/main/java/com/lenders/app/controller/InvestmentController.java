@@ -1,6 +1,9 @@
 package com.lenders.app.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -13,10 +16,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Investment;
 import com.lenders.app.persistence.InvestmentDAO;
+import com.lenders.app.persistence.InvestmentExporter;
+import com.lenders.app.persistence.InvestmentImporter;
 
 /**
  * Controller to handle all actions to be done with investments.
@@ -31,16 +39,26 @@ public class InvestmentController {
 
         private InvestmentDAO investmentDAO;
 
-        public InvestmentController (InvestmentDAO investmentDAO) {
+        private InvestmentImporter investmentImporter;
+
+        private InvestmentExporter investmentExporter;
+
+        private JsonArrayStream arrays;
+
+        public InvestmentController (InvestmentDAO investmentDAO, InvestmentImporter investmentImporter,
+                InvestmentExporter investmentExporter, ObjectMapper objectMapper) {
             this.investmentDAO = investmentDAO;
+            this.investmentImporter = investmentImporter;
+            this.investmentExporter = investmentExporter;
+            this.arrays = new JsonArrayStream(objectMapper);
         }
 
         @GetMapping("/allInvestments")
-        public ResponseEntity<Investment[]> getAllInvestments() throws IOException {
+        public ResponseEntity<StreamingResponseBody> getAllInvestments() throws IOException {
             LOG.info("GET /allInvestments");
             Investment[] investments = investmentDAO.getInvestments();
 
-            return new ResponseEntity<>(investments, HttpStatus.OK);
+            return arrays.of(investments);
         }
 
         @PostMapping("/newInvestment")
@@ -58,6 +76,34 @@ public class InvestmentController {
             }   
         }
 
+        @PostMapping(value = "/import", consumes = "application/x-ndjson")
+        public ResponseEntity<InvestmentImporter.Result> importInvestments(InputStream body) {
+            LOG.info("POST /import");
+            try {
+                InvestmentImporter.Result result = investmentImporter.importInvestments(body);
+                return new ResponseEntity<>(result, HttpStatus.OK);
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE,e.getLocalizedMessage());
+                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }
+
+        @GetMapping(value = "/export", produces = "application/x-ndjson")
+        public ResponseEntity<StreamingResponseBody> exportInvestments(@RequestParam(required = false) Integer user,
+                @RequestParam(required = false) Integer house, @RequestParam(required = false) String from,
+                @RequestParam(required = false) String to) {
+            LOG.info("GET /export user=" + user + " house=" + house + " from=" + from + " to=" + to);
+            try {
+                // normalized so the dates compare with the stored ISO dates
+                String fromDate = from == null ? null : LocalDate.parse(from).toString();
+                String toDate = to == null ? null : LocalDate.parse(to).toString();
+                InvestmentExporter.Filter filter = new InvestmentExporter.Filter(user, house, fromDate, toDate);
+                return new ResponseEntity<>(out -> investmentExporter.export(filter, out), HttpStatus.OK);
+            } catch (DateTimeParseException e) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+        }
+
         @GetMapping("/users/{uid}")
         public ResponseEntity<Investment[]> getUserInvestments(@PathVariable int uid) {
             LOG.info("GET /users/" + uid);
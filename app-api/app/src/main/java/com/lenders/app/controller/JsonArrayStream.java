@@ -0,0 +1,69 @@
+package com.lenders.app.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Builds list responses that write a JSON array to the client one element at a time.
+ * The DAOs hand out shared snapshot arrays, so nothing is copied per request; the elements
+ * are serialized straight into the response and flushed every few hundred elements, so the
+ * first bytes go out as soon as the first elements are written rather than once the whole
+ * array has been serialized.
+ *
+ * @author Matthew Morrison
+ */
+public class JsonArrayStream {
+
+    private static final int FLUSH_EVERY = 256; // elements written between flushes to the client
+
+    private final ObjectWriter writer;
+
+    /**
+     * Create the builder
+     * @param objectMapper the object mapper between the records and JSON
+     */
+    public JsonArrayStream(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Create a response that streams an array as a JSON array
+     * @param values the records to write, must not be modified while the response is written
+     * @return the response with status 200
+     */
+    public <T> ResponseEntity<StreamingResponseBody> of(T[] values) {
+        return of(values, HttpHeaders.EMPTY);
+    }
+
+    /**
+     * Create a response that streams an array as a JSON array
+     * @param values the records to write, must not be modified while the response is written
+     * @param headers extra headers of the response
+     * @return the response with status 200
+     */
+    public <T> ResponseEntity<StreamingResponseBody> of(T[] values, HttpHeaders headers) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = writer.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                gen.writeStartArray();
+                for (int i = 0; i < values.length; i++) {
+                    writer.writeValue(gen, values[i]);
+                    if (i % FLUSH_EVERY == FLUSH_EVERY - 1) {
+                        gen.flush();
+                    }
+                }
+                gen.writeEndArray();
+            }
+        };
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
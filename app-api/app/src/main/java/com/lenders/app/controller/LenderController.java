@@ -15,7 +15,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Lender;
 import com.lenders.app.persistence.LenderDAO;
 
@@ -24,9 +26,11 @@ import com.lenders.app.persistence.LenderDAO;
 public class LenderController {
     private static final Logger LOG = Logger.getLogger(LenderController.class.getName());
     private LenderDAO lenderDAO;
+    private JsonArrayStream arrays;
 
-    public LenderController(LenderDAO lenderDAO) {
+    public LenderController(LenderDAO lenderDAO, ObjectMapper objectMapper) {
         this.lenderDAO = lenderDAO;
+        this.arrays = new JsonArrayStream(objectMapper);
     }
 
     @PostMapping("/create")
@@ -60,10 +64,10 @@ public class LenderController {
     }
 
     @GetMapping("/allLenders")
-    public ResponseEntity<Lender[]> getAllLenders() throws IOException {
+    public ResponseEntity<StreamingResponseBody> getAllLenders() throws IOException {
         LOG.info("GET /allLenders");
         Lender[] lenders = lenderDAO.getAllLenders();
-        return new ResponseEntity<>(lenders, HttpStatus.OK);
+        return arrays.of(lenders);
     }
 
     @GetMapping("/get/{id}")
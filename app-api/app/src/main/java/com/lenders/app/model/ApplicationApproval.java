@@ -0,0 +1,37 @@
+package com.lenders.app.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Represents one house application approved by an admin, together with the interest
+ * the accepted house is given
+ *
+ * @author Matthew Morrison
+ */
+public class ApplicationApproval {
+
+    @JsonProperty("applId") private int applId;
+    @JsonProperty("interest") private float interest;
+
+    public ApplicationApproval(@JsonProperty("applId") int applId,
+                               @JsonProperty("interest") float interest) {
+        this.applId = applId;
+        this.interest = interest;
+    }
+
+    /**
+     * Get the id of the approved house application
+     * @return the application's id
+     */
+    public int getApplId() {
+        return applId;
+    }
+
+    /**
+     * Get the interest of the accepted house
+     * @return the interest
+     */
+    public float getInterest() {
+        return interest;
+    }
+}
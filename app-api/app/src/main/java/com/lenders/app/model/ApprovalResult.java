@@ -0,0 +1,47 @@
+package com.lenders.app.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Represents the outcome of one {@linkplain ApplicationApproval approval} in a batch
+ *
+ * @author Matthew Morrison
+ */
+public class ApprovalResult {
+
+    @JsonProperty("applId") private int applId;
+    @JsonProperty("status") private int status;
+    @JsonProperty("house") private House house;
+
+    public ApprovalResult(@JsonProperty("applId") int applId,
+                          @JsonProperty("status") int status,
+                          @JsonProperty("house") House house) {
+        this.applId = applId;
+        this.status = status;
+        this.house = house;
+    }
+
+    /**
+     * Get the id of the house application
+     * @return the application's id
+     */
+    public int getApplId() {
+        return applId;
+    }
+
+    /**
+     * Get the HTTP status of the approval, 201 if the house was created, 404 if the application was not found
+     * @return the status code
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the house created from the application
+     * @return the new house, null if the application was not accepted
+     */
+    public House getHouse() {
+        return house;
+    }
+}
@@ -32,7 +32,8 @@ public interface AdminDAO {
 
     /**
      * Get all {@linkplain Admin Admins} from the ststem
-     * @return an array of all admins, empty if none exist (should never happen though)
+     * @return a shared array of all admins, empty if none exist (should never happen though).
+     * The array is reused between calls and must not be modified
      */
     Admin[] getAllAdmins();
 
@@ -1,13 +1,13 @@
 package com.lenders.app.persistence;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.TreeMap;
+import java.io.UncheckedIOException;
 import java.util.logging.Logger;
 import java.io.File;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Admin;
@@ -17,12 +17,14 @@ import com.lenders.app.model.Admin;
  * 
  * @author Matthew Morrison
  */
+@Component
+@Profile("!embedded")
 public class AdminFileDAO implements AdminDAO {
 
 
     private static final Logger LOG = Logger.getLogger(AdminFileDAO.class.getName());
     
-    Map<Integer, Admin> admins;
+    LazyCollection<Admin> admins; // read from the file on first use
 
     private ObjectMapper objectMapper;
 
@@ -30,10 +32,27 @@ public class AdminFileDAO implements AdminDAO {
 
     private String filename;
 
-    public AdminFileDAO(@Value("${admins.file}") String filename, ObjectMapper objectMapper) throws IOException{
+    private SegmentedStore<Admin> segments; // rewrites only changed segments, null when the whole file is rewritten
+
+    /**
+     * Constructor to instantiate the AdminFileDAO. The admins are only read from the file
+     * the first time they are used
+     * @param filename the filename containing all admin info
+     * @param objectMapper the object mapper between Admin objects and JSON
+     * @param segmented true to store the admins in segments and only rewrite the changed ones
+     * @param idleMillis how long the admins may go unused before they are dropped from memory, 0 to keep them
+     * @throws IOException if an error occurs when instantiating the file
+     */
+    public AdminFileDAO(@Value("${admins.file}") String filename, ObjectMapper objectMapper,
+    @Value("${admins.segmented.enabled:false}") boolean segmented,
+    @Value("${admins.cache.idleMillis:600000}") long idleMillis) throws IOException{
         this.filename = filename;
         this.objectMapper = objectMapper;
-        load();
+        if (segmented) {
+            segments = new SegmentedStore<>(filename, objectMapper, Admin[].class, Admin::getId,
+                    SegmentedStore.DEFAULT_SEGMENT_SIZE);
+        }
+        admins = new LazyCollection<>("admins", idleMillis, this::load, this::release);
     }
 
     /**
@@ -47,38 +66,69 @@ public class AdminFileDAO implements AdminDAO {
     }
 
     /**
-     * Load all info on the admin file
-     *
+     * Get the admins, reading them from the file if they are not in memory.
+     * Must be called while holding the lock of this DAO
+     * @return the map of all admins
      * @throws IOException if an error occurs when reading the file
      */
-    private void load() throws IOException {
-        admins = new TreeMap<>();
-        nextId = 0;
-
-        Admin[] adminArray = objectMapper.readValue(new File(filename), Admin[].class);
+    private IdMap<Admin> admins() throws IOException {
+        return admins.get();
+    }
 
-        for (Admin admin: adminArray) {
-            admins.put(admin.getId(), admin);
+    /**
+     * Drop the admins from memory if they have not been used for a while.
+     * Every change has already been written by the time the lock is released
+     */
+    private synchronized void release() {
+        admins.releaseIfIdle();
+    }
 
-            if (admin.getId() > nextId) {
-                nextId = admin.getId();
+    /**
+     * Load all info on the admin file
+     *
+     * @return the map of all admins
+     * @throws IOException if an error occurs when reading the file
+     */
+    private IdMap<Admin> load() throws IOException {
+        IdMap<Admin> admins = new IdMap<>();
+
+        if (segments != null && segments.exists()) {
+            segments.load(admins);
+        } else {
+            File file = new File(filename);
+            Admin[] adminArray = file.length() == 0 ? new Admin[0] : objectMapper.readValue(file, Admin[].class);
+            for (Admin admin: adminArray) {
+                admins.put(admin.getId(), admin);
+            }
+            if (segments != null) {
+                // first start in segmented mode, split the file into segments
+                segments.markAllDirty(admins);
+                segments.write(segments.collect(admins));
             }
         }
 
-        ++nextId;
-
+        // keep counting up after a reload, so the ids of deleted admins are not handed out again
+        nextId = Math.max(nextId, Math.max(admins.maxKey(), 0) + 1);
+        return admins;
     }
 
     /**
-     * Saves the user map into the file as an array of JSON objects
+     * Saves the user map into the file as an array of JSON objects,
+     * or only its changed segments when the records are stored in segments
      *
+     * @param id the id of the changed admin
      * @return true if the admins were written successfully
      *
      * @throws IOException when file cannot be accessed or written to
      */
-    private boolean save() throws IOException {
-        Admin[] admins = getAllAdmins();
-        objectMapper.writeValue(new File(filename), admins);
+    private boolean save(int id) throws IOException {
+        if (segments != null) {
+            segments.markDirty(id);
+            segments.write(segments.collect(admins()));
+            return true;
+        }
+        Admin[] admins = admins().snapshot(Admin[]::new);
+        Checkpointer.writeAtomically(new File(filename), f -> objectMapper.writeValue(f, admins));
         return true;
     }
 
@@ -94,11 +144,12 @@ public class AdminFileDAO implements AdminDAO {
     @Override
     public Admin createAdmin(String password, String email, String phone_number) throws IOException {
 
-        synchronized (admins) {
+        synchronized (this) {
+            IdMap<Admin> admins = admins();
             int id = getNextId();
             Admin newAdmin = new Admin(id, password, email, phone_number);
             admins.put(id, newAdmin);
-            save();
+            save(id);
             return newAdmin;
         }
     }
@@ -112,10 +163,11 @@ public class AdminFileDAO implements AdminDAO {
     @Override
     public boolean deleteAdmin(int id) throws IOException {
 
-        synchronized (admins) {
+        synchronized (this) {
+            IdMap<Admin> admins = admins();
             if (admins.containsKey(id)) {
                 admins.remove(id);
-                return save();
+                return save(id);
             }
             return false;
         }
@@ -127,12 +179,13 @@ public class AdminFileDAO implements AdminDAO {
      */
     @Override
     public Admin[] getAllAdmins() {
-        ArrayList<Admin> adminArrayList = new ArrayList<>(admins.values());
-
-        Admin[] adminList = new Admin[adminArrayList.size()];
-        adminArrayList.toArray(adminList);
-        return adminList;
-
+        synchronized (this) {
+            try {
+                return admins().snapshot(Admin[]::new);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     /**
@@ -143,8 +196,9 @@ public class AdminFileDAO implements AdminDAO {
      */
     @Override
     public Admin getAdmin(int id) throws IOException {
-        synchronized (admins) {
-            return admins.getOrDefault(id, null);
+        synchronized (this) {
+            IdMap<Admin> admins = admins();
+            return admins.get(id);
         }
     }
 
@@ -158,7 +212,8 @@ public class AdminFileDAO implements AdminDAO {
      */
     @Override
     public Admin updatePassword(int id, String oldPassword, String newPassword) throws IOException {
-        synchronized (admins) {
+        synchronized (this) {
+            IdMap<Admin> admins = admins();
             if(!admins.containsKey(id)) {
                 return null;
             }
@@ -173,7 +228,7 @@ public class AdminFileDAO implements AdminDAO {
 
             a.setPassword(newPassword);
             admins.put(id, a);
-            save();
+            save(id);
             return a;
         }
     }
@@ -187,7 +242,8 @@ public class AdminFileDAO implements AdminDAO {
      */
     @Override
     public Admin updateEmail(int id, String newEmail) throws IOException {
-        synchronized (admins) {
+        synchronized (this) {
+            IdMap<Admin> admins = admins();
             if(!admins.containsKey(id)) {
                 return null;
             }
@@ -196,7 +252,7 @@ public class AdminFileDAO implements AdminDAO {
 
             a.setEmail(newEmail);
             admins.put(id, a);
-            save();
+            save(id);
             return a;
         }
     }
@@ -210,7 +266,8 @@ public class AdminFileDAO implements AdminDAO {
      */
     @Override
     public Admin updatePhoneNum(int id, String newNumber) throws IOException {
-        synchronized (admins) {
+        synchronized (this) {
+            IdMap<Admin> admins = admins();
             if(!admins.containsKey(id)) {
                 return null;
             }
@@ -219,20 +276,21 @@ public class AdminFileDAO implements AdminDAO {
 
             a.setPhone_number(newNumber);
             admins.put(id, a);
-            save();
+            save(id);
             return a;
         }
     }
 
     @Override
     public Admin updateAdminInfo(int id, Admin updatedAdmin) throws IOException {
-        synchronized (admins) {
+        synchronized (this) {
+            IdMap<Admin> admins = admins();
             if(!admins.containsKey(id)) {
                 return null;
             }
 
             admins.put(id, updatedAdmin);
-            save();
+            save(id);
             return updatedAdmin;
         }
     }
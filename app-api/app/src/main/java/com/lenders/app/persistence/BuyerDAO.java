@@ -41,7 +41,8 @@ public interface BuyerDAO {
 
     /**
      * Get all {@linkplain Buyer Buyers} from the system
-     * @return an array of all buyers, empty if none exist
+     * @return a shared array of all buyers, empty if none exist.
+     * The array is reused between calls and must not be modified
      */
     Buyer[] getAllBuyers();
 
@@ -2,12 +2,13 @@ package com.lenders.app.persistence;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Buyer;
@@ -17,11 +18,13 @@ import com.lenders.app.model.Buyer;
  * 
  * @author Matthew Morrison
  */
+@Component
+@Profile("!embedded")
 public class BuyerFileDAO implements BuyerDAO {
 
     private static final Logger LOG = Logger.getLogger(BuyerFileDAO.class.getName());
     
-    Map<Integer, Buyer> buyers;
+    IdMap<Buyer> buyers;
 
     private ObjectMapper objectMapper;
 
@@ -29,10 +32,40 @@ public class BuyerFileDAO implements BuyerDAO {
 
     private String filename;
 
-    public BuyerFileDAO(@Value("${buyers.file}") String filename, ObjectMapper objectMapper) throws IOException {
+    private GroupCommitWriter groupCommit; // batches saves, null when every save is written synchronously
+
+    private SegmentedStore<Buyer> segments; // rewrites only changed segments, null when the whole file is rewritten
+
+    /**
+     * Constructor to instantiate the BuyerFileDAO
+     * @param filename the filename containing all buyer info
+     * @param objectMapper the object mapper between Buyer objects and JSON
+     * @param groupCommitEnabled true to batch concurrent saves into a single background write
+     * @param groupCommitInterval milliseconds between background writes
+     * @param segmented true to store the buyers in segments and only rewrite the changed ones
+     * @param startupLoader loads the file in parallel with the other DAOs during startup,
+     * null to load it before the constructor returns
+     * @throws IOException if an error occurs when instantiating the file
+     */
+    public BuyerFileDAO(@Value("${buyers.file}") String filename, ObjectMapper objectMapper,
+    @Value("${buyers.groupCommit.enabled:false}") boolean groupCommitEnabled,
+    @Value("${buyers.groupCommit.intervalMillis:5}") long groupCommitInterval,
+    @Value("${buyers.segmented.enabled:false}") boolean segmented,
+    StartupLoader startupLoader) throws IOException {
         this.filename = filename;
         this.objectMapper = objectMapper;
-        load();
+        if (segmented) {
+            segments = new SegmentedStore<>(filename, objectMapper, Buyer[].class, Buyer::getId,
+                    SegmentedStore.DEFAULT_SEGMENT_SIZE);
+        }
+        if (startupLoader == null) {
+            load();
+        } else {
+            startupLoader.load("buyers", this::load);
+        }
+        if (groupCommitEnabled) {
+            groupCommit = new GroupCommitWriter("buyers-group-commit", groupCommitInterval, this::flush);
+        }
     }
 
         /**
@@ -51,36 +84,86 @@ public class BuyerFileDAO implements BuyerDAO {
      * @throws IOException if an error occurs when reading the file
      */
     private void load() throws IOException {
-        buyers = new TreeMap<>();
+        buyers = new IdMap<>();
         nextId = 0;
 
-        Buyer[] buyerArray = objectMapper.readValue(new File(filename), Buyer[].class);
-
-        for (Buyer buyer: buyerArray) {
-            buyers.put(buyer.getId(), buyer);
-
-            if (buyer.getId() > nextId) {
-                nextId = buyer.getId();
+        if (segments != null && segments.exists()) {
+            segments.load(buyers);
+        } else {
+            File file = new File(filename);
+            Buyer[] buyerArray = file.length() == 0 ? new Buyer[0] : objectMapper.readValue(file, Buyer[].class);
+            for (Buyer buyer: buyerArray) {
+                buyers.put(buyer.getId(), buyer);
+            }
+            if (segments != null) {
+                // first start in segmented mode, split the file into segments
+                segments.markAllDirty(buyers);
+                segments.write(segments.collect(buyers));
             }
         }
 
+        nextId = Math.max(buyers.maxKey(), 0);
         ++nextId;
 
     }
 
     /**
-     * Saves the user map into the file as an array of JSON objects
+     * Saves the user map into the file as an array of JSON objects,
+     * or only its changed segments when the records are stored in segments
      *
      * @return true if the buyers were written successfully
      *
      * @throws IOException when file cannot be accessed or written to
      */
     private boolean save() throws IOException {
+        if (segments != null) {
+            segments.write(segments.collect(buyers));
+            return true;
+        }
         Buyer[] buyers = getAllBuyers();
-        objectMapper.writeValue(new File(filename), buyers);
+        Checkpointer.writeAtomically(new File(filename), f -> objectMapper.writeValue(f, buyers));
         return true;
     }
 
+    /**
+     * Takes a snapshot of the buyer map and writes it outside of the lock, used by the group commit writer
+     *
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private void flush() throws IOException {
+        if (segments != null) {
+            List<SegmentedStore.Segment<Buyer>> changed;
+            synchronized (buyers) {
+                changed = segments.collect(buyers);
+            }
+            segments.write(changed);
+            return;
+        }
+        Buyer[] snapshot = getAllBuyers();
+        Checkpointer.writeAtomically(new File(filename), f -> objectMapper.writeValue(f, snapshot));
+    }
+
+    /**
+     * Request that the buyer map be saved. Must be called while holding the lock on the map.
+     * With group commit the returned future completes once a background write includes
+     * the change, otherwise the file is written before returning
+     *
+     * @param id the id of the changed buyer
+     * @return a future to wait on, outside of the lock, until the change is saved
+     *
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private CompletableFuture<Void> requestSave(int id) throws IOException {
+        if (segments != null) {
+            segments.markDirty(id);
+        }
+        if (groupCommit == null) {
+            save();
+            return CompletableFuture.completedFuture(null);
+        }
+        return groupCommit.commit();
+    }
+
     /**
      * Create and save a new {@linkplain Buyer Buyer} to the system
      * @param password password of the buyer account
@@ -99,13 +182,16 @@ public class BuyerFileDAO implements BuyerDAO {
     @Override
     public Buyer createBuyer(String password, String fn, String ln, String ssn, String email, String number,
             String business_name, int num_units, int num_deals_complete, int num_flips_complete) throws IOException {
+        Buyer newB;
+        CompletableFuture<Void> saved;
         synchronized (buyers) {
             int id = getNextId();
-            Buyer newB = new Buyer(id, password, fn, ln, ssn, email, number, business_name, num_units, num_deals_complete, num_flips_complete);
+            newB = new Buyer(id, password, fn, ln, ssn, email, number, business_name, num_units, num_deals_complete, num_flips_complete);
             buyers.put(id, newB);
-            save();
-            return newB;
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return newB;
     }
 
     /**
@@ -116,13 +202,16 @@ public class BuyerFileDAO implements BuyerDAO {
      */
     @Override
     public Buyer createBuyer(Buyer buyer) throws IOException {
+        Buyer b;
+        CompletableFuture<Void> saved;
         synchronized (buyers) {
-            Buyer b = new Buyer(buyer.getId(), buyer.getPassword(), buyer.getFirstName(), buyer.getLast_name(), buyer.getSsn(), 
+            b = new Buyer(buyer.getId(), buyer.getPassword(), buyer.getFirstName(), buyer.getLast_name(), buyer.getSsn(), 
             buyer.getEmail(), buyer.getPhone_number(), buyer.getBusiness_name(), buyer.getNum_units(), buyer.getNum_deals_complete(), buyer.getNum_flips_complete());
             buyers.put(b.getId(), b);
-            save();
-            return b;
+            saved = requestSave(b.getId());
         }
+        GroupCommitWriter.await(saved);
+        return b;
     }
 
     /**
@@ -133,13 +222,16 @@ public class BuyerFileDAO implements BuyerDAO {
      */
     @Override
     public boolean deleteBuyer(int id) throws IOException {
+        CompletableFuture<Void> saved;
         synchronized (buyers) {
-            if (buyers.containsKey(id)) {
-                buyers.remove(id);
-                return save();
+            if (!buyers.containsKey(id)) {
+                return false;
             }
-            return false;
+            buyers.remove(id);
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return true;
     }
 
     /**
@@ -152,12 +244,14 @@ public class BuyerFileDAO implements BuyerDAO {
      */
     @Override
     public Buyer updatePassword(int id, String oldPassword, String newPassword) throws IOException {
+        Buyer b;
+        CompletableFuture<Void> saved;
         synchronized (buyers) {
             if(!buyers.containsKey(id)) {
                 return null;
             }
 
-            Buyer b = getBuyer(id);
+            b = getBuyer(id);
             String oldPass = b.getPassword();
 
             // TODO find way to check if password is wrong vs admin does not exist
@@ -167,9 +261,10 @@ public class BuyerFileDAO implements BuyerDAO {
 
             b.setPassword(newPassword);
             buyers.put(id, b);
-            save();
-            return b;
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return b;
     }
 
     /**
@@ -181,15 +276,17 @@ public class BuyerFileDAO implements BuyerDAO {
      */
     @Override
     public Buyer updateBuyerInfo(int id, Buyer newBuyerInfo) throws IOException {
+        CompletableFuture<Void> saved;
         synchronized (buyers) {
             if (!buyers.containsKey(id)) {
                 return null;
             }
 
             buyers.put(id, newBuyerInfo);
-            save();
-            return newBuyerInfo;
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return newBuyerInfo;
     }
 
     /**
@@ -198,11 +295,9 @@ public class BuyerFileDAO implements BuyerDAO {
      */
     @Override
     public Buyer[] getAllBuyers() {
-        ArrayList<Buyer> buyerArrayList = new ArrayList<>(buyers.values());
-
-        Buyer[] buyerList = new Buyer[buyerArrayList.size()];
-        buyerArrayList.toArray(buyerList);
-        return buyerList;
+        synchronized (buyers) {
+            return buyers.snapshot(Buyer[]::new);
+        }
     }
 
     /**
@@ -214,7 +309,7 @@ public class BuyerFileDAO implements BuyerDAO {
     @Override
     public Buyer getBuyer(int id) throws IOException {
         synchronized (buyers) {
-            return buyers.getOrDefault(id, null);
+            return buyers.get(id);
         }
     }
     
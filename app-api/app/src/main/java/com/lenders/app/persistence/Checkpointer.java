@@ -0,0 +1,219 @@
+package com.lenders.app.persistence;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Folds the {@linkplain Journal journals} of the DAOs back into their data files on a
+ * background thread, so request threads only ever append to a journal.
+ * <p>
+ * A DAO registers its journal together with a task that takes a point-in-time snapshot of
+ * its maps, {@linkplain Journal#rotate() rotates} the journal, writes the snapshot without
+ * holding its locks and then {@linkplain Journal#finishCheckpoint() drops} the rotated entries.
+ * The checkpointer checks every journal a few times a second and runs that task once the
+ * journal holds too many entries, grows too large, or its oldest entry has waited too long.
+ * A checkpoint that failed is retried after a short delay whatever the journal holds: it may
+ * have rotated the journal already, leaving the changes only in the rotated entries.
+ * The duration of each checkpoint is logged and kept in {@linkplain Stats statistics}, served
+ * by {@code GET /admin/checkpoints}.
+ *
+ * @author Matthew Morrison
+ */
+@Component
+public class Checkpointer implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(Checkpointer.class.getName());
+
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1); // delay before a failed checkpoint is retried
+
+    /**
+     * Snapshots the data of a DAO, rotates its journal and writes the snapshot
+     */
+    @FunctionalInterface
+    public interface Task {
+        void checkpoint() throws IOException;
+    }
+
+    /**
+     * Writes the content of a file, see {@link Checkpointer#writeAtomically(File, FileWrite)}
+     */
+    @FunctionalInterface
+    public interface FileWrite {
+        void write(File file) throws IOException;
+    }
+
+    /**
+     * Checkpoint statistics of one journal
+     * @param name the name the journal was registered under
+     * @param checkpoints the number of checkpoints that finished
+     * @param failures the number of checkpoints that failed
+     * @param lastMillis the duration of the latest checkpoint in milliseconds
+     * @param maxMillis the duration of the longest checkpoint in milliseconds
+     * @param totalMillis the duration of all checkpoints together in milliseconds
+     */
+    public record Stats(String name, long checkpoints, long failures, long lastMillis, long maxMillis,
+            long totalMillis) {}
+
+    /**
+     * A registered journal and its checkpoint statistics, guarded by the checkpointer
+     */
+    private static final class Source {
+        final String name;
+        final Journal journal;
+        final Task task;
+        long failedAt; // when the latest checkpoint failed
+        boolean failed; // the latest checkpoint failed and must be retried
+        long checkpoints;
+        long failures;
+        long lastNanos;
+        long maxNanos;
+        long totalNanos;
+
+        Source(String name, Journal journal, Task task) {
+            this.name = name;
+            this.journal = journal;
+            this.task = task;
+        }
+    }
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    private final long maxAgeNanos;
+
+    private final List<Source> sources = new ArrayList<>();
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Start the checkpointer thread
+     * @param maxEntries the number of journal entries that triggers a checkpoint
+     * @param maxBytes the journal size in bytes that triggers a checkpoint
+     * @param maxAgeMillis how long an entry may stay in a journal before a checkpoint
+     * @param pollMillis how often the journals are checked
+     */
+    public Checkpointer(@Value("${checkpoint.maxEntries:10000}") int maxEntries,
+            @Value("${checkpoint.maxBytes:16777216}") long maxBytes,
+            @Value("${checkpoint.maxAgeMillis:60000}") long maxAgeMillis,
+            @Value("${checkpoint.pollMillis:250}") long pollMillis) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpointer");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::checkpointDue, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start checkpointing a journal. Must only be called once the data of the DAO is loaded
+     * @param name the name of the data, used in the log and the statistics
+     * @param journal the journal to watch
+     * @param task performs a checkpoint of the journal
+     */
+    public synchronized void register(String name, Journal journal, Task task) {
+        sources.add(new Source(name, journal, task));
+    }
+
+    /**
+     * Get the checkpoint statistics of every registered journal
+     * @return the statistics, in the order the journals were registered
+     */
+    public synchronized List<Stats> stats() {
+        List<Stats> stats = new ArrayList<>(sources.size());
+        for (Source s : sources) {
+            stats.add(new Stats(s.name, s.checkpoints, s.failures, s.lastNanos / 1_000_000,
+                    s.maxNanos / 1_000_000, s.totalNanos / 1_000_000));
+        }
+        return stats;
+    }
+
+    /**
+     * Run the checkpoint of every journal that reached one of its limits
+     */
+    void checkpointDue() {
+        List<Source> due = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Source s : sources) {
+                int entries = s.journal.size();
+                if (s.failed ? now - s.failedAt >= RETRY_NANOS
+                        : entries >= maxEntries || s.journal.bytes() >= maxBytes
+                        || (entries > 0 && now - s.journal.oldestNanos() >= maxAgeNanos)) {
+                    due.add(s);
+                }
+            }
+        }
+        for (Source s : due) {
+            checkpoint(s);
+        }
+    }
+
+    private void checkpoint(Source s) {
+        int entries = s.journal.size();
+        long start = System.nanoTime();
+        try {
+            s.task.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // the rotated entries are kept, and since the journal may be empty now the retry does not wait for it
+            LOG.log(Level.SEVERE, "Checkpoint of " + s.name + " failed", e);
+            synchronized (this) {
+                s.failures++;
+                s.failed = true;
+                s.failedAt = System.nanoTime();
+            }
+            return;
+        }
+        long took = System.nanoTime() - start;
+        synchronized (this) {
+            s.failed = false;
+            s.checkpoints++;
+            s.lastNanos = took;
+            s.maxNanos = Math.max(s.maxNanos, took);
+            s.totalNanos += took;
+        }
+        LOG.info("Checkpointed " + entries + " " + s.name + " journal entries in " + took / 1_000_000 + " ms");
+    }
+
+    /**
+     * Write a file to a temporary file next to it and then move it into place, so the file
+     * always holds either its old or its new content
+     * @param file the file to write
+     * @param write writes the content to the file it is given
+     * @throws IOException if the file cannot be written or moved
+     */
+    public static void writeAtomically(File file, FileWrite write) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        write.write(tmp);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stop the checkpointer, letting a checkpoint in progress finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Admin;
+
+/**
+ * Implements Admin persistence on the {@link EmbeddedStore}, active with the "embedded" profile
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedAdminDAO implements AdminDAO {
+
+    private final EmbeddedStore store;
+
+    private final EmbeddedCollection<Admin> admins;
+
+    /**
+     * Constructor to instantiate the EmbeddedAdminDAO
+     * @param store the embedded store holding the admins
+     * @param objectMapper the object mapper between Admin objects and JSON
+     */
+    public EmbeddedAdminDAO(EmbeddedStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.admins = store.collection("admins", objectMapper, Admin.class, Admin[]::new);
+    }
+
+    @Override
+    public Admin createAdmin(String password, String email, String phone_number) throws IOException {
+        return store.write(() -> {
+            Admin newAdmin = new Admin(admins.nextId(), password, email, phone_number);
+            admins.put(newAdmin.getId(), newAdmin);
+            return newAdmin;
+        });
+    }
+
+    @Override
+    public boolean deleteAdmin(int id) throws IOException {
+        return store.write(() -> admins.remove(id));
+    }
+
+    @Override
+    public Admin[] getAllAdmins() {
+        return admins.values();
+    }
+
+    @Override
+    public Admin getAdmin(int id) throws IOException {
+        return admins.get(id);
+    }
+
+    @Override
+    public Admin updatePassword(int id, String oldPassword, String newPassword) throws IOException {
+        return store.write(() -> {
+            Admin a = admins.get(id);
+            if (a == null || !a.getPassword().equals(oldPassword)) {
+                return null;
+            }
+            a.setPassword(newPassword);
+            admins.put(id, a);
+            return a;
+        });
+    }
+
+    @Override
+    public Admin updateEmail(int id, String newEmail) throws IOException {
+        return store.write(() -> {
+            Admin a = admins.get(id);
+            if (a == null) {
+                return null;
+            }
+            a.setEmail(newEmail);
+            admins.put(id, a);
+            return a;
+        });
+    }
+
+    @Override
+    public Admin updatePhoneNum(int id, String newNumber) throws IOException {
+        return store.write(() -> {
+            Admin a = admins.get(id);
+            if (a == null) {
+                return null;
+            }
+            a.setPhone_number(newNumber);
+            admins.put(id, a);
+            return a;
+        });
+    }
+
+    @Override
+    public Admin updateAdminInfo(int id, Admin updatedAdmin) throws IOException {
+        return store.write(() -> {
+            if (!admins.containsKey(id)) {
+                return null;
+            }
+            admins.put(id, updatedAdmin);
+            return updatedAdmin;
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Buyer;
+
+/**
+ * Implements Buyer persistence on the {@link EmbeddedStore}, active with the "embedded" profile
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedBuyerDAO implements BuyerDAO {
+
+    private final EmbeddedStore store;
+
+    private final EmbeddedCollection<Buyer> buyers;
+
+    /**
+     * Constructor to instantiate the EmbeddedBuyerDAO
+     * @param store the embedded store holding the buyers
+     * @param objectMapper the object mapper between Buyer objects and JSON
+     */
+    public EmbeddedBuyerDAO(EmbeddedStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.buyers = store.collection("buyers", objectMapper, Buyer.class, Buyer[]::new);
+    }
+
+    @Override
+    public Buyer createBuyer(String password, String fn, String ln, String ssn, String email, String number,
+            String business_name, int num_units, int num_deals_complete, int num_flips_complete) throws IOException {
+        return store.write(() -> {
+            Buyer newB = new Buyer(buyers.nextId(), password, fn, ln, ssn, email, number, business_name,
+                    num_units, num_deals_complete, num_flips_complete);
+            buyers.put(newB.getId(), newB);
+            return newB;
+        });
+    }
+
+    @Override
+    public Buyer createBuyer(Buyer buyer) throws IOException {
+        return store.write(() -> {
+            Buyer b = new Buyer(buyer.getId(), buyer.getPassword(), buyer.getFirstName(), buyer.getLast_name(),
+                    buyer.getSsn(), buyer.getEmail(), buyer.getPhone_number(), buyer.getBusiness_name(),
+                    buyer.getNum_units(), buyer.getNum_deals_complete(), buyer.getNum_flips_complete());
+            buyers.put(b.getId(), b);
+            return b;
+        });
+    }
+
+    @Override
+    public Buyer[] getAllBuyers() {
+        return buyers.values();
+    }
+
+    @Override
+    public Buyer getBuyer(int id) throws IOException {
+        return buyers.get(id);
+    }
+
+    @Override
+    public boolean deleteBuyer(int id) throws IOException {
+        return store.write(() -> buyers.remove(id));
+    }
+
+    @Override
+    public Buyer updatePassword(int id, String oldPassword, String newPassword) throws IOException {
+        return store.write(() -> {
+            Buyer b = buyers.get(id);
+            if (b == null || !b.getPassword().equals(oldPassword)) {
+                return null;
+            }
+            b.setPassword(newPassword);
+            buyers.put(id, b);
+            return b;
+        });
+    }
+
+    @Override
+    public Buyer updateBuyerInfo(int id, Buyer newBuyerInfo) throws IOException {
+        return store.write(() -> {
+            if (!buyers.containsKey(id)) {
+                return null;
+            }
+            buyers.put(id, newBuyerInfo);
+            return newBuyerInfo;
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Records of one type kept as JSON in a map of the {@link EmbeddedStore}, keyed by id.
+ * Records are read from the store on every lookup, nothing is cached on the heap.
+ * Changes must be made inside {@link EmbeddedStore#write(EmbeddedStore.Change)}
+ *
+ * @param <T> the type of the records
+ *
+ * @author Matthew Morrison
+ */
+public class EmbeddedCollection<T> {
+
+    private final MVMap<Integer, String> map;
+
+    private final ObjectMapper objectMapper;
+
+    private final Class<T> type;
+
+    private final IntFunction<T[]> generator;
+
+    private final AtomicInteger nextId; // above every id ever stored
+
+    EmbeddedCollection(MVMap<Integer, String> map, ObjectMapper objectMapper, Class<T> type,
+            IntFunction<T[]> generator) {
+        this.map = map;
+        this.objectMapper = objectMapper;
+        this.type = type;
+        this.generator = generator;
+        Integer last = map.lastKey();
+        this.nextId = new AtomicInteger(last == null ? 1 : Math.max(last, 0) + 1);
+    }
+
+    /**
+     * Generate a new id for a new record
+     * @return the next id a new record can use
+     */
+    public int nextId() {
+        return nextId.getAndIncrement();
+    }
+
+    /**
+     * Get the record stored for an id
+     * @param id the id to look up
+     * @return the record, or null if there is none
+     * @throws IOException if the stored JSON cannot be read
+     */
+    public T get(int id) throws IOException {
+        String json = map.get(id);
+        return json == null ? null : objectMapper.readValue(json, type);
+    }
+
+    /**
+     * Check whether a record is stored for an id
+     * @param id the id to look up
+     * @return true if there is a record with the id
+     */
+    public boolean containsKey(int id) {
+        return map.containsKey(id);
+    }
+
+    /**
+     * Store a record, replacing any record with the same id
+     * @param id the id of the record
+     * @param value the record to store
+     * @throws IOException if the record cannot be written as JSON
+     */
+    public void put(int id, T value) throws IOException {
+        map.put(id, objectMapper.writeValueAsString(value));
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Remove the record stored for an id
+     * @param id the id to remove
+     * @return true if a record was removed
+     */
+    public boolean remove(int id) {
+        return map.remove(id) != null;
+    }
+
+    /**
+     * Read the records with an id greater than the given one, in id order, a page at a time
+     * @param afterId only records with a greater id are returned
+     * @param limit the maximum number of records to return
+     * @return a new list of up to limit records, empty once there are none left
+     * @throws IOException if the stored JSON cannot be read
+     */
+    public List<T> valuesAfter(int afterId, int limit) throws IOException {
+        List<T> page = new ArrayList<>();
+        if (afterId == Integer.MAX_VALUE) {
+            return page;
+        }
+        Cursor<Integer, String> cursor = map.cursor(afterId + 1);
+        while (page.size() < limit && cursor.hasNext()) {
+            cursor.next();
+            page.add(objectMapper.readValue(cursor.getValue(), type));
+        }
+        return page;
+    }
+
+    /**
+     * Read every record in id order
+     * @return a new array of all records, empty if there are none
+     */
+    public T[] values() {
+        List<T> values = new ArrayList<>(map.size());
+        try {
+            for (String json : map.values()) {
+                values.add(objectMapper.readValue(json, type));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return values.toArray(generator.apply(values.size()));
+    }
+}
@@ -0,0 +1,339 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.ApplicationApproval;
+import com.lenders.app.model.House;
+
+/**
+ * Implements House persistence on the {@link EmbeddedStore}, active with the "embedded" profile.
+ * Accepting an application, or a batch of them, removes them and creates the houses in a single commit.
+ * <p>
+ * The houses are indexed in memory for searches like in {@link HouseFileDAO}. The indexes are
+ * built from the store when it is opened and updated once each change is committed, under a
+ * write lock that searches wait on, so a search never sees a change the indexes miss and a
+ * change that is rolled back never reaches them.
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedHouseDAO implements HouseDAO {
+
+    private final EmbeddedStore store;
+
+    private final EmbeddedCollection<House> houses;
+
+    private final EmbeddedCollection<House> houseApplications;
+
+    private final HouseIndex houseIndex = new HouseIndex(); // secondary indexes of the houses for searches
+
+    private final HouseTextIndex houseText = new HouseTextIndex(); // free text of the houses
+
+    private final HouseTextIndex applText = new HouseTextIndex(); // free text of the applications
+
+    private final HouseAutocomplete cityCompletions = new HouseAutocomplete(); // cities of the houses by listings
+
+    private final HouseAutocomplete addressCompletions = new HouseAutocomplete();
+
+    private final StampedLock lock = new StampedLock(); // guards the indexes, writers commit to the store under it
+
+    /**
+     * Constructor to instantiate the EmbeddedHouseDAO
+     * @param store the embedded store holding the houses and house applications
+     * @param objectMapper the object mapper between House objects and JSON
+     */
+    public EmbeddedHouseDAO(EmbeddedStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.houses = store.collection("houses", objectMapper, House.class, House[]::new);
+        this.houseApplications = store.collection("houseApplications", objectMapper, House.class, House[]::new);
+        IdMap<House> byId = byId(houses.values());
+        houseIndex.rebuild(byId);
+        houseText.rebuild(byId);
+        cityCompletions.rebuild(byId, House::getCity);
+        addressCompletions.rebuild(byId, House::getAddress);
+        applText.rebuild(byId(houseApplications.values()));
+    }
+
+    private static IdMap<House> byId(House[] all) {
+        IdMap<House> byId = new IdMap<>();
+        for (House h : all) {
+            byId.put(h.getId(), h);
+        }
+        return byId;
+    }
+
+    /**
+     * Index a new or changed house for searches and completions. Called with the write lock held
+     * @param h the house to index
+     */
+    private void index(House h) {
+        houseIndex.put(h);
+        houseText.put(h);
+        cityCompletions.put(h.getId(), h.getCity());
+        addressCompletions.put(h.getId(), h.getAddress());
+    }
+
+    /**
+     * Remove a deleted house from the indexes. Called with the write lock held
+     * @param id the id of the house
+     */
+    private void unindex(int id) {
+        houseIndex.remove(id);
+        houseText.remove(id);
+        cityCompletions.remove(id);
+        addressCompletions.remove(id);
+    }
+
+    /**
+     * Copy a house under a new id and interest
+     * @param h the house to copy
+     * @param id the id of the copy
+     * @param interest the interest of the copy
+     * @return the copied house
+     */
+    private static House copy(House h, int id, float interest) {
+        return new House(id, h.getAddress(), h.getZipcode(),
+                h.getCity(), h.getSqft(), h.isClosed_on(), h.getClosing_date(),
+                h.getLoan_amount(), h.getLtv_percent(), h.getRehab_cost(),
+                h.getRehab_loan(), h.getRehab_overview(), h.getTurn_around_date(),
+                h.getGross_rent_estimate(), h.getCondition(), h.getExit_strategy(),
+                h.getUnitType(), interest);
+    }
+
+    @Override
+    public House createHouse(House h) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            House newH = store.write(() -> {
+                House created = copy(h, houses.nextId(), h.getInterest());
+                houses.put(created.getId(), created);
+                return created;
+            });
+            index(newH);
+            return newH;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public House createHouseApplication(House h) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            House newH = store.write(() -> {
+                House created = copy(h, houseApplications.nextId(), 0);
+                houseApplications.put(created.getId(), created);
+                return created;
+            });
+            applText.put(newH);
+            return newH;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public House acceptApplication(int applId, float interest) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            House newH = store.write(() -> {
+                House accHouse = houseApplications.get(applId);
+                if (accHouse == null) {
+                    return null;
+                }
+                houseApplications.remove(applId);
+                House created = copy(accHouse, houses.nextId(), interest);
+                houses.put(created.getId(), created);
+                return created;
+            });
+            if (newH != null) {
+                applText.remove(applId);
+                index(newH);
+            }
+            return newH;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public House[] acceptApplications(List<ApplicationApproval> approvals) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            House[] accepted = store.write(() -> {
+                House[] created = new House[approvals.size()];
+                for (int i = 0; i < created.length; i++) {
+                    ApplicationApproval approval = approvals.get(i);
+                    House accHouse = houseApplications.get(approval.getApplId());
+                    if (accHouse == null) {
+                        continue;
+                    }
+                    houseApplications.remove(approval.getApplId());
+                    created[i] = copy(accHouse, houses.nextId(), approval.getInterest());
+                    houses.put(created[i].getId(), created[i]);
+                }
+                return created;
+            });
+            for (int i = 0; i < accepted.length; i++) {
+                if (accepted[i] != null) {
+                    applText.remove(approvals.get(i).getApplId());
+                    index(accepted[i]);
+                }
+            }
+            return accepted;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean deleteHouse(int id) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            boolean deleted = store.write(() -> houses.remove(id));
+            if (deleted) {
+                unindex(id);
+            }
+            return deleted;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean deleteAppl(int id) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            boolean deleted = store.write(() -> houseApplications.remove(id));
+            if (deleted) {
+                applText.remove(id);
+            }
+            return deleted;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public House[] getHouses() {
+        return houses.values();
+    }
+
+    @Override
+    public House[] getApplHouses() {
+        return houseApplications.values();
+    }
+
+    @Override
+    public House[] searchHouses(HouseQuery query) {
+        return searchHouses(query, HousePage.ALL);
+    }
+
+    @Override
+    public House[] searchHouses(HouseQuery query, HousePage page) {
+        try {
+            if (query.isEmpty() && page.orderBy() == null) {
+                // the store pages in id order by itself
+                return page.equals(HousePage.ALL) ? houses.values()
+                        : houses.valuesAfter(page.hasCursor() ? page.afterId() : Integer.MIN_VALUE, page.limit())
+                                .toArray(new House[0]);
+            }
+
+            long stamp = lock.readLock();
+            try {
+                int[] ids = houseIndex.search(query, page);
+                House[] matches = new House[ids.length];
+                for (int i = 0; i < matches.length; i++) {
+                    matches[i] = houses.get(ids[i]);
+                }
+                return matches;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public House[] findHouses(String text, int limit) throws IOException {
+        return find(houseText, houses, text, limit);
+    }
+
+    @Override
+    public House[] findApplications(String text, int limit) throws IOException {
+        return find(applText, houseApplications, text, limit);
+    }
+
+    @Override
+    public HouseAutocomplete.Suggestion[] completeCity(String prefix, int limit) {
+        return complete(cityCompletions, prefix, limit);
+    }
+
+    @Override
+    public HouseAutocomplete.Suggestion[] completeAddress(String prefix, int limit) {
+        return complete(addressCompletions, prefix, limit);
+    }
+
+    private HouseAutocomplete.Suggestion[] complete(HouseAutocomplete completions, String prefix, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return completions.complete(prefix, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private House[] find(HouseTextIndex index, EmbeddedCollection<House> collection, String text, int limit)
+            throws IOException {
+        long stamp = lock.readLock();
+        try {
+            int[] ids = index.search(text, limit);
+            House[] found = new House[ids.length];
+            for (int i = 0; i < found.length; i++) {
+                found[i] = collection.get(ids[i]);
+            }
+            return found;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public House getHouse(int id) throws IOException {
+        return houses.get(id);
+    }
+
+    @Override
+    public House getAppl(int id) throws IOException {
+        return houseApplications.get(id);
+    }
+
+    @Override
+    public House updatehouse(House house) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            House updated = store.write(() -> {
+                if (!houses.containsKey(house.getId())) {
+                    return null;
+                }
+                houses.put(house.getId(), house);
+                return house;
+            });
+            if (updated != null) {
+                index(updated);
+            }
+            return updated;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.h2.mvstore.MVMap;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Investment;
+
+/**
+ * Implements Investment persistence on the {@link EmbeddedStore}, active with the "embedded" profile.
+ * The investments of a user or house are found through index maps whose keys hold the user or
+ * house id in the high 32 bits and the investment id in the low 32 bits, so each lookup is one
+ * range scan of the B-tree
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedInvestmentDAO implements InvestmentDAO {
+
+    private final EmbeddedStore store;
+
+    private final EmbeddedCollection<Investment> investments;
+
+    private final MVMap<Long, Integer> byUser;
+
+    private final MVMap<Long, Integer> byHouse;
+
+    /**
+     * Constructor to instantiate the EmbeddedInvestmentDAO
+     * @param store the embedded store holding the investments
+     * @param objectMapper the object mapper between Investment objects and JSON
+     */
+    public EmbeddedInvestmentDAO(EmbeddedStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.investments = store.collection("investments", objectMapper, Investment.class, Investment[]::new);
+        this.byUser = store.index("investmentsByUser");
+        this.byHouse = store.index("investmentsByHouse");
+    }
+
+    private static long key(int owner, int id) {
+        return ((long) owner << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private void index(Investment i) {
+        byUser.put(key(i.getUserId(), i.getId()), i.getId());
+        byHouse.put(key(i.getHouseId(), i.getId()), i.getId());
+    }
+
+    private void unindex(Investment i) {
+        byUser.remove(key(i.getUserId(), i.getId()));
+        byHouse.remove(key(i.getHouseId(), i.getId()));
+    }
+
+    /**
+     * Read every investment indexed under a user or house id
+     * @param index the index to scan
+     * @param owner the user or house id
+     * @return the investments in id order, null if there are none
+     */
+    private ArrayList<Investment> scan(MVMap<Long, Integer> index, int owner) {
+        ArrayList<Investment> found = new ArrayList<>();
+        try {
+            for (Iterator<Long> it = index.keyIterator(key(owner, 0)); it.hasNext(); ) {
+                long k = it.next();
+                if ((int) (k >> 32) != owner) {
+                    break;
+                }
+                found.add(investments.get((int) k));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return found.isEmpty() ? null : found;
+    }
+
+    /**
+     * Read a page of the investments indexed under a user or house id. The keys hold the
+     * investment id unsigned, so the negative ids follow the others in the index
+     * @param index the index to scan
+     * @param owner the user or house id
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return the investments of the page in id order
+     * @throws IOException if an investment cannot be read
+     */
+    private List<Investment> pageAfter(MVMap<Long, Integer> index, int owner, int afterId, int limit)
+            throws IOException {
+        List<Investment> page = new ArrayList<>();
+        if (afterId < -1) {
+            scan(index, owner, afterId + 1, true, page, limit);
+        }
+        if (afterId != Integer.MAX_VALUE) {
+            scan(index, owner, Math.max(afterId + 1, 0), false, page, limit);
+        }
+        return page;
+    }
+
+    /**
+     * Add the investments of a user or house from an id on to a page, up to the first id of the other sign
+     */
+    private void scan(MVMap<Long, Integer> index, int owner, int from, boolean negative, List<Investment> page,
+            int limit) throws IOException {
+        for (Iterator<Long> it = index.keyIterator(key(owner, from)); it.hasNext() && page.size() < limit; ) {
+            long k = it.next();
+            if ((int) (k >> 32) != owner || ((int) k < 0) != negative) {
+                break;
+            }
+            page.add(investments.get((int) k));
+        }
+    }
+
+    @Override
+    public Investment createInvestment(int user_id, int house_id, String date, float money_invested)
+            throws IOException {
+        return store.write(() -> {
+            Investment newI = new Investment(investments.nextId(), user_id, house_id, date, money_invested);
+            investments.put(newI.getId(), newI);
+            index(newI);
+            return newI;
+        });
+    }
+
+    @Override
+    public Investment[] createInvestments(List<Investment> batch) throws IOException {
+        return store.write(() -> {
+            Investment[] created = new Investment[batch.size()];
+            for (int n = 0; n < created.length; n++) {
+                Investment i = batch.get(n);
+                Investment newI = new Investment(investments.nextId(), i.getUserId(), i.getHouseId(),
+                        i.getDate(), i.getMoneyInvested());
+                investments.put(newI.getId(), newI);
+                index(newI);
+                created[n] = newI;
+            }
+            return created;
+        });
+    }
+
+    @Override
+    public Investment createInvestment(Investment investment) throws IOException {
+        return store.write(() -> {
+            Investment newI = new Investment(investment.getId(), investment.getUserId(),
+                    investment.getHouseId(), investment.getDate(), investment.getMoneyInvested());
+            Investment old = investments.get(newI.getId());
+            if (old != null) {
+                unindex(old);
+            }
+            investments.put(newI.getId(), newI);
+            index(newI);
+            return newI;
+        });
+    }
+
+    @Override
+    public Investment acceptInvestment(int id) throws IOException {
+        throw new UnsupportedOperationException("Unimplemented method 'acceptInvestment'");
+    }
+
+    @Override
+    public boolean removeInvestment(int id) throws IOException {
+        return store.write(() -> {
+            Investment i = investments.get(id);
+            if (i == null) {
+                return false;
+            }
+            investments.remove(id);
+            unindex(i);
+            return true;
+        });
+    }
+
+    @Override
+    public Investment[] getInvestments() {
+        return investments.values();
+    }
+
+    @Override
+    public List<Investment> getInvestmentsAfter(int afterId, int limit) throws IOException {
+        return investments.valuesAfter(afterId, limit);
+    }
+
+    @Override
+    public ArrayList<Investment> getUserInvestments(int user_id) {
+        return scan(byUser, user_id);
+    }
+
+    @Override
+    public ArrayList<Investment> getHouseInvestments(int house_id) {
+        return scan(byHouse, house_id);
+    }
+
+    @Override
+    public List<Investment> getUserInvestmentsAfter(int user_id, int afterId, int limit) throws IOException {
+        return pageAfter(byUser, user_id, afterId, limit);
+    }
+
+    @Override
+    public List<Investment> getHouseInvestmentsAfter(int house_id, int afterId, int limit) throws IOException {
+        return pageAfter(byHouse, house_id, afterId, limit);
+    }
+
+    @Override
+    public Investment getInvestment(int id) throws IOException {
+        return investments.get(id);
+    }
+
+    @Override
+    public Investment updateInvestment(Investment investment) throws IOException {
+        throw new UnsupportedOperationException("Unimplemented method 'updateInvestment'");
+    }
+}
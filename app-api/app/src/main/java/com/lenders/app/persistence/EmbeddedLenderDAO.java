@@ -0,0 +1,94 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Lender;
+
+/**
+ * Implements Lender persistence on the {@link EmbeddedStore}, active with the "embedded" profile
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedLenderDAO implements LenderDAO {
+
+    private final EmbeddedStore store;
+
+    private final EmbeddedCollection<Lender> lenders;
+
+    /**
+     * Constructor to instantiate the EmbeddedLenderDAO
+     * @param store the embedded store holding the lenders
+     * @param objectMapper the object mapper between Lender objects and JSON
+     */
+    public EmbeddedLenderDAO(EmbeddedStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.lenders = store.collection("lenders", objectMapper, Lender.class, Lender[]::new);
+    }
+
+    @Override
+    public Lender createLender(String password, String fn, String ln, String ssn, String email, String number,
+            String business_name, float funds_available) throws IOException {
+        return store.write(() -> {
+            Lender newL = new Lender(lenders.nextId(), password, fn, ln, ssn, email, number, business_name,
+                    funds_available);
+            lenders.put(newL.getId(), newL);
+            return newL;
+        });
+    }
+
+    @Override
+    public Lender createLender(Lender lender) throws IOException {
+        return store.write(() -> {
+            Lender newL = new Lender(lender.getId(), lender.getPassword(), lender.getFirst_name(),
+                    lender.getLast_name(), lender.getSsn(), lender.getEmail(), lender.getPhone_number(),
+                    lender.getBusiness_name(), lender.getFunds_available());
+            lenders.put(newL.getId(), newL);
+            return newL;
+        });
+    }
+
+    @Override
+    public boolean deleteLender(int id) throws IOException {
+        return store.write(() -> lenders.remove(id));
+    }
+
+    @Override
+    public Lender updatePassword(int id, String oldPassword, String newPassword) throws IOException {
+        return store.write(() -> {
+            Lender l = lenders.get(id);
+            if (l == null || !l.getPassword().equals(oldPassword)) {
+                return null;
+            }
+            l.setPassword(newPassword);
+            lenders.put(id, l);
+            return l;
+        });
+    }
+
+    @Override
+    public Lender updateLenderInfo(int id, Lender newLenderInfo) throws IOException {
+        return store.write(() -> {
+            if (!lenders.containsKey(id)) {
+                return null;
+            }
+            lenders.put(id, newLenderInfo);
+            return newLenderInfo;
+        });
+    }
+
+    @Override
+    public Lender[] getAllLenders() {
+        return lenders.values();
+    }
+
+    @Override
+    public Lender getLender(int id) throws IOException {
+        return lenders.get(id);
+    }
+}
@@ -0,0 +1,99 @@
+package com.lenders.app.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Embedded on-disk B-tree store shared by the embedded DAOs, active with the "embedded" profile.
+ * Records live in a single H2 MVStore file instead of being held in memory, so point reads and
+ * writes are O(log n) and only the pages being used are cached.
+ * <p>
+ * Every change goes through {@link #write(Change)}, which applies it and commits it as one new
+ * version of the store. A change touching several maps, such as accepting a house application,
+ * is therefore stored atomically, and a change that fails is rolled back.
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedStore implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(EmbeddedStore.class.getName());
+
+    private final MVStore store;
+
+    /**
+     * A change to one or more maps of the store
+     * @param <R> the result of the change
+     */
+    @FunctionalInterface
+    public interface Change<R> {
+        R apply() throws IOException;
+    }
+
+    /**
+     * Open (or create) the store file
+     * @param filename the file holding the store
+     */
+    public EmbeddedStore(@Value("${embedded.file}") String filename) {
+        this.store = new MVStore.Builder().fileName(filename).autoCommitDisabled().open();
+        LOG.info("Opened embedded store " + filename);
+    }
+
+    /**
+     * Open a collection of JSON records stored in the map with the given name
+     * @param <T> the type of the records
+     * @param name the name of the map
+     * @param objectMapper the object mapper between records and JSON
+     * @param type the class of the records
+     * @param generator creates an array of records of the requested length
+     * @return the collection
+     */
+    public <T> EmbeddedCollection<T> collection(String name, ObjectMapper objectMapper, Class<T> type,
+            IntFunction<T[]> generator) {
+        MVMap<Integer, String> map = store.openMap(name);
+        return new EmbeddedCollection<>(map, objectMapper, type, generator);
+    }
+
+    /**
+     * Open a map used as an index, whose keys combine the indexed value and a record id
+     * @param name the name of the map
+     * @return the index map
+     */
+    public MVMap<Long, Integer> index(String name) {
+        return store.openMap(name);
+    }
+
+    /**
+     * Apply a change and commit it, or roll it back if it fails
+     * @param <R> the result of the change
+     * @param change the change to apply
+     * @return the result of the change
+     * @throws IOException if the change fails
+     */
+    public synchronized <R> R write(Change<R> change) throws IOException {
+        try {
+            R result = change.apply();
+            store.commit();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            store.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+}
@@ -0,0 +1,122 @@
+package com.lenders.app.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Batches the saves requested by many concurrent mutations into a single write.
+ * A mutation applies its change in memory, asks for a commit and waits on the returned
+ * future outside of its lock. One background thread wakes up every few milliseconds and,
+ * if any commits are pending, writes the data once and completes every pending future.
+ *
+ * @author Matthew Morrison
+ */
+public class GroupCommitWriter implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(GroupCommitWriter.class.getName());
+
+    /**
+     * Writes the current state of the data to storage
+     */
+    @FunctionalInterface
+    public interface Flusher {
+        void flush() throws IOException;
+    }
+
+    private final Flusher flusher;
+
+    private final ScheduledExecutorService executor;
+
+    private List<CompletableFuture<Void>> pending = new ArrayList<>(); // commits waiting on the next flush
+
+    /**
+     * Start a new group commit writer
+     * @param name the name of the background writer thread
+     * @param intervalMillis the delay between flushes in milliseconds
+     * @param flusher writes the data when there are pending commits
+     */
+    public GroupCommitWriter(String name, long intervalMillis, Flusher flusher) {
+        this.flusher = flusher;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::flushPending, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Request that the current in-memory state be written by the next flush
+     * @return a future completed once a flush that includes the change has finished
+     */
+    public synchronized CompletableFuture<Void> commit() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        pending.add(future);
+        return future;
+    }
+
+    /**
+     * Write the data once for every commit requested since the last flush
+     */
+    private void flushPending() {
+        List<CompletableFuture<Void>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+
+        try {
+            flusher.flush();
+            batch.forEach(f -> f.complete(null));
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Group commit failed", e);
+            batch.forEach(f -> f.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Wait for a commit to become durable
+     * @param commit the future returned by {@link #commit()}
+     * @throws IOException if the flush containing the commit failed or the wait was interrupted
+     */
+    public static void await(CompletableFuture<Void> commit) throws IOException {
+        try {
+            commit.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Flush any pending commits and stop the background writer
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPending();
+    }
+}
@@ -0,0 +1,359 @@
+package com.lenders.app.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import com.lenders.app.model.House;
+
+/**
+ * Completes a typed prefix to the most listed values of one text field of the houses, such as the city.
+ * <p>
+ * The values are kept in a radix tree, a trie whose chains of single children are merged into one
+ * node, with the children of each node in a sorted array. Every value counts the houses listed
+ * under it. A node whose subtree holds more than {@link #MAX_SUGGESTIONS} values caches the most
+ * listed of them, so a completion walks the nodes of the prefix and reads the cache, or collects
+ * the few values below a node without one; its cost follows the length of the prefix rather than
+ * the number of values. A change to the count of a value recomputes the caches on its path only.
+ * <p>
+ * The value each house was counted under is remembered by id, so a house that was changed in place
+ * is still uncounted from the right value. Like {@link HouseIndex}, this class is not thread safe;
+ * the owning DAO changes it under its write lock and reads it under its read lock.
+ *
+ * @author Matthew Morrison
+ */
+public class HouseAutocomplete {
+
+    /**
+     * The most suggestions a completion returns
+     */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * A completion of a prefix
+     * @param text the value as it was first listed
+     * @param count the number of houses listed under the value
+     */
+    public record Suggestion(String text, int count) {
+    }
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /**
+     * A node of the radix tree, reached from its parent by its label
+     */
+    private static final class Node {
+        String label;
+        Node[] children = NO_CHILDREN; // sorted by the first character of their labels
+        Suggestion value; // the value ending at this node, null if none does
+        int size; // values in the subtree
+        Suggestion[] top; // the best values of the subtree, null while it holds no more than MAX_SUGGESTIONS
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int find(char first) {
+            int lo = 0;
+            int hi = children.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char c = children[mid].label.charAt(0);
+                if (c < first) {
+                    lo = mid + 1;
+                } else if (c > first) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        Node child(char first) {
+            int i = find(first);
+            return i >= 0 ? children[i] : null;
+        }
+
+        void put(Node child) {
+            int i = find(child.label.charAt(0));
+            if (i >= 0) {
+                children[i] = child;
+                return;
+            }
+            int at = -i - 1;
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, at);
+            grown[at] = child;
+            System.arraycopy(children, at, grown, at + 1, children.length - at);
+            children = grown;
+        }
+
+        void remove(char first) {
+            int i = find(first);
+            if (i >= 0) {
+                Node[] shrunk = new Node[children.length - 1];
+                System.arraycopy(children, 0, shrunk, 0, i);
+                System.arraycopy(children, i + 1, shrunk, i, shrunk.length - i);
+                children = shrunk.length == 0 ? NO_CHILDREN : shrunk;
+            }
+        }
+    }
+
+    private final Node root = new Node("");
+
+    private final Map<Integer, String> listed = new HashMap<>(); // id -> value the house is counted under
+
+    /**
+     * Count a house under a value, replacing the value it was counted under before
+     * @param id the id of the house
+     * @param text the value of the house, null or blank to count it under none
+     */
+    public void put(int id, String text) {
+        remove(id);
+        String key = normalize(text).strip();
+        if (key.isEmpty()) {
+            return;
+        }
+        listed.put(id, text);
+        add(key, text.strip(), 1, true);
+    }
+
+    /**
+     * Count every house of a map under its value, replacing what was counted before.
+     * The caches are computed once at the end rather than after every house
+     * @param houses the houses to count
+     * @param field gets the value of a house
+     */
+    public void rebuild(IdMap<House> houses, Function<House, String> field) {
+        clear();
+        for (House h : houses) {
+            String text = field.apply(h);
+            String key = normalize(text).strip();
+            if (!key.isEmpty()) {
+                listed.put(h.getId(), text);
+                add(key, text.strip(), 1, false);
+            }
+        }
+        recomputeAll(root);
+    }
+
+    /**
+     * Uncount a house
+     * @param id the id of the house
+     */
+    public void remove(int id) {
+        String text = listed.remove(id);
+        if (text != null) {
+            add(normalize(text).strip(), text.strip(), -1, true);
+        }
+    }
+
+    /**
+     * Uncount every house
+     */
+    public void clear() {
+        listed.clear();
+        root.children = NO_CHILDREN;
+        root.value = null;
+        root.size = 0;
+        root.top = null;
+    }
+
+    /**
+     * Complete a prefix to the most listed values starting with it, regardless of case and spacing
+     * @param prefix the typed prefix
+     * @param limit the most suggestions to return, at most {@link #MAX_SUGGESTIONS}
+     * @return the suggestions, the most listed first and ties in text order
+     */
+    public Suggestion[] complete(String prefix, int limit) {
+        String key = normalize(prefix).stripLeading();
+        limit = Math.min(limit, MAX_SUGGESTIONS);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                return new Suggestion[0];
+            }
+            int common = common(child.label, key, i);
+            if (common < child.label.length() && i + common < key.length()) {
+                return new Suggestion[0]; // the prefix leaves the label
+            }
+            node = child;
+            i += common;
+        }
+        if (limit <= 0) {
+            return new Suggestion[0];
+        }
+        Suggestion[] best = node.top != null ? node.top : best(collect(node, new ArrayList<>()));
+        return best.length <= limit ? best : Arrays.copyOf(best, limit);
+    }
+
+    /**
+     * Change the count of a value and recompute the caches on its path
+     * @param key the normalized value
+     * @param text the value as listed
+     * @param delta 1 to count a house, -1 to uncount one
+     * @param recompute false to leave the caches for {@link #recomputeAll(Node)}, only when counting
+     */
+    private void add(String key, String text, int delta, boolean recompute) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                if (delta < 0) {
+                    return;
+                }
+                child = new Node(key.substring(i));
+                node.put(child);
+            }
+            int common = common(child.label, key, i);
+            if (common < child.label.length()) {
+                if (delta < 0) {
+                    return;
+                }
+                // split the label where the key leaves it
+                Node split = new Node(child.label.substring(0, common));
+                node.put(split); // takes the place of the child, found by the first character they share
+                child.label = child.label.substring(common);
+                split.put(child);
+                if (recompute) {
+                    recompute(split);
+                }
+                child = split;
+            }
+            path.add(child);
+            node = child;
+            i += common;
+        }
+
+        int count = (node.value == null ? 0 : node.value.count()) + delta;
+        if (count < 0) {
+            return;
+        }
+        node.value = count == 0 ? null : new Suggestion(node.value == null ? text : node.value.text(), count);
+        if (!recompute) {
+            return;
+        }
+
+        // drop the nodes left without values and merge single children back into their parents
+        for (int p = path.size() - 1; p > 0; p--) {
+            Node n = path.get(p);
+            if (n.value == null && n.children.length == 0) {
+                path.get(p - 1).remove(n.label.charAt(0));
+                continue;
+            }
+            if (n.value == null && n.children.length == 1) {
+                Node only = n.children[0];
+                n.label = n.label + only.label;
+                n.children = only.children;
+                n.value = only.value;
+            }
+            recompute(n);
+        }
+        recompute(root);
+    }
+
+    private static void recomputeAll(Node n) {
+        for (Node child : n.children) {
+            recomputeAll(child);
+        }
+        recompute(n);
+    }
+
+    private static void recompute(Node n) {
+        int size = n.value == null ? 0 : 1;
+        for (Node child : n.children) {
+            size += child.size;
+        }
+        n.size = size;
+        if (size <= MAX_SUGGESTIONS) {
+            n.top = null;
+            return;
+        }
+        List<Suggestion> candidates = new ArrayList<>();
+        if (n.value != null) {
+            candidates.add(n.value);
+        }
+        for (Node child : n.children) {
+            if (child.top != null) {
+                candidates.addAll(Arrays.asList(child.top));
+            } else {
+                collect(child, candidates);
+            }
+        }
+        n.top = best(candidates);
+    }
+
+    /**
+     * Collect every value of a subtree that has no cache
+     */
+    private static List<Suggestion> collect(Node n, List<Suggestion> values) {
+        if (n.value != null) {
+            values.add(n.value);
+        }
+        for (Node child : n.children) {
+            collect(child, values);
+        }
+        return values;
+    }
+
+    /**
+     * Pick the most listed candidates by insertion into a short sorted array, most are rejected
+     * by one comparison with its last entry
+     */
+    private static Suggestion[] best(List<Suggestion> candidates) {
+        Suggestion[] best = new Suggestion[Math.min(MAX_SUGGESTIONS, candidates.size())];
+        int n = 0;
+        for (Suggestion s : candidates) {
+            if (n == best.length && rank(s, best[n - 1]) >= 0) {
+                continue;
+            }
+            int i = n < best.length ? n++ : n - 1;
+            while (i > 0 && rank(s, best[i - 1]) < 0) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = s;
+        }
+        return best;
+    }
+
+    /**
+     * Order suggestions by count, the most listed first, and then by text
+     */
+    private static int rank(Suggestion a, Suggestion b) {
+        int c = Integer.compare(b.count(), a.count());
+        return c != 0 ? c : a.text().compareTo(b.text());
+    }
+
+    /**
+     * Count the characters a label shares with a key from an offset on
+     */
+    private static int common(String label, String key, int from) {
+        int n = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Bring text to the form it is compared in, lower case with single spaces
+     */
+    private static String normalize(String text) {
+        return text == null ? "" : SPACES.matcher(text).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,8 +1,10 @@
 package com.lenders.app.persistence;
 
+import com.lenders.app.model.ApplicationApproval;
 import com.lenders.app.model.House;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Defines the interface and methods for the House object persistence
@@ -37,6 +39,16 @@ public interface HouseDAO {
      */
     House acceptApplication(int applId, float interest) throws IOException;
 
+    /**
+     * Accept several house applications at once. All of them are moved to the houses
+     * and saved together as a single change
+     * @param approvals the applications to accept and the interest of each
+     * @return the new {@linkplain House houses} in the order of the approvals,
+     * null where the application does not exist
+     * @throws IOException if there is an issue with storage
+     */
+    House[] acceptApplications(List<ApplicationApproval> approvals) throws IOException;
+
     /**
      * Delete a {@linkplain House house} from the system with its id
      * @param id the id of the house to delete
@@ -55,13 +67,15 @@ public interface HouseDAO {
 
     /**
      * Generate an array of all {@linkplain House houses} from the system
-     * @return an array of all houses, can be empty if no houses exist
+     * @return a shared array of all houses, can be empty if no houses exist.
+     * The array is reused between calls and must not be modified
      */
     House[] getHouses();
 
     /**
      * Generate an array of all {@linkplain House house} applications from the system
-     * @return an array of all house applications, can be empty if none exist
+     * @return a shared array of all house applications, can be empty if none exist.
+     * The array is reused between calls and must not be modified
      */
     House[] getApplHouses();
 
@@ -90,5 +104,56 @@ public interface HouseDAO {
     House updatehouse(House house) throws IOException;
 
 
-    // TODO methods for searching based on different attributes?
+    /**
+     * Find the {@linkplain House houses} matching every criterion of a query
+     * @param query the criteria to match
+     * @return the matching houses in id order, every house for an empty query
+     * @throws IOException if there is an issue with underlying storage
+     */
+    House[] searchHouses(HouseQuery query) throws IOException;
+
+    /**
+     * Find a page of the {@linkplain House houses} matching every criterion of a query
+     * @param query the criteria to match
+     * @param page the order, cursor and size of the page
+     * @return the matching houses of the page in its order
+     * @throws IOException if there is an issue with underlying storage
+     */
+    House[] searchHouses(HouseQuery query, HousePage page) throws IOException;
+
+    /**
+     * Find the {@linkplain House houses} whose address, city or rehab overview contain every term of a text
+     * @param text the text to search for, every term also matches as a prefix
+     * @param limit the most houses to return
+     * @return the best matching houses, best first
+     * @throws IOException if there is an issue with underlying storage
+     */
+    House[] findHouses(String text, int limit) throws IOException;
+
+    /**
+     * Find the {@linkplain House house} applications whose address, city or rehab overview contain every term of a text
+     * @param text the text to search for, every term also matches as a prefix
+     * @param limit the most house applications to return
+     * @return the best matching house applications, best first
+     * @throws IOException if there is an issue with underlying storage
+     */
+    House[] findApplications(String text, int limit) throws IOException;
+
+    /**
+     * Complete a typed prefix to the cities with the most {@linkplain House houses}
+     * @param prefix the typed prefix, compared regardless of case and spacing
+     * @param limit the most suggestions to return, at most {@link HouseAutocomplete#MAX_SUGGESTIONS}
+     * @return the suggestions, the most listed first
+     * @throws IOException if there is an issue with underlying storage
+     */
+    HouseAutocomplete.Suggestion[] completeCity(String prefix, int limit) throws IOException;
+
+    /**
+     * Complete a typed prefix to the addresses with the most {@linkplain House houses}
+     * @param prefix the typed prefix, compared regardless of case and spacing
+     * @param limit the most suggestions to return, at most {@link HouseAutocomplete#MAX_SUGGESTIONS}
+     * @return the suggestions, the most listed first
+     * @throws IOException if there is an issue with underlying storage
+     */
+    HouseAutocomplete.Suggestion[] completeAddress(String prefix, int limit) throws IOException;
 }
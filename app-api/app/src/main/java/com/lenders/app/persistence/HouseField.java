@@ -0,0 +1,109 @@
+package com.lenders.app.persistence;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+import com.lenders.app.model.House;
+
+/**
+ * The numeric fields of a {@link House} that searches can filter by range and sort on.
+ * Each value is mapped to an int sort key that orders like the value itself, so the
+ * {@link HouseIndex} can keep every field in one kind of sorted index
+ *
+ * @author Matthew Morrison
+ */
+public enum HouseField {
+    LOAN_AMOUNT("loan_amount"),
+    INTEREST("interest"),
+    LTV_PERCENT("ltv_percent"),
+    GROSS_RENT_ESTIMATE("gross_rent_estimate"),
+    CLOSING_DATE("closing_date");
+
+    static final int NO_VALUE = Integer.MAX_VALUE; // sort key of a missing closing date, after every date
+
+    private final String jsonName;
+
+    HouseField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    /**
+     * Get the name of the field in the JSON of a house
+     * @return the JSON name
+     */
+    public String jsonName() {
+        return jsonName;
+    }
+
+    /**
+     * Find a field by its JSON name
+     * @param jsonName the JSON name of the field
+     * @return the field
+     * @throws IllegalArgumentException if no field has the name
+     */
+    public static HouseField of(String jsonName) {
+        for (HouseField f : values()) {
+            if (f.jsonName.equals(jsonName)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Not a range field: " + jsonName);
+    }
+
+    /**
+     * Get the value of the field of a house
+     * @param h the house
+     * @return the value, epoch days for the closing date, NaN for a missing closing date
+     */
+    public double value(House h) {
+        switch (this) {
+            case LOAN_AMOUNT: return h.getLoan_amount();
+            case INTEREST: return h.getInterest();
+            case LTV_PERCENT: return h.getLtv_percent();
+            case GROSS_RENT_ESTIMATE: return h.getGross_rent_estimate();
+            default: return h.getClosing_date() == null ? Double.NaN : h.getClosing_date().toEpochDay();
+        }
+    }
+
+    /**
+     * Map a value of the field to its sort key
+     * @param value the value, epoch days for the closing date, NaN for a missing closing date
+     * @return a key that orders like the value
+     */
+    public int key(double value) {
+        if (this == CLOSING_DATE) {
+            return Double.isNaN(value) ? NO_VALUE : (int) value;
+        }
+        int bits = Float.floatToIntBits((float) value + 0.0f); // -0.0 becomes 0.0
+        return bits >= 0 ? bits : bits ^ Integer.MAX_VALUE;
+    }
+
+    /**
+     * Parse a value of the field from a request
+     * @param text a number, or an ISO date for the closing date
+     * @return the value, epoch days for the closing date
+     * @throws IllegalArgumentException if the text is not a value of the field
+     */
+    public double parse(String text) {
+        if (this == CLOSING_DATE) {
+            try {
+                return LocalDate.parse(text).toEpochDay();
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Not a date: " + text, e);
+            }
+        }
+        return Float.parseFloat(text);
+    }
+
+    /**
+     * Format a value of the field for a request, the inverse of {@link #parse(String)}
+     * @param value the value, epoch days for the closing date
+     * @return the text of the value
+     */
+    public String format(double value) {
+        if (this == CLOSING_DATE) {
+            return Double.isNaN(value) ? "" : LocalDate.ofEpochDay((long) value).toString();
+        }
+        return Float.toString((float) value);
+    }
+}
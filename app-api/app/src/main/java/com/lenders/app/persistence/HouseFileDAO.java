@@ -1,28 +1,62 @@
 package com.lenders.app.persistence;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.ApplicationApproval;
 import com.lenders.app.model.House;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.logging.Logger;
 
 /**
  * Implements the classes and functionality for JSON based House persistence
+ * <p>
+ * Both maps are guarded by a single {@link StampedLock}. Lookups use optimistic reads and
+ * only fall back to a read lock when a write overlapped them. Writers hold the write lock
+ * just long enough to change the maps and capture what must be written to disk; the disk
+ * write itself happens after the lock is released, so reads never wait on persistence I/O.
+ * Disk writes are applied in the same order as the in-memory changes they belong to.
+ * <p>
+ * House applications are only used by admins, so they are held in a {@link LazyCollection}:
+ * read on first use and dropped again once they have been idle for a while.
+ * <p>
+ * The houses are indexed by a {@link HouseIndex}, changed together with the map under the
+ * write lock, so searches cost time proportional to their matches. The free text of both the
+ * houses and the applications is indexed by a {@link HouseTextIndex} each; the one of the
+ * applications is built when they are read and dropped with them. The cities and addresses of
+ * the houses are kept in a {@link HouseAutocomplete} each for type-ahead.
  *
  * @author Matthew Morrison
  */
+@Component
+@Profile("!embedded")
 public class HouseFileDAO implements HouseDAO{
 
     private static final Logger LOG = Logger.getLogger(HouseFileDAO.class.getName());
 
-    Map<Integer, House> houses; // local cache of all houses
+    IdMap<House> houses; // local cache of all houses
 
-    Map<Integer, House> houseApplications; // local cache of all house applications (to be approved/declined)
+    private final HouseIndex houseIndex = new HouseIndex(); // secondary indexes of the houses for searches
+
+    private final HouseTextIndex houseText = new HouseTextIndex(); // free text of the houses
+
+    private final HouseAutocomplete cityCompletions = new HouseAutocomplete(); // cities of the houses by listings
+
+    private final HouseAutocomplete addressCompletions = new HouseAutocomplete();
+
+    private final HouseTextIndex applText = new HouseTextIndex(); // free text of the applications while they are loaded
+
+    LazyCollection<House> houseApplications; // house applications (to be approved/declined), read on first use
 
     private ObjectMapper objectMapper;
 
@@ -34,19 +68,90 @@ public class HouseFileDAO implements HouseDAO{
 
     private String applFilename; // json filename for applications
 
+    private static final String HOUSES = "houses"; // journal collection names
+
+    private static final String APPLICATIONS = "applications";
+
+    private Journal journal; // change log of both maps, null when journaling is disabled
+
+    private int checkpointInterval; // journal entries written before the files are rewritten without a checkpointer
+
+    private Checkpointer checkpointer; // rewrites the files in the background, null to rewrite them while persisting
+
+    private SegmentedStore<House> houseSegments; // rewrite only changed segments, null when whole files are rewritten
+
+    private SegmentedStore<House> applSegments;
+
+    private final StampedLock lock = new StampedLock(); // guards both maps
+
+    private long lastChange; // sequence number of the latest in-memory change, guarded by lock
+
+    private final ReentrantLock persistLock = new ReentrantLock(); // orders the disk writes
+
+    private final Condition persistTurn = persistLock.newCondition();
+
+    private long lastPersisted; // sequence number of the latest change written to disk, guarded by persistLock
+
+    private boolean applJournaled; // the journal holds application changes, guarded by persistLock
+
+    private boolean checkpointing; // a checkpoint is writing the files, guarded by persistLock
+
+    /**
+     * A disk write captured while holding the write lock and performed after releasing it
+     */
+    @FunctionalInterface
+    private interface DiskWrite {
+        void run() throws IOException;
+    }
+
     /**
      * Constructor to instantiate the HouseFileDAO
      * @param houseFilename the filename containing all house info
      * @param applFilename the filename containing all house application info
      * @param objectMapper the object mapper between House objects and JSON
+     * @param journaled true to append each change to a journal instead of rewriting the files
+     * @param checkpointInterval number of journal entries before the files are rewritten,
+     * only used without a checkpointer
+     * @param segmented true to store both maps in segments and only rewrite the changed ones
+     * @param applIdleMillis how long the house applications may go unused before they are dropped
+     * from memory, 0 to keep them
+     * @param startupLoader loads the houses in parallel with the other DAOs during startup,
+     * null to load them before the constructor returns
+     * @param checkpointer rewrites the files from the journal in the background, null to
+     * rewrite them while persisting a change
      * @throws IOException if an error occurs when instantiating the file
      */
     public HouseFileDAO(@Value("${houses.file}") String houseFilename,
-    @Value("${houseApplications.file}") String applFilename, ObjectMapper objectMapper) throws IOException {
+    @Value("${houseApplications.file}") String applFilename, ObjectMapper objectMapper,
+    @Value("${houses.journal.enabled:false}") boolean journaled,
+    @Value("${houses.journal.checkpointInterval:1000}") int checkpointInterval,
+    @Value("${houses.segmented.enabled:false}") boolean segmented,
+    @Value("${houseApplications.cache.idleMillis:600000}") long applIdleMillis,
+    StartupLoader startupLoader, Checkpointer checkpointer) throws IOException {
         this.houseFilename = houseFilename;
         this.applFilename = applFilename;
         this.objectMapper = objectMapper;
-        load();
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointer = checkpointer;
+        if (segmented) {
+            houseSegments = new SegmentedStore<>(houseFilename, objectMapper, House[].class, House::getId,
+                    SegmentedStore.DEFAULT_SEGMENT_SIZE);
+            applSegments = new SegmentedStore<>(applFilename, objectMapper, House[].class, House::getId,
+                    SegmentedStore.DEFAULT_SEGMENT_SIZE);
+        }
+        if (journaled) {
+            journal = new Journal(houseFilename + ".journal", objectMapper);
+        }
+
+        // applications are only reviewed by admins, so they are not read until first used
+        houses = new IdMap<>();
+        houseApplications = new LazyCollection<>("house applications", applIdleMillis,
+                this::loadApplications, this::releaseApplications);
+        if (startupLoader == null) {
+            loadHouses();
+        } else {
+            startupLoader.load("houses", this::loadHouses);
+        }
     }
 
     /**
@@ -70,83 +175,428 @@ public class HouseFileDAO implements HouseDAO{
     }
 
     /**
-     * Load all info on the house and house application file
+     * Load the houses and apply the house changes in the journal on top of them
      *
-     * @throws IOException if an error occurs when reading the file
+     * @throws IOException if an error occurs when reading the file or the journal
      */
-    private void load() throws IOException {
-        houses = new TreeMap<>();
-        nextIdHouses = 0;
+    private void loadHouses() throws IOException {
+        load(HOUSES, houses, houseFilename, houseSegments);
+        nextIdHouses = Math.max(houses.maxKey(), 0) + 1;
+        if (journal != null) {
+            nextIdHouses = Math.max(nextIdHouses, replayJournal(HOUSES, houses, houseSegments) + 1);
+            if (checkpointer != null) {
+                checkpointer.register("houses", journal, this::checkpoint);
+            }
+        }
+        houseIndex.rebuild(houses);
+        houseText.rebuild(houses);
+        cityCompletions.rebuild(houses, House::getCity);
+        addressCompletions.rebuild(houses, House::getAddress);
+    }
 
-        House[] houseArray = objectMapper.readValue(new File(houseFilename), House[].class);
-        House[] applArray = objectMapper.readValue(new File(applFilename), House[].class);
+    /**
+     * Index a new or changed house for searches and completions. Called with the write lock held
+     * @param h the house to index
+     */
+    private void index(House h) {
+        houseIndex.put(h);
+        houseText.put(h);
+        cityCompletions.put(h.getId(), h.getCity());
+        addressCompletions.put(h.getId(), h.getAddress());
+    }
 
-        for (House h: houseArray) {
-            houses.put(h.getId(), h);
+    /**
+     * Remove a deleted house from the indexes. Called with the write lock held
+     * @param id the id of the house
+     */
+    private void unindex(int id) {
+        houseIndex.remove(id);
+        houseText.remove(id);
+        cityCompletions.remove(id);
+        addressCompletions.remove(id);
+    }
 
-            // TODO is this necessary? test out later and see if its needed
-            // TODO or some variation on it
-            if (h.getId() > nextIdHouses) {
-                nextIdHouses = h.getId();
-            }
+    /**
+     * Load the house applications and apply the application changes in the journal on top of them.
+     * Called with the write lock held the first time the applications are used
+     *
+     * @return the map of all house applications
+     * @throws IOException if an error occurs when reading the file or the journal
+     */
+    private IdMap<House> loadApplications() throws IOException {
+        IdMap<House> map = new IdMap<>();
+        load(APPLICATIONS, map, applFilename, applSegments);
+        int maxId = map.maxKey();
+        if (journal != null) {
+            maxId = Math.max(maxId, replayJournal(APPLICATIONS, map, applSegments));
         }
+        // keep counting up after a reload, so the ids of removed applications are not handed out again
+        nextIDApplications = Math.max(nextIDApplications, Math.max(maxId, 0) + 1);
+        applText.rebuild(map);
+        return map;
+    }
 
-        nextIdHouses++;
+    /**
+     * Get the house applications, reading them if they are not in memory
+     * @return the map of all house applications
+     * @throws IOException if an error occurs when reading the file or the journal
+     */
+    private IdMap<House> applications() throws IOException {
+        IdMap<House> map = houseApplications.getIfLoaded();
+        if (map != null) {
+            return map;
+        }
 
-        for (House h: applArray) {
-            houseApplications.put(h.getId(), h);
+        long stamp = lock.writeLock();
+        try {
+            return houseApplications.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            if (h.getId() > nextIDApplications) {
-                nextIDApplications = h.getId();
+    /**
+     * Drop the house applications from memory if they have not been used for a while.
+     * Only done when every change has been written, so reading them back yields the same map,
+     * and not while a checkpoint writes the files: a reload in between could read the old
+     * applications file after the rotated journal entries were retired
+     */
+    private void releaseApplications() {
+        persistLock.lock();
+        try {
+            long stamp = lock.writeLock();
+            try {
+                if (lastPersisted == lastChange && !checkpointing && houseApplications.releaseIfIdle()) {
+                    applText.clear();
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            persistLock.unlock();
+        }
+    }
+
+    /**
+     * Load one map from its segments, or from its file if it has not been split into segments yet.
+     * Segments that were damaged while the latest checkpoint wrote them are read from their
+     * previous version and brought up to that checkpoint with the entries it retired
+     * @param collection the journal collection of the map
+     * @param map the map to load into
+     * @param filename the file of the map
+     * @param segments the segments of the map, null when segments are not used
+     * @throws IOException if an error occurs when reading the file or the segments
+     */
+    private void load(String collection, IdMap<House> map, String filename, SegmentedStore<House> segments)
+            throws IOException {
+        if (segments != null && segments.exists()) {
+            Set<Integer> recovered = segments.load(map);
+            if (!recovered.isEmpty() && journal != null) {
+                int replayed = journal.replayPrevious(entry -> {
+                    if (collection.equals(entry.getCollection())
+                            && recovered.contains(segments.segmentOf(entry.getId()))) {
+                        apply(entry, map, segments);
+                    }
+                });
+                LOG.warning("Recovered " + collection + " segments " + recovered + " from their previous version and "
+                        + replayed + " retired journal entries");
             }
+            return;
         }
 
-        nextIDApplications++;
+        File file = new File(filename);
+        House[] houseArray = file.length() == 0 ? new House[0] : objectMapper.readValue(file, House[].class);
+        for (House h: houseArray) {
+            map.put(h.getId(), h);
+        }
+        if (segments != null) {
+            // first start in segmented mode, split the file into segments
+            segments.markAllDirty(map);
+            segments.write(segments.collect(map));
+        }
     }
 
     /**
-     * Saves the house and house application maps into the file as an array of JSON objects
-     *
-     * @return true if the houses were written successfully
+     * Apply every change to one collection recorded in the journal since the last checkpoint
+     * on top of its loaded file
      *
-     * @throws IOException when file cannot be accessed or written to
+     * @param collection the collection to replay
+     * @param map the loaded map of the collection
+     * @param segments the segments of the collection, null when segments are not used
+     * @return the highest id put by the replayed changes, 0 if there were none
+     * @throws IOException if an error occurs when reading the journal
      */
-    private boolean save() throws IOException {
-        House[] houses = getHouses();
-        House[] applications = getHouses();
-        objectMapper.writeValue(new File(houseFilename), houses);
-        objectMapper.writeValue(new File(applFilename), applications);
-        
+    private int replayJournal(String collection, IdMap<House> map, SegmentedStore<House> segments)
+            throws IOException {
+        int[] maxId = {0};
+        int[] replayed = {0};
+        journal.replay(entry -> {
+            if (!collection.equals(entry.getCollection())) {
+                if (APPLICATIONS.equals(entry.getCollection())) {
+                    applJournaled = true; // must be folded into the applications file at the next checkpoint
+                }
+                return;
+            }
+            replayed[0]++;
+            if (apply(entry, map, segments)) {
+                maxId[0] = Math.max(maxId[0], entry.getId());
+            }
+        });
+        LOG.info("Replayed " + replayed[0] + " " + collection + " journal entries");
+        return maxId[0];
+    }
+
+    /**
+     * Apply one journal entry to a loaded map
+     * @param entry the entry to apply
+     * @param map the map of the entry's collection
+     * @param segments the segments of the map, null when segments are not used
+     * @return true if the entry put a house, false if it removed one
+     * @throws IOException if the house in the entry cannot be read
+     */
+    private boolean apply(JournalEntry entry, IdMap<House> map, SegmentedStore<House> segments) throws IOException {
+        if (segments != null) {
+            segments.markDirty(entry.getId()); // not in any segment until the next checkpoint
+        }
+        if (entry.getOp() == JournalEntry.Op.DELETE) {
+            map.remove(entry.getId());
+            return false;
+        }
+        map.put(entry.getId(), objectMapper.treeToValue(entry.getValue(), House.class));
         return true;
     }
 
     /**
-     * Saves the house and maps into the file as an array of JSON objects
+     * A change to one house or house application
+     * @param collection the collection the house belongs to
+     * @param id the id of the changed house
+     * @param value the new value of the house, null if it was removed
+     */
+    private record Change(String collection, int id, House value) {}
+
+    /**
+     * Capture the disk write for the changes of one operation as a single unit of work.
+     * Must be called while holding the write lock. When journaling is enabled the changes
+     * become one journal entry, a batch when there are several, so they are written with a
+     * single append and replayed all or not at all. Otherwise each changed file is rewritten
+     * once from a snapshot of its map taken now, houses before applications, so a crash in
+     * between leaves an accepted application in both files rather than in neither
      *
-     * @return true if the houses were written successfully
+     * @param changes the changes of the operation, in the order they were made
+     * @return the write to perform once the lock is released
+     * @throws IOException if the house applications cannot be read
+     */
+    private DiskWrite commit(Change... changes) throws IOException {
+        boolean housesChanged = false;
+        boolean applsChanged = false;
+        for (Change c : changes) {
+            boolean isHouse = HOUSES.equals(c.collection());
+            SegmentedStore<House> segments = isHouse ? houseSegments : applSegments;
+            if (segments != null) {
+                segments.markDirty(c.id());
+            }
+            housesChanged |= isHouse;
+            applsChanged |= !isHouse;
+        }
+
+        if (journal == null) {
+            DiskWrite writeHouses = housesChanged ? capture(houses, houseSegments, houseFilename) : null;
+            DiskWrite writeAppls = applsChanged ? capture(houseApplications.get(), applSegments, applFilename) : null;
+            return () -> {
+                if (writeHouses != null) {
+                    writeHouses.run();
+                }
+                if (writeAppls != null) {
+                    writeAppls.run();
+                }
+            };
+        }
+
+        List<JournalEntry> entries = new ArrayList<>(changes.length);
+        for (Change c : changes) {
+            entries.add(c.value() == null ? JournalEntry.delete(c.collection(), c.id())
+                    : JournalEntry.put(c.collection(), c.id(), objectMapper.valueToTree(c.value())));
+        }
+        JournalEntry entry = entries.size() == 1 ? entries.get(0) : JournalEntry.batch(entries);
+        boolean withAppls = applsChanged;
+        return () -> {
+            journal.append(entry);
+            applJournaled |= withAppls;
+            if (checkpointer == null && journal.size() >= checkpointInterval) {
+                checkpoint();
+            }
+        };
+    }
+
+    /**
+     * Capture the rewrite of one map's file, or of its changed segments
+     * @param map the changed map
+     * @param segments the segments of the map, null when segments are not used
+     * @param filename the file of the map
+     * @return the write to perform once the lock is released
+     */
+    private DiskWrite capture(IdMap<House> map, SegmentedStore<House> segments, String filename) {
+        if (segments != null) {
+            List<SegmentedStore.Segment<House>> changed = segments.collect(map);
+            return () -> segments.write(changed);
+        }
+        House[] snapshot = map.snapshot(House[]::new);
+        File file = new File(filename);
+        return () -> Checkpointer.writeAtomically(file, f -> objectMapper.writeValue(f, snapshot));
+    }
+
+    /**
+     * Perform the disk write of a change once every earlier change has been written.
+     * Must be called after releasing the write lock
+     *
+     * @param seq the sequence number the change was given under the write lock
+     * @param write the disk write of the change
      *
      * @throws IOException when file cannot be accessed or written to
      */
-    private boolean saveHouses() throws IOException {
-        House[] houses = getHouses();
-        objectMapper.writeValue(new File(houseFilename), houses);
-        return true;
+    private void persist(long seq, DiskWrite write) throws IOException {
+        persistLock.lock();
+        try {
+            while (lastPersisted != seq - 1) {
+                persistTurn.awaitUninterruptibly();
+            }
+            try {
+                write.run();
+            } finally {
+                lastPersisted = seq;
+                persistTurn.signalAll();
+            }
+        } finally {
+            persistLock.unlock();
+        }
     }
 
     /**
-     * Saves the house application maps into the file as an array of JSON objects
-     *
-     * @return true if the houses were written successfully
+     * Rewrite the files from a point-in-time snapshot of the maps and truncate the journal.
+     * The snapshot is taken and the journal rotated under the persist lock, so no journal entry
+     * is written in between, and the files are written after releasing it. Changes persisted
+     * meanwhile go to the new journal and are replayed on top of the new files.
+     * The applications file is only rewritten when the journal holds application changes,
+     * reading the applications back first if they were dropped from memory
      *
      * @throws IOException when file cannot be accessed or written to
      */
-    private boolean saveAppls() throws IOException {
-        House[] applications = getHouses();
-        objectMapper.writeValue(new File(applFilename), applications);
-        return true;
+    private void checkpoint() throws IOException {
+        DiskWrite write;
+        boolean withAppls;
+        persistLock.lock();
+        try {
+            withAppls = applJournaled;
+            if (withAppls) {
+                applications(); // not dropped again until the checkpoint is done, so reading it below never loads
+            }
+            write = snapshot(withAppls);
+            journal.rotate();
+            applJournaled = false;
+            checkpointing = true;
+        } finally {
+            persistLock.unlock();
+        }
+
+        try {
+            write.run();
+            journal.finishCheckpoint();
+        } catch (IOException | RuntimeException e) {
+            persistLock.lock();
+            try {
+                applJournaled |= withAppls; // the segments that were not written are still dirty
+            } finally {
+                persistLock.unlock();
+            }
+            throw e;
+        } finally {
+            persistLock.lock();
+            try {
+                checkpointing = false;
+            } finally {
+                persistLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Capture what a checkpoint writes under the read lock
+     * @param withAppls true to include the house applications
+     * @return the write of the captured files or segments
+     * @throws IOException if the applications cannot be read
+     */
+    private DiskWrite snapshot(boolean withAppls) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            if (houseSegments != null) {
+                List<SegmentedStore.Segment<House>> changedHouses = houseSegments.collect(houses);
+                List<SegmentedStore.Segment<House>> changedAppls = withAppls
+                        ? applSegments.collect(houseApplications.get()) : List.of();
+                return () -> {
+                    houseSegments.write(changedHouses);
+                    applSegments.write(changedAppls);
+                };
+            }
+
+            House[] houseSnapshot = houses.snapshot(House[]::new);
+            House[] applSnapshot = withAppls ? houseApplications.get().snapshot(House[]::new) : null;
+            return () -> {
+                Checkpointer.writeAtomically(new File(houseFilename), f -> objectMapper.writeValue(f, houseSnapshot));
+                if (applSnapshot != null) {
+                    Checkpointer.writeAtomically(new File(applFilename), f -> objectMapper.writeValue(f, applSnapshot));
+                }
+            };
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
+    /**
+     * Look up a house with an optimistic read, retrying under the read lock if a write overlapped it
+     * @param map the map to look in
+     * @param id the id of the house
+     * @return the house, or null if there is none
+     */
+    private House read(IdMap<House> map, int id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                House h = map.get(id);
+                if (lock.validate(stamp)) {
+                    return h;
+                }
+            } catch (RuntimeException e) {
+                // the map was changed under the optimistic read, retry under the read lock
+            }
+        }
 
+        stamp = lock.readLock();
+        try {
+            return map.get(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the shared snapshot of a map, only taking the read lock when it has to be rebuilt
+     * @param map the map to snapshot
+     * @return the shared array of all houses in the map
+     */
+    private House[] readAll(IdMap<House> map) {
+        long stamp = lock.tryOptimisticRead();
+        House[] cached = map.cachedSnapshot();
+        if (cached != null && lock.validate(stamp)) {
+            return cached;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return map.snapshot(House[]::new);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
 
     /**
      * Create and save a new {@linkplain House house} to the system
@@ -156,17 +606,21 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House createHouse(House h) throws IOException {
-        synchronized (houses) {
-            House newH = new House(getNextId(), h.getAddress(), h.getZipcode(),
-                    h.getCity(), h.getSqft(), h.isClosed_on(), h.getClosing_date(),
-                    h.getLoan_amount(), h.getLtv_percent(), h.getRehab_cost(),
-                    h.getRehab_loan(), h.getRehab_overview(), h.getTurn_around_date(),
-                    h.getGross_rent_estimate(), h.getCondition(), h.getExit_strategy(),
-                    h.getUnitType(), h.getInterest());
+        House newH;
+        DiskWrite write;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
+            newH = copy(h, getNextId(), h.getInterest());
             houses.put(newH.getId(), newH);
-            saveHouses();
-            return newH;
+            index(newH);
+            write = commit(new Change(HOUSES, newH.getId(), newH));
+            seq = ++lastChange;
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        persist(seq, write);
+        return newH;
     }
 
     /**
@@ -177,17 +631,21 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House createHouseApplication(House h) throws IOException {
-        synchronized (houseApplications) {
-            House newH = new House(getNextApplId(), h.getAddress(), h.getZipcode(),
-                    h.getCity(), h.getSqft(), h.isClosed_on(), h.getClosing_date(),
-                    h.getLoan_amount(), h.getLtv_percent(), h.getRehab_cost(),
-                    h.getRehab_loan(), h.getRehab_overview(), h.getTurn_around_date(),
-                    h.getGross_rent_estimate(), h.getCondition(), h.getExit_strategy(),
-                    h.getUnitType(), 0);
-            houseApplications.put(newH.getId(), newH);
-            saveAppls();
-            return newH;
+        House newH;
+        DiskWrite write;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
+            newH = copy(h, getNextApplId(), 0);
+            houseApplications.get().put(newH.getId(), newH);
+            applText.put(newH);
+            write = commit(new Change(APPLICATIONS, newH.getId(), newH));
+            seq = ++lastChange;
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        persist(seq, write);
+        return newH;
     }
 
     /**
@@ -199,27 +657,89 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House acceptApplication(int applId, float interest) throws IOException {
+        House newH;
+        DiskWrite write;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
+            House accHouse = houseApplications.get().remove(applId);
+            if (accHouse == null) {
+                return null;
+            }
+            applText.remove(applId);
+            newH = copy(accHouse, getNextId(), interest);
+            houses.put(newH.getId(), newH);
+            index(newH);
 
-        House accHouse;
-
-        synchronized (houseApplications) {
-            accHouse = houseApplications.get(applId);
-            deleteAppl(applId);
+            write = commit(new Change(APPLICATIONS, applId, null), new Change(HOUSES, newH.getId(), newH));
+            seq = ++lastChange;
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        persist(seq, write);
+        return newH;
+    }
 
-        synchronized (houses) {
-            House newH = new House(getNextId(), accHouse.getAddress(), accHouse.getZipcode(),
-            accHouse.getCity(), accHouse.getSqft(), accHouse.isClosed_on(), accHouse.getClosing_date(),
-            accHouse.getLoan_amount(), accHouse.getLtv_percent(), accHouse.getRehab_cost(),
-            accHouse.getRehab_loan(), accHouse.getRehab_overview(), accHouse.getTurn_around_date(),
-            accHouse.getGross_rent_estimate(), accHouse.getCondition(), accHouse.getExit_strategy(),
-            accHouse.getUnitType(), interest);
-            houses.put(newH.getId(), newH);
-            save();
-            return newH;
+    /**
+     * Accept several house applications at once. All of them are moved under one write lock
+     * and saved as a single commit, one journal entry or one rewrite of each file
+     * @param approvals the applications to accept and the interest of each
+     * @return the new {@linkplain House houses} in the order of the approvals,
+     * null where the application does not exist
+     * @throws IOException if there is an issue with storage
+     */
+    @Override
+    public House[] acceptApplications(List<ApplicationApproval> approvals) throws IOException {
+        House[] accepted = new House[approvals.size()];
+        List<Change> changes = new ArrayList<>();
+        DiskWrite write;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
+            IdMap<House> appls = houseApplications.get();
+            for (int i = 0; i < accepted.length; i++) {
+                ApplicationApproval approval = approvals.get(i);
+                House accHouse = appls.remove(approval.getApplId());
+                if (accHouse == null) {
+                    continue; // unknown, or listed twice
+                }
+                applText.remove(approval.getApplId());
+                House newH = copy(accHouse, getNextId(), approval.getInterest());
+                houses.put(newH.getId(), newH);
+                index(newH);
+                accepted[i] = newH;
+
+                changes.add(new Change(APPLICATIONS, approval.getApplId(), null));
+                changes.add(new Change(HOUSES, newH.getId(), newH));
+            }
+            if (changes.isEmpty()) {
+                return accepted;
+            }
+
+            write = commit(changes.toArray(new Change[0]));
+            seq = ++lastChange;
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        persist(seq, write);
+        return accepted;
     }
 
+    /**
+     * Copy a house under a new id and interest, as it is listed or accepted
+     * @param h the house to copy
+     * @param id the id of the copy
+     * @param interest the interest of the copy
+     * @return the copy
+     */
+    private static House copy(House h, int id, float interest) {
+        return new House(id, h.getAddress(), h.getZipcode(),
+                h.getCity(), h.getSqft(), h.isClosed_on(), h.getClosing_date(),
+                h.getLoan_amount(), h.getLtv_percent(), h.getRehab_cost(),
+                h.getRehab_loan(), h.getRehab_overview(), h.getTurn_around_date(),
+                h.getGross_rent_estimate(), h.getCondition(), h.getExit_strategy(),
+                h.getUnitType(), interest);
+    }
 
     /**
      * Delete a {@linkplain House house} from the system with its id
@@ -229,13 +749,21 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public boolean deleteHouse(int id) throws IOException {
-        synchronized (houses) {
-            if (houses.containsKey(id)) {
-                houses.remove(id);
-                return saveHouses();
+        DiskWrite write;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
+            if (houses.remove(id) == null) {
+                return false;
             }
-            return false;
+            unindex(id);
+            write = commit(new Change(HOUSES, id, null));
+            seq = ++lastChange;
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        persist(seq, write);
+        return true;
     }
 
     /**
@@ -246,13 +774,21 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public boolean deleteAppl(int id) throws IOException {
-        synchronized (houseApplications) {
-            if (houseApplications.containsKey(id)) {
-                houseApplications.remove(id);
-                return saveAppls();
+        DiskWrite write;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
+            if (houseApplications.get().remove(id) == null) {
+                return false;
             }
-            return false;
+            applText.remove(id);
+            write = commit(new Change(APPLICATIONS, id, null));
+            seq = ++lastChange;
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        persist(seq, write);
+        return true;
     }
 
     /**
@@ -261,11 +797,7 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House[] getHouses() {
-        ArrayList<House> houseArrayList = new ArrayList<>(houses.values());
-
-        House[] houseList = new House[houseArrayList.size()];
-        houseArrayList.toArray(houseList);
-        return houseList;
+        return readAll(houses);
     }
 
     /**
@@ -274,11 +806,11 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House[] getApplHouses() {
-        ArrayList<House> applArrayList = new ArrayList<>(houseApplications.values());
-
-        House[] applList = new House[applArrayList.size()];
-        applArrayList.toArray(applList);
-        return applList;
+        try {
+            return readAll(applications());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -289,11 +821,133 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House getHouse(int id) throws IOException {
-        synchronized (houses) {
-            return houses.getOrDefault(id, null);
+        return read(houses, id);
+    }
+
+    /**
+     * Find the {@linkplain House houses} matching every criterion of a query through the indexes
+     * @param query the criteria to match
+     * @return the matching houses in id order, every house for an empty query
+     */
+    @Override
+    public House[] searchHouses(HouseQuery query) {
+        return searchHouses(query, HousePage.ALL);
+    }
+
+    /**
+     * Find a page of the {@linkplain House houses} matching every criterion of a query through the
+     * indexes, walking the sorted index of the ordered field from the cursor
+     * @param query the criteria to match
+     * @param page the order, cursor and size of the page
+     * @return the matching houses of the page in its order
+     */
+    @Override
+    public House[] searchHouses(HouseQuery query, HousePage page) {
+        if (query.isEmpty() && page.orderBy() == null) {
+            if (page.equals(HousePage.ALL)) {
+                return readAll(houses);
+            }
+            long stamp = lock.readLock();
+            try {
+                return houses.valuesAfter(page.hasCursor() ? page.afterId() : Integer.MIN_VALUE, page.limit())
+                        .toArray(new House[0]);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long stamp = lock.readLock();
+        try {
+            int[] ids = houseIndex.search(query, page);
+            House[] matches = new House[ids.length];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = houses.get(ids[i]);
+            }
+            return matches;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Find the {@linkplain House houses} whose address, city or rehab overview contain every term
+     * of a text through the text index
+     * @param text the text to search for, every term also matches as a prefix
+     * @param limit the most houses to return
+     * @return the best matching houses, best first
+     */
+    @Override
+    public House[] findHouses(String text, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return lookup(houses, houseText.search(text, limit));
+        } finally {
+            lock.unlockRead(stamp);
         }
     }
 
+    /**
+     * Find the {@linkplain House house} applications whose address, city or rehab overview contain
+     * every term of a text through the text index, reading the applications if they are not in memory
+     * @param text the text to search for, every term also matches as a prefix
+     * @param limit the most house applications to return
+     * @return the best matching house applications, best first
+     * @throws IOException if the applications cannot be read
+     */
+    @Override
+    public House[] findApplications(String text, int limit) throws IOException {
+        while (true) {
+            IdMap<House> appls = applications();
+            long stamp = lock.readLock();
+            try {
+                if (houseApplications.getIfLoaded() == appls) { // not dropped in between, so indexed by applText
+                    return lookup(appls, applText.search(text, limit));
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Complete a typed prefix to the cities with the most houses
+     * @param prefix the typed prefix
+     * @param limit the most suggestions to return
+     * @return the suggestions, the most listed first
+     */
+    @Override
+    public HouseAutocomplete.Suggestion[] completeCity(String prefix, int limit) {
+        return complete(cityCompletions, prefix, limit);
+    }
+
+    /**
+     * Complete a typed prefix to the addresses with the most houses
+     * @param prefix the typed prefix
+     * @param limit the most suggestions to return
+     * @return the suggestions, the most listed first
+     */
+    @Override
+    public HouseAutocomplete.Suggestion[] completeAddress(String prefix, int limit) {
+        return complete(addressCompletions, prefix, limit);
+    }
+
+    private HouseAutocomplete.Suggestion[] complete(HouseAutocomplete completions, String prefix, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return completions.complete(prefix, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static House[] lookup(IdMap<House> map, int[] ids) {
+        House[] found = new House[ids.length];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = map.get(ids[i]);
+        }
+        return found;
+    }
+
     /**
      * Get a single {@linkplain House house} application using its id
      * @param id the id of the house appliation to fine
@@ -302,9 +956,7 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House getAppl(int id) throws IOException{
-        synchronized (houseApplications) {
-            return houseApplications.getOrDefault(id, null);
-        }
+        return read(applications(), id);
     }
 
     /**
@@ -315,14 +967,22 @@ public class HouseFileDAO implements HouseDAO{
      */
     @Override
     public House updatehouse(House house) throws IOException {
-        synchronized (houses) {
+        DiskWrite write;
+        long seq;
+        long stamp = lock.writeLock();
+        try {
             if (!houses.containsKey(house.getId())) {
                 return null;
             }
 
             houses.put(house.getId(), house);
-            save();
-            return house;
+            index(house);
+            write = commit(new Change(HOUSES, house.getId(), house));
+            seq = ++lastChange;
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        persist(seq, write);
+        return house;
     }
 }
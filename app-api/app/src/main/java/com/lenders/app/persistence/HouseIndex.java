@@ -0,0 +1,466 @@
+package com.lenders.app.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import com.lenders.app.model.House;
+
+/**
+ * In-memory secondary indexes of houses by city, zipcode, condition, exit strategy and unit type,
+ * and sorted indexes of the {@linkplain HouseField numeric fields}.
+ * <p>
+ * City and zipcode have many values, each with few houses, so they map a value to the sorted ids
+ * of its houses. The three enums have only a handful of values each, so every value has a
+ * {@link BitSet} with the bit of each of its house ids set; house ids are handed out sequentially,
+ * so the bitmaps stay dense. A {@linkplain HouseQuery search} with a city or zipcode walks the ids
+ * of its most selective one and checks each against the other criteria. A search on the enums
+ * alone ORs the bitmaps of the values allowed for each enum and ANDs the results together, a word
+ * at a time, then walks the set bits of the result. Either way its cost follows the number of
+ * matches rather than the number of houses.
+ * <p>
+ * Each numeric field has a sorted set of its sort key and the house id packed into one long, so
+ * entries order by value and then by id and every entry is unique. A search ordered by a field
+ * walks that set from the page cursor, within the range of the field if the query has one, and
+ * stops once the page is full; the entries are checked against the enum bitmaps and the
+ * remembered values of the house. That serves range scans, highest-first top-K and keyset
+ * pagination alike, at a cost that follows the entries walked rather than the number of houses.
+ * A search with a city or zipcode collects its few matches and sorts them instead.
+ * <p>
+ * Ids that do not fit a dense bitmap, negative ones or ones far past the others, are kept aside
+ * and checked one by one. The values a house was indexed under are remembered by id, so a house
+ * that was changed in place is still removed from the right entries. Like {@link IdMap}, this
+ * class is not thread safe; the owning DAO changes it under its write lock and searches it under
+ * its read lock.
+ *
+ * @author Matthew Morrison
+ */
+public class HouseIndex {
+
+    private static final int MAX_BITMAP_ID = 1 << 26; // ids from here on are kept aside, bounding each bitmap to 8 MB
+
+    /**
+     * The values a house is indexed under
+     */
+    private record Keys(String city, int zipcode, House.Condition condition, House.ExitStrategy exitStrategy,
+            House.Type unitType, int[] sortKeys) {
+
+        boolean matches(HouseQuery query) {
+            return (query.city() == null || HouseQuery.normalizeCity(query.city()).equals(city))
+                    && (query.zipcode() == null || query.zipcode() == zipcode)
+                    && HouseQuery.allows(query.conditions(), condition)
+                    && HouseQuery.allows(query.exitStrategies(), exitStrategy)
+                    && HouseQuery.allows(query.unitTypes(), unitType)
+                    && inRanges(query);
+        }
+
+        boolean inRanges(HouseQuery query) {
+            if (query.hasRanges()) {
+                for (HouseQuery.Range range : query.ranges()) {
+                    if (!range.contains(sortKeys[range.field().ordinal()])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Map<Integer, Keys> indexed = new HashMap<>();
+
+    private final TreeSet<Integer> sparseIds = new TreeSet<>(); // indexed ids outside the bitmaps
+
+    private final Map<String, TreeSet<Integer>> byCity = new HashMap<>();
+
+    private final Map<Integer, TreeSet<Integer>> byZipcode = new HashMap<>();
+
+    private final Map<House.Condition, BitSet> byCondition = new EnumMap<>(House.Condition.class);
+
+    private final Map<House.ExitStrategy, BitSet> byExitStrategy = new EnumMap<>(House.ExitStrategy.class);
+
+    private final Map<House.Type, BitSet> byUnitType = new EnumMap<>(House.Type.class);
+
+    private final Map<HouseField, TreeSet<Long>> sorted = new EnumMap<>(HouseField.class);
+
+    /**
+     * Create empty indexes
+     */
+    public HouseIndex() {
+        for (HouseField field : HouseField.values()) {
+            sorted.put(field, new TreeSet<>());
+        }
+    }
+
+    /**
+     * Index every house of a map, replacing what was indexed before
+     * @param houses the houses to index
+     */
+    public void rebuild(IdMap<House> houses) {
+        indexed.clear();
+        sparseIds.clear();
+        byCity.clear();
+        byZipcode.clear();
+        byCondition.clear();
+        byExitStrategy.clear();
+        byUnitType.clear();
+        sorted.values().forEach(TreeSet::clear);
+        for (House h : houses) {
+            put(h);
+        }
+    }
+
+    /**
+     * Index a house, replacing the entries of any house indexed under the same id
+     * @param h the house to index
+     */
+    public void put(House h) {
+        int id = h.getId();
+        remove(id);
+        int[] sortKeys = new int[HouseField.values().length];
+        for (HouseField field : HouseField.values()) {
+            sortKeys[field.ordinal()] = field.key(field.value(h));
+            sorted.get(field).add(entry(sortKeys[field.ordinal()], id));
+        }
+        Keys keys = new Keys(HouseQuery.normalizeCity(h.getCity()), h.getZipcode(), h.getCondition(),
+                h.getExit_strategy(), h.getUnitType(), sortKeys);
+        indexed.put(id, keys);
+        add(byCity, keys.city(), id);
+        add(byZipcode, keys.zipcode(), id);
+        if (!inBitmaps(id)) {
+            sparseIds.add(id);
+            return;
+        }
+        set(byCondition, keys.condition(), id, true);
+        set(byExitStrategy, keys.exitStrategy(), id, true);
+        set(byUnitType, keys.unitType(), id, true);
+    }
+
+    /**
+     * Remove a house from the indexes
+     * @param id the id of the house
+     */
+    public void remove(int id) {
+        Keys keys = indexed.remove(id);
+        if (keys == null) {
+            return;
+        }
+        for (HouseField field : HouseField.values()) {
+            sorted.get(field).remove(entry(keys.sortKeys()[field.ordinal()], id));
+        }
+        remove(byCity, keys.city(), id);
+        remove(byZipcode, keys.zipcode(), id);
+        if (!inBitmaps(id)) {
+            sparseIds.remove(id);
+            return;
+        }
+        set(byCondition, keys.condition(), id, false);
+        set(byExitStrategy, keys.exitStrategy(), id, false);
+        set(byUnitType, keys.unitType(), id, false);
+    }
+
+    /**
+     * Find the ids of the houses matching every criterion of a query
+     * @param query the criteria
+     * @return the matching ids in ascending order
+     */
+    public int[] search(HouseQuery query) {
+        return search(query, HousePage.ALL);
+    }
+
+    /**
+     * Find a page of the ids of the houses matching every criterion of a query
+     * @param query the criteria
+     * @param page the order, cursor and size of the page
+     * @return the matching ids of the page in its order
+     */
+    public int[] search(HouseQuery query, HousePage page) {
+        List<TreeSet<Integer>> postings = new ArrayList<>(2);
+        if (query.city() != null && !posting(postings, byCity, HouseQuery.normalizeCity(query.city()))
+                || query.zipcode() != null && !posting(postings, byZipcode, query.zipcode())) {
+            return new int[0]; // no house has the city or zipcode
+        }
+
+        if (!postings.isEmpty()) {
+            // few ids to walk, checking their remembered values is cheaper than combining bitmaps
+            postings.sort(Comparator.comparingInt(TreeSet::size));
+            IntStream.Builder ids = IntStream.builder();
+            for (Integer id : postings.get(0)) {
+                if (indexed.get(id).matches(query)) {
+                    ids.add(id);
+                }
+            }
+            return select(ids.build().toArray(), page);
+        }
+        if (page.orderBy() != null) {
+            return walk(query, page);
+        }
+        if (hasEnums(query)) {
+            return bitmapSearch(query, page);
+        }
+
+        if (!query.hasRanges()) {
+            return select(indexed.keySet().stream().mapToInt(Integer::intValue).sorted().toArray(), page);
+        }
+        // ranges alone in id order, collect the first range and check the others
+        HouseQuery.Range first = query.ranges().get(0);
+        IntStream.Builder ids = IntStream.builder();
+        for (long entry : rangeOf(first.field(), first, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            int id = idOf(entry);
+            if (indexed.get(id).inRanges(query)) {
+                ids.add(id);
+            }
+        }
+        int[] matches = ids.build().toArray();
+        Arrays.sort(matches);
+        return select(matches, page);
+    }
+
+    /**
+     * Count the houses matching every criterion of a query
+     * @param query the criteria, must not be {@linkplain HouseQuery#isEmpty() empty}
+     * @return the number of matching houses
+     */
+    public int count(HouseQuery query) {
+        if (query.city() != null || query.zipcode() != null || query.hasRanges()) {
+            return search(query).length;
+        }
+        return sparseMatches(sparseIds, query).length + combine(query).cardinality();
+    }
+
+    /**
+     * Search on the enum bitmaps in id order, the ids kept aside are merged in at both ends of the bitmap
+     */
+    private int[] bitmapSearch(HouseQuery query, HousePage page) {
+        int after = page.afterId() == null ? Integer.MIN_VALUE : page.afterId();
+        int[] below = after >= 0 ? new int[0] : sparseMatches(sparseIds.subSet(after, false, 0, false), query);
+        int[] above = sparseMatches(sparseIds.tailSet(Math.max(after, -1), false), query);
+        BitSet bitmap = combine(query);
+        int[] matches = new int[(int) Math.min(page.limit(), (long) below.length + bitmap.cardinality() + above.length)];
+        int next = Math.min(below.length, matches.length);
+        System.arraycopy(below, 0, matches, 0, next);
+
+        long from = Math.max(after + 1L, 0);
+        long[] words = bitmap.toLongArray();
+        for (int w = (int) (from >>> 6); w < words.length && next < matches.length; w++) {
+            long word = w == from >>> 6 ? words[w] & -1L << (from & 63) : words[w];
+            for (; word != 0 && next < matches.length; word &= word - 1) {
+                int id = w * 64 + Long.numberOfTrailingZeros(word);
+                if (!query.hasRanges() || indexed.get(id).inRanges(query)) {
+                    matches[next++] = id;
+                }
+            }
+        }
+        int rest = Math.min(above.length, matches.length - next);
+        System.arraycopy(above, 0, matches, next, rest);
+        return next + rest == matches.length ? matches : Arrays.copyOf(matches, next + rest);
+    }
+
+    /**
+     * Search by walking the sorted index of the field the page is ordered by
+     */
+    private int[] walk(HouseQuery query, HousePage page) {
+        HouseField field = page.orderBy();
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        if (page.hasCursor()) {
+            int key = field.key(page.afterValue());
+            if (page.descending()) {
+                long cursor = entry(key, page.afterId() == null ? Integer.MIN_VALUE : page.afterId());
+                if (cursor == Long.MIN_VALUE) {
+                    return new int[0];
+                }
+                to = cursor - 1;
+            } else {
+                long cursor = entry(key, page.afterId() == null ? Integer.MAX_VALUE : page.afterId());
+                if (cursor == Long.MAX_VALUE) {
+                    return new int[0];
+                }
+                from = cursor + 1;
+            }
+        }
+        HouseQuery.Range range = null;
+        if (query.hasRanges()) {
+            range = query.ranges().stream().filter(r -> r.field() == field).findFirst().orElse(null);
+        }
+        NavigableSet<Long> entries = rangeOf(field, range, from, to);
+        if (page.descending()) {
+            entries = entries.descendingSet();
+        }
+
+        BitSet bitmap = combine(query);
+        int[] ids = new int[Math.min(page.limit(), indexed.size())];
+        int next = 0;
+        for (Long entry : entries) {
+            if (next == ids.length) {
+                break;
+            }
+            int id = idOf(entry);
+            if (inBitmaps(id) ? (bitmap == null || bitmap.get(id)) && indexed.get(id).inRanges(query)
+                    : indexed.get(id).matches(query)) {
+                ids[next++] = id;
+            }
+        }
+        return next == ids.length ? ids : Arrays.copyOf(ids, next);
+    }
+
+    /**
+     * Get the entries of a sorted index within a range of its field and within bounds on the entries
+     * @param field the field of the index
+     * @param range the range of the field, null for every value
+     * @param from the lowest entry
+     * @param to the highest entry
+     * @return the entries in ascending order, a view of the index
+     */
+    private NavigableSet<Long> rangeOf(HouseField field, HouseQuery.Range range, long from, long to) {
+        if (range != null && range.min() != null) {
+            from = Math.max(from, entry(field.key(range.min()), Integer.MIN_VALUE));
+        }
+        if (range != null && range.max() != null) {
+            to = Math.min(to, entry(field.key(range.max()), Integer.MAX_VALUE));
+        }
+        if (from > to) {
+            return new TreeSet<>();
+        }
+        return sorted.get(field).subSet(from, true, to, true);
+    }
+
+    /**
+     * Order ids collected from a posting and cut the page out of them
+     * @param ids matching ids in ascending order
+     * @param page the order, cursor and size of the page
+     * @return the ids of the page in its order
+     */
+    private int[] select(int[] ids, HousePage page) {
+        HouseField field = page.orderBy();
+        if (field == null) {
+            int from = 0;
+            if (page.hasCursor()) {
+                from = Arrays.binarySearch(ids, page.afterId());
+                from = from >= 0 ? from + 1 : -from - 1;
+            }
+            return Arrays.copyOfRange(ids, from, (int) Math.min(ids.length, (long) from + page.limit()));
+        }
+
+        long[] entries = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            entries[i] = entry(indexed.get(ids[i]).sortKeys()[field.ordinal()], ids[i]);
+        }
+        Arrays.sort(entries);
+        long cursor = 0;
+        if (page.hasCursor()) {
+            int key = field.key(page.afterValue());
+            cursor = page.afterId() != null ? entry(key, page.afterId())
+                    : entry(key, page.descending() ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        }
+        IntStream.Builder selected = IntStream.builder();
+        int count = 0;
+        for (int i = 0; i < entries.length && count < page.limit(); i++) {
+            long entry = entries[page.descending() ? entries.length - 1 - i : i];
+            if (!page.hasCursor() || (page.descending() ? entry < cursor : entry > cursor)) {
+                selected.add(idOf(entry));
+                count++;
+            }
+        }
+        return selected.build().toArray();
+    }
+
+    private int[] sparseMatches(Set<Integer> ids, HouseQuery query) {
+        return ids.stream().filter(id -> indexed.get(id).matches(query)).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * AND together, for every enum criterion, the OR of the bitmaps of its allowed values
+     * @param query the criteria
+     * @return a new bitmap of the ids matching every enum criterion, null if there is none
+     */
+    private BitSet combine(HouseQuery query) {
+        BitSet result = null;
+        result = and(result, byCondition, query.conditions());
+        result = and(result, byExitStrategy, query.exitStrategies());
+        result = and(result, byUnitType, query.unitTypes());
+        return result;
+    }
+
+    private <K> BitSet and(BitSet result, Map<K, BitSet> index, Set<K> allowed) {
+        if (allowed == null || allowed.isEmpty()) {
+            return result;
+        }
+        BitSet any = new BitSet();
+        for (K value : allowed) {
+            BitSet ids = index.get(value);
+            if (ids != null) {
+                any.or(ids);
+            }
+        }
+        if (result == null) {
+            return any;
+        }
+        result.and(any);
+        return result;
+    }
+
+    private static boolean hasEnums(HouseQuery query) {
+        return query.conditions() != null && !query.conditions().isEmpty()
+                || query.exitStrategies() != null && !query.exitStrategies().isEmpty()
+                || query.unitTypes() != null && !query.unitTypes().isEmpty();
+    }
+
+    /**
+     * Pack a sort key and an id into an entry of a sorted index, entries order by key and then by id
+     */
+    private static long entry(int key, int id) {
+        return (long) key << 32 | (id ^ Integer.MIN_VALUE) & 0xffffffffL;
+    }
+
+    private static int idOf(long entry) {
+        return (int) entry ^ Integer.MIN_VALUE;
+    }
+
+    private static boolean inBitmaps(int id) {
+        return id >= 0 && id < MAX_BITMAP_ID;
+    }
+
+    private static <K> boolean posting(List<TreeSet<Integer>> postings, Map<K, TreeSet<Integer>> index, K key) {
+        TreeSet<Integer> ids = index.get(key);
+        if (ids == null) {
+            return false;
+        }
+        postings.add(ids);
+        return true;
+    }
+
+    private static <K> void add(Map<K, TreeSet<Integer>> index, K key, int id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new TreeSet<>()).add(id);
+        }
+    }
+
+    private static <K> void remove(Map<K, TreeSet<Integer>> index, K key, int id) {
+        if (key == null) {
+            return;
+        }
+        TreeSet<Integer> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static <K> void set(Map<K, BitSet> index, K key, int id, boolean value) {
+        if (key == null) {
+            return;
+        }
+        BitSet ids = value ? index.computeIfAbsent(key, k -> new BitSet()) : index.get(key);
+        if (ids != null) {
+            ids.set(id, value);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.lenders.app.persistence;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.lenders.app.model.House;
+
+/**
+ * The order and the page of the results of a {@linkplain HouseDAO#searchHouses(HouseQuery, HousePage) house search}.
+ * Results are ordered by a field and then by id, or by id alone. Pages are keyset based, the next
+ * page starts right after the last house of the previous one, so paging stays cheap however deep
+ * it goes and a house created or deleted in between does not shift the pages.
+ *
+ * @param orderBy the field to order by, null to order by id alone
+ * @param descending true for the highest values first, ties are then ordered by descending id
+ * @param afterValue the ordered field of the last house of the previous page, null for the first page
+ * @param afterId the id of the last house of the previous page, null for the first page
+ * @param limit the most houses to return
+ *
+ * @author Matthew Morrison
+ */
+public record HousePage(HouseField orderBy, boolean descending, Double afterValue, Integer afterId, int limit) {
+
+    /**
+     * Every result in id order
+     */
+    public static final HousePage ALL = new HousePage(null, false, null, null, Integer.MAX_VALUE);
+
+    /**
+     * Check whether the page starts after a previous one
+     * @return true if the results before the cursor are skipped
+     */
+    public boolean hasCursor() {
+        return orderBy == null ? afterId != null : afterValue != null;
+    }
+
+    /**
+     * Pick the page out of every matching house, without any index
+     * @param matches the houses matching a query, in any order
+     * @return the houses of the page in order
+     */
+    public House[] select(House[] matches) {
+        Comparator<House> order = orderBy == null ? Comparator.comparingInt(House::getId)
+                : Comparator.<House>comparingInt(h -> orderBy.key(orderBy.value(h))).thenComparingInt(House::getId);
+        if (descending && orderBy != null) {
+            order = order.reversed();
+        }
+        return Arrays.stream(matches).filter(this::isAfterCursor).sorted(order).limit(limit).toArray(House[]::new);
+    }
+
+    private boolean isAfterCursor(House h) {
+        if (!hasCursor()) {
+            return true;
+        }
+        if (orderBy == null) {
+            return h.getId() > afterId;
+        }
+        int c = Integer.compare(orderBy.key(orderBy.value(h)), orderBy.key(afterValue));
+        if (c == 0 && afterId != null) {
+            c = Integer.compare(h.getId(), afterId);
+        }
+        // without an id the cursor is after every house with the value
+        return descending ? c < 0 : c > 0;
+    }
+}
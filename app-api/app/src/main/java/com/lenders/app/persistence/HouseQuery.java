@@ -0,0 +1,115 @@
+package com.lenders.app.persistence;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.lenders.app.model.House;
+
+/**
+ * Criteria of a {@linkplain HouseDAO#searchHouses(HouseQuery) house search}.
+ * A house matches when it matches every criterion that is set, a null criterion matches any house.
+ * The enum criteria are sets of allowed values, a house matches when its value is one of them.
+ * The range criteria bound numeric fields, a house matches when its value lies within every range
+ *
+ * @param city the city of the house, compared without regard to case or surrounding spaces
+ * @param zipcode the zipcode of the house
+ * @param conditions the allowed conditions of the house, null or empty for any
+ * @param exitStrategies the allowed exit strategies of the house, null or empty for any
+ * @param unitTypes the allowed unit types of the house, null or empty for any
+ * @param ranges the ranges the fields of the house must lie within, null or empty for any
+ *
+ * @author Matthew Morrison
+ */
+public record HouseQuery(String city, Integer zipcode, Set<House.Condition> conditions,
+        Set<House.ExitStrategy> exitStrategies, Set<House.Type> unitTypes, List<Range> ranges) {
+
+    /**
+     * An inclusive range of a numeric field, an open end for a null bound.
+     * A house with no value for the field, a missing closing date, is in no range of it
+     *
+     * @param field the field to bound
+     * @param min the lowest value, epoch days for the closing date, null for no lower bound
+     * @param max the highest value, epoch days for the closing date, null for no upper bound
+     */
+    public record Range(HouseField field, Double min, Double max) {
+
+        /**
+         * Check a {@linkplain HouseField#key(double) sort key} of the field against the range
+         * @param key the sort key of the value of a house
+         * @return true if the value lies within the range
+         */
+        boolean contains(int key) {
+            return !(field == HouseField.CLOSING_DATE && key == HouseField.NO_VALUE)
+                    && (min == null || key >= field.key(min))
+                    && (max == null || key <= field.key(max));
+        }
+    }
+
+    /**
+     * Create a query without range criteria
+     * @param city the city of the house
+     * @param zipcode the zipcode of the house
+     * @param conditions the allowed conditions of the house, null or empty for any
+     * @param exitStrategies the allowed exit strategies of the house, null or empty for any
+     * @param unitTypes the allowed unit types of the house, null or empty for any
+     */
+    public HouseQuery(String city, Integer zipcode, Set<House.Condition> conditions,
+            Set<House.ExitStrategy> exitStrategies, Set<House.Type> unitTypes) {
+        this(city, zipcode, conditions, exitStrategies, unitTypes, null);
+    }
+
+    /**
+     * Check whether no criterion is set
+     * @return true if every house matches
+     */
+    public boolean isEmpty() {
+        return city == null && zipcode == null && isAny(conditions) && isAny(exitStrategies) && isAny(unitTypes)
+                && !hasRanges();
+    }
+
+    /**
+     * Check whether any range criterion is set
+     * @return true if some field is bounded
+     */
+    public boolean hasRanges() {
+        return ranges != null && !ranges.isEmpty();
+    }
+
+    /**
+     * Check a house against every criterion, without any index
+     * @param h the house to check
+     * @return true if the house matches
+     */
+    public boolean matches(House h) {
+        return (city == null || normalizeCity(city).equals(normalizeCity(h.getCity())))
+                && (zipcode == null || zipcode == h.getZipcode())
+                && allows(conditions, h.getCondition())
+                && allows(exitStrategies, h.getExit_strategy())
+                && allows(unitTypes, h.getUnitType())
+                && (!hasRanges() || ranges.stream().allMatch(r -> r.contains(r.field().key(r.field().value(h)))));
+    }
+
+    /**
+     * Check a value against an enum criterion
+     * @param allowed the allowed values, null or empty for any
+     * @param value the value of the house
+     * @return true if the value is allowed
+     */
+    static <E> boolean allows(Set<E> allowed, E value) {
+        return isAny(allowed) || allowed.contains(value);
+    }
+
+    private static boolean isAny(Set<?> allowed) {
+        return allowed == null || allowed.isEmpty();
+    }
+
+    /**
+     * Bring a city name to the form it is indexed and compared in
+     * @param city the city name, can be null
+     * @return the trimmed lower case name, empty for null
+     */
+    static String normalizeCity(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+}
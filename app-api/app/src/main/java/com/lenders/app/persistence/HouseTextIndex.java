@@ -0,0 +1,246 @@
+package com.lenders.app.persistence;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.lenders.app.model.House;
+
+/**
+ * In-memory inverted index of the free text of houses: the address, the city and the rehab overview.
+ * <p>
+ * Text is folded to lower case without accents and split into terms of letters and digits. Each
+ * term maps to the ids of the houses that contain it and how often, weighted by field: a term in
+ * the address or city says more about a house than one in the rehab overview. The terms are
+ * kept sorted, so a query term also matches every indexed term it is a prefix of, "ro" finds
+ * "roof" and "rochester". A short prefix can be the start of thousands of terms, so it is expanded
+ * to the {@value #MAX_EXPANSIONS} terms found in the most houses, besides the query term itself;
+ * a house containing only rarer terms of the prefix is not found until the prefix is typed longer.
+ * A house matches a query when it matches every query term; matches are ranked by BM25, an
+ * exact term scoring above a longer term it is a prefix of. A search visits each indexed term a
+ * query term is a prefix of once, to count its houses and pick the expansions, and then reads the
+ * postings of the expansions only; its cost follows the number of terms starting with the query
+ * terms, which is large for a prefix of one or two letters, and the postings of the expansions,
+ * rather than the number of houses.
+ * <p>
+ * The terms a house was indexed under are remembered by id, so a house that was changed in place
+ * is still removed from the right postings. Like {@link HouseIndex}, this class is not thread
+ * safe; the owning DAO changes it under its write lock and searches it under its read lock.
+ *
+ * @author Matthew Morrison
+ */
+public class HouseTextIndex {
+
+    private static final Pattern NOT_TERM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private static final int ADDRESS_WEIGHT = 3;
+
+    private static final int CITY_WEIGHT = 2;
+
+    private static final int OVERVIEW_WEIGHT = 1;
+
+    private static final int MAX_EXPANSIONS = 64; // longer indexed terms a query prefix is expanded to at most
+
+    private static final double PREFIX_SCORE = 0.5; // share of the score of a term matched by a prefix only
+
+    private static final double K1 = 1.2; // BM25 term frequency saturation
+
+    private static final double B = 0.75; // BM25 length normalization
+
+    /**
+     * The terms a house is indexed under, with their weighted counts, and the sum of those counts
+     */
+    private record Doc(Map<String, Integer> terms, int length) {
+    }
+
+    private final TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>(); // term -> id -> weighted count
+
+    private final Map<Integer, Doc> indexed = new HashMap<>();
+
+    private long totalLength; // sum of the weighted counts of every indexed house
+
+    /**
+     * Index every house of a map, replacing what was indexed before
+     * @param houses the houses to index
+     */
+    public void rebuild(IdMap<House> houses) {
+        clear();
+        for (House h : houses) {
+            put(h);
+        }
+    }
+
+    /**
+     * Remove every house from the index
+     */
+    public void clear() {
+        postings.clear();
+        indexed.clear();
+        totalLength = 0;
+    }
+
+    /**
+     * Index a house, replacing the postings of any house indexed under the same id
+     * @param h the house to index
+     */
+    public void put(House h) {
+        int id = h.getId();
+        remove(id);
+        Map<String, Integer> terms = new HashMap<>();
+        count(terms, h.getAddress(), ADDRESS_WEIGHT);
+        count(terms, h.getCity(), CITY_WEIGHT);
+        count(terms, h.getRehab_overview(), OVERVIEW_WEIGHT);
+        int length = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), t -> new HashMap<>()).put(id, term.getValue());
+            length += term.getValue();
+        }
+        indexed.put(id, new Doc(terms, length));
+        totalLength += length;
+    }
+
+    /**
+     * Remove a house from the index
+     * @param id the id of the house
+     */
+    public void remove(int id) {
+        Doc doc = indexed.remove(id);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.terms().keySet()) {
+            Map<Integer, Integer> ids = postings.get(term);
+            if (ids != null && ids.remove(id) != null && ids.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= doc.length();
+    }
+
+    /**
+     * Find the houses matching every term of a text, best match first
+     * @param text the text to search for, every term also matches as a prefix
+     * @param limit the most ids to return
+     * @return the ids of the best matching houses, ties in id order, empty for a text without terms
+     */
+    public int[] search(String text, int limit) {
+        List<String> terms = terms(text);
+        if (terms.isEmpty() || indexed.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        // score the query terms from the fewest postings on, each narrowing the matches of the ones before
+        List<Map<Integer, Double>> scored = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Map<Integer, Double> scores = score(term);
+            if (scores.isEmpty()) {
+                return new int[0];
+            }
+            scored.add(scores);
+        }
+        scored.sort(Comparator.comparingInt(Map::size));
+        Map<Integer, Double> matches = new HashMap<>(scored.get(0));
+        for (Map<Integer, Double> scores : scored.subList(1, scored.size())) {
+            matches.entrySet().removeIf(m -> !scores.containsKey(m.getKey()));
+            matches.replaceAll((id, score) -> score + scores.get(id));
+        }
+
+        // keep the best few in a heap whose head is the worst of them
+        Comparator<Map.Entry<Integer, Double>> rank = Map.Entry.<Integer, Double>comparingByValue()
+                .reversed().thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(rank.reversed());
+        for (Map.Entry<Integer, Double> match : matches.entrySet()) {
+            best.add(match);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        int[] ids = new int[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().getKey();
+        }
+        return ids;
+    }
+
+    /**
+     * Score the houses containing a query term, or one of the indexed terms it is a prefix of
+     * that are found in the most houses
+     * @param term the query term
+     * @return the best score of each matching house
+     */
+    private Map<Integer, Double> score(String term) {
+        // keep the longer terms with the most postings in a heap whose head has the fewest of them
+        Comparator<Map.Entry<String, Map<Integer, Integer>>> fewest =
+                Comparator.<Map.Entry<String, Map<Integer, Integer>>>comparingInt(e -> e.getValue().size())
+                        .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<String, Map<Integer, Integer>>> longer = new PriorityQueue<>(fewest);
+        List<Map.Entry<String, Map<Integer, Integer>>> expansions = new ArrayList<>();
+        int housesWithAny = 0;
+        for (Map.Entry<String, Map<Integer, Integer>> posting
+                : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            housesWithAny += posting.getValue().size();
+            if (posting.getKey().equals(term)) {
+                expansions.add(posting);
+                continue;
+            }
+            if (longer.size() < MAX_EXPANSIONS) {
+                longer.add(posting);
+            } else if (fewest.compare(posting, longer.peek()) > 0) {
+                longer.poll();
+                longer.add(posting);
+            }
+        }
+        expansions.addAll(longer);
+
+        // every expansion shares the rarity of the query term, so a longer term never outranks the exact one
+        Map<Integer, Double> scores = new HashMap<>();
+        int df = Math.min(housesWithAny, indexed.size());
+        double idf = Math.log(1 + (indexed.size() - df + 0.5) / (df + 0.5));
+        double avgLength = (double) totalLength / indexed.size();
+        for (Map.Entry<String, Map<Integer, Integer>> posting : expansions) {
+            double share = posting.getKey().equals(term) ? 1 : PREFIX_SCORE;
+            for (Map.Entry<Integer, Integer> id : posting.getValue().entrySet()) {
+                int tf = id.getValue();
+                int length = indexed.get(id.getKey()).length();
+                double score = share * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+                scores.merge(id.getKey(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private static void count(Map<String, Integer> terms, String text, int weight) {
+        for (String term : terms(text)) {
+            terms.merge(term, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * Split text into terms, folded to lower case without accents
+     * @param text the text, can be null
+     * @return the terms in order, with repeats
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String folded = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String term : NOT_TERM.split(folded)) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,318 @@
+package com.lenders.app.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Map from a primitive int id to a value, ordered by id.
+ * Ids are handed out sequentially by the FileDAOs, so values are stored in a dense array
+ * indexed directly by id: a lookup is one bounds check and one array read, with no boxing
+ * and no tree nodes. Ids that would leave the array mostly empty (negative ids, or ids far
+ * beyond the current entries) are kept in a small sparse overflow map instead.
+ * <p>
+ * Every change bumps a version number. {@link #snapshot(IntFunction)} caches an array of the
+ * values and hands the same array out until the next change, so repeated reads of the whole
+ * collection cost nothing instead of allocating a fresh copy each time.
+ * <p>
+ * Like {@link TreeMap}, this class is not thread safe; callers synchronize on it.
+ *
+ * @param <V> the type of the values
+ *
+ * @author Matthew Morrison
+ */
+public class IdMap<V> implements Iterable<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final int SPARSE_SLACK = 1024; // ids this far past 4x the size still grow the array
+
+    /**
+     * Receives each id and value of the map in id order
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int id, V value);
+    }
+
+    private Object[] dense = new Object[MIN_CAPACITY]; // values indexed by id, null when absent
+
+    private int denseSize; // number of values stored in the dense array
+
+    private final TreeMap<Integer, V> sparse = new TreeMap<>(); // ids below 0 or at least dense.length
+
+    private long version; // bumped on every put and remove
+
+    private volatile Snapshot<V> snapshot; // values array built at a given version
+
+    private record Snapshot<V>(long version, V[] values) {}
+
+    /**
+     * Get the value stored for an id
+     * @param id the id to look up
+     * @return the value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        Object[] values = dense;
+        if (id >= 0 && id < values.length) {
+            return (V) values[id];
+        }
+        return sparse.isEmpty() ? null : sparse.get(id);
+    }
+
+    /**
+     * Check whether a value is stored for an id
+     * @param id the id to look up
+     * @return true if the map contains the id
+     */
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Store a value for an id, replacing any existing value
+     * @param id the id of the value
+     * @param value the value to store, must not be null
+     * @return the previous value of the id, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int id, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IdMap does not store null values");
+        }
+        version++;
+
+        if (id >= dense.length && id <= 4 * (size() + 1) + SPARSE_SLACK) {
+            grow(id);
+        }
+
+        if (id >= 0 && id < dense.length) {
+            V old = (V) dense[id];
+            dense[id] = value;
+            if (old == null) {
+                denseSize++;
+            }
+            return old;
+        }
+        return sparse.put(id, value);
+    }
+
+    /**
+     * Grow the dense array to hold the given id and move any overflow ids it now covers
+     * @param id the id the array must be able to hold
+     */
+    private void grow(int id) {
+        int capacity = Math.max(dense.length * 2, id + 1);
+        dense = Arrays.copyOf(dense, capacity);
+
+        Map<Integer, V> covered = sparse.subMap(0, true, capacity, false);
+        for (Map.Entry<Integer, V> e : covered.entrySet()) {
+            dense[e.getKey()] = e.getValue();
+            denseSize++;
+        }
+        covered.clear();
+    }
+
+    /**
+     * Remove the value stored for an id
+     * @param id the id to remove
+     * @return the removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int id) {
+        version++;
+        if (id >= 0 && id < dense.length) {
+            V old = (V) dense[id];
+            if (old != null) {
+                dense[id] = null;
+                denseSize--;
+            }
+            return old;
+        }
+        return sparse.remove(id);
+    }
+
+    /**
+     * Get the number of values in the map
+     * @return the number of values
+     */
+    public int size() {
+        return denseSize + sparse.size();
+    }
+
+    /**
+     * Check whether the map is empty
+     * @return true if the map holds no values
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Get the highest id in the map
+     * @return the highest id, or -1 if the map is empty
+     */
+    public int maxKey() {
+        if (!sparse.isEmpty() && sparse.lastKey() >= 0) {
+            return sparse.lastKey();
+        }
+        for (int id = dense.length - 1; id >= 0; id--) {
+            if (dense[id] != null) {
+                return id;
+            }
+        }
+        return sparse.isEmpty() ? -1 : sparse.lastKey();
+    }
+
+    /**
+     * Pass every id and value to the consumer in id order
+     * @param consumer receives each entry
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(EntryConsumer<? super V> consumer) {
+        for (Map.Entry<Integer, V> e : sparse.headMap(0).entrySet()) {
+            consumer.accept(e.getKey(), e.getValue());
+        }
+        Object[] values = dense;
+        for (int id = 0; id < values.length; id++) {
+            if (values[id] != null) {
+                consumer.accept(id, (V) values[id]);
+            }
+        }
+        for (Map.Entry<Integer, V> e : sparse.tailMap(0).entrySet()) {
+            consumer.accept(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Get the values with an id greater than the given one, in id order, a page at a time
+     * @param afterId only values with a greater id are returned
+     * @param limit the maximum number of values to return
+     * @return a new list of up to limit values, empty once there are none left
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> valuesAfter(int afterId, int limit) {
+        List<V> page = new ArrayList<>(Math.min(limit, size()));
+        if (afterId == Integer.MAX_VALUE) {
+            return page;
+        }
+        if (afterId < -1) {
+            for (V v : sparse.subMap(afterId, false, 0, false).values()) {
+                if (page.size() == limit) {
+                    return page;
+                }
+                page.add(v);
+            }
+        }
+        Object[] values = dense;
+        for (int id = Math.max(afterId + 1, 0); id < values.length && page.size() < limit; id++) {
+            if (values[id] != null) {
+                page.add((V) values[id]);
+            }
+        }
+        for (V v : sparse.tailMap(Math.max(afterId, -1), false).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(v);
+        }
+        return page;
+    }
+
+    /**
+     * Copy every value into a new array in id order
+     * @param generator creates an array of the requested length
+     * @return an array of all values, empty if the map is empty
+     */
+    public V[] toArray(IntFunction<V[]> generator) {
+        V[] array = generator.apply(size());
+        int[] next = {0};
+        forEachEntry((id, v) -> array[next[0]++] = v);
+        return array;
+    }
+
+    /**
+     * Get the version of the map, which changes whenever a value is put or removed
+     * @return the current version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Get every value in id order as an array that is shared between callers.
+     * The array is built once per version of the map and reused until the next change,
+     * so it must never be modified
+     *
+     * @param generator creates an array of the requested length
+     * @return the shared array of all values, empty if the map is empty
+     */
+    public V[] snapshot(IntFunction<V[]> generator) {
+        Snapshot<V> s = snapshot;
+        if (s != null && s.version() == version) {
+            return s.values();
+        }
+
+        V[] values = toArray(generator);
+        snapshot = new Snapshot<>(version, values);
+        return values;
+    }
+
+    /**
+     * Get the shared array built by {@link #snapshot(IntFunction)} without building one
+     * @return the shared array of all values, or null if it is missing or out of date
+     */
+    public V[] cachedSnapshot() {
+        Snapshot<V> s = snapshot;
+        return s != null && s.version() == version ? s.values() : null;
+    }
+
+    /**
+     * Iterate over every value in id order
+     * @return an iterator over the values
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private final Iterator<V> negative = sparse.headMap(0).values().iterator();
+            private final Iterator<V> positive = sparse.tailMap(0).values().iterator();
+            private final Object[] values = dense;
+            private int index = nextDense(0);
+
+            private int nextDense(int from) {
+                while (from < values.length && values[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return negative.hasNext() || index < values.length || positive.hasNext();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (negative.hasNext()) {
+                    return negative.next();
+                }
+                if (index < values.length) {
+                    V v = (V) values[index];
+                    index = nextDense(index + 1);
+                    return v;
+                }
+                if (positive.hasNext()) {
+                    return positive.next();
+                }
+                throw new NoSuchElementException();
+            }
+        };
+    }
+}
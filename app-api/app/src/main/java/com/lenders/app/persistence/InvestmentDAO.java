@@ -2,6 +2,7 @@ package com.lenders.app.persistence;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.lenders.app.model.Investment;
 
@@ -31,6 +32,15 @@ public interface InvestmentDAO {
      */
     Investment createInvestment(Investment investment) throws IOException;
 
+    /**
+     * Create several new {@linkplain Investment investments} and save them as a single change.
+     * Each investment is given a new id
+     * @param investments the investments to create, their ids are ignored
+     * @return the created investments, in the same order
+     * @throws IOException if there is an error with storage
+     */
+    Investment[] createInvestments(List<Investment> investments) throws IOException;
+
     /**
      * Accept an investment and officially add it to the system
      * @param id the id of the investment
@@ -48,10 +58,22 @@ public interface InvestmentDAO {
 
     /**
      * Get every investment object
-     * @return an array of all investments, can be empty if none
+     * @return a shared array of all investments, can be empty if none.
+     * The array is reused between calls and must not be modified
      */
     Investment[] getInvestments();
 
+    /**
+     * Get the investments with an id greater than the given one, in id order. Reading the
+     * ledger a page at a time, each page starting after the last id of the previous one,
+     * never copies the whole ledger
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return up to limit investments, empty once there are none left
+     * @throws IOException if there is an error with storage
+     */
+    List<Investment> getInvestmentsAfter(int afterId, int limit) throws IOException;
+
     /**
      * Get all the investments associated with a specific user
      * @param user_id the user id to search for
@@ -66,6 +88,28 @@ public interface InvestmentDAO {
      */
     ArrayList<Investment> getHouseInvestments(int house_id);
 
+    /**
+     * Get the investments of a user with an id greater than the given one, in id order,
+     * a page at a time like {@link #getInvestmentsAfter(int, int)}
+     * @param user_id the user id to search for
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return up to limit investments, empty once there are none left
+     * @throws IOException if there is an error with storage
+     */
+    List<Investment> getUserInvestmentsAfter(int user_id, int afterId, int limit) throws IOException;
+
+    /**
+     * Get the investments in a housing unit with an id greater than the given one, in id order,
+     * a page at a time like {@link #getInvestmentsAfter(int, int)}
+     * @param house_id the house id to search for
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return up to limit investments, empty once there are none left
+     * @throws IOException if there is an error with storage
+     */
+    List<Investment> getHouseInvestmentsAfter(int house_id, int afterId, int limit) throws IOException;
+
     /**
      * Get a specific investment with its id
      * @param id the investment id
@@ -0,0 +1,136 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.lenders.app.model.Investment;
+
+/**
+ * Writes investments as newline delimited JSON, one investment per line.
+ * The whole ledger is read from the DAO a page at a time with
+ * {@link InvestmentDAO#getInvestmentsAfter(int, int)} and every page is written before the
+ * next is read, so memory use does not depend on the size of the export. A user or house
+ * filter pages the same way through the DAO's index instead of the whole ledger.
+ *
+ * @author Matthew Morrison
+ */
+@Component
+public class InvestmentExporter {
+
+    private static final Logger LOG = Logger.getLogger(InvestmentExporter.class.getName());
+
+    /**
+     * Selects the investments to export, a null field does not filter
+     * @param userId only investments by this user
+     * @param houseId only investments in this house
+     * @param from only investments made on or after this ISO date
+     * @param to only investments made on or before this ISO date
+     */
+    public record Filter(Integer userId, Integer houseId, String from, String to) {
+
+        /**
+         * Check whether an investment passes the filter
+         * @param i the investment to check
+         * @return true if the investment is exported
+         */
+        boolean matches(Investment i) {
+            if (userId != null && i.getUserId() != userId) {
+                return false;
+            }
+            if (houseId != null && i.getHouseId() != houseId) {
+                return false;
+            }
+            if (from == null && to == null) {
+                return true;
+            }
+            // ISO dates compare in date order as strings
+            String date = i.getDate();
+            return date != null && (from == null || date.compareTo(from) >= 0)
+                    && (to == null || date.compareTo(to) <= 0);
+        }
+    }
+
+    /**
+     * Reads the investments to export a page at a time, each page starting after the last id of the previous one
+     */
+    @FunctionalInterface
+    private interface Pages {
+        List<Investment> after(int afterId, int limit) throws IOException;
+    }
+
+    private final InvestmentDAO investmentDAO;
+
+    private final ObjectWriter writer;
+
+    private final int pageSize;
+
+    /**
+     * Create the exporter
+     * @param investmentDAO the investments to export
+     * @param objectMapper writes each investment as JSON
+     * @param pageSize the number of investments read from the DAO at a time
+     */
+    public InvestmentExporter(InvestmentDAO investmentDAO, ObjectMapper objectMapper,
+            @Value("${investments.export.pageSize:1000}") int pageSize) {
+        this.investmentDAO = investmentDAO;
+        this.writer = objectMapper.writerFor(Investment.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Write every investment that passes the filter, in id order
+     * @param filter selects the investments to write
+     * @param out receives the investments, it is flushed but not closed
+     * @return the number of investments written
+     * @throws IOException if the investments cannot be read or written
+     */
+    public long export(Filter filter, OutputStream out) throws IOException {
+        long count = 0;
+        long start = System.nanoTime();
+        try (JsonGenerator gen = writer.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(new SerializedString("\n"));
+
+            Pages pages;
+            if (filter.userId() != null) {
+                pages = (afterId, limit) -> investmentDAO.getUserInvestmentsAfter(filter.userId(), afterId, limit);
+            } else if (filter.houseId() != null) {
+                pages = (afterId, limit) -> investmentDAO.getHouseInvestmentsAfter(filter.houseId(), afterId, limit);
+            } else {
+                pages = investmentDAO::getInvestmentsAfter;
+            }
+            List<Investment> page = pages.after(Integer.MIN_VALUE, pageSize);
+            while (!page.isEmpty()) {
+                count += write(page, filter, gen);
+                page = pages.after(page.get(page.size() - 1).getId(), pageSize);
+            }
+            if (count > 0) {
+                gen.writeRaw('\n');
+            }
+        }
+        LOG.info("Exported " + count + " investments in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return count;
+    }
+
+    private long write(List<Investment> investments, Filter filter, JsonGenerator gen) throws IOException {
+        long count = 0;
+        for (Investment i : investments) {
+            if (filter.matches(i)) {
+                writer.writeValue(gen, i);
+                count++;
+            }
+        }
+        return count;
+    }
+}
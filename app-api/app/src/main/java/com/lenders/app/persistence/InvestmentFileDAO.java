@@ -2,26 +2,56 @@ package com.lenders.app.persistence;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Value;
-
-import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Investment;
 
+/**
+ * Implements the methods and functionality for JSON based Investment persistence.
+ * Only the map of all investments is stored on disk, the per user and per house
+ * indexes are derived from it in memory
+ * <p>
+ * With the journal enabled, each operation updates the ledger and both indexes under one lock
+ * and commits them with a single journal append, instead of rewriting the ledger file and the
+ * binary snapshot. The files are rewritten at checkpoints. The journal has the same format as
+ * the one of {@link OffHeapInvestmentDAO}
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("!embedded & !offheap")
 public class InvestmentFileDAO implements InvestmentDAO {
 
     private static final Logger LOG = Logger.getLogger(InvestmentFileDAO.class.getName());
 
-    Map<Integer, Investment> allInvestments;
+    private static final int PARALLEL_REBUILD_THRESHOLD = 100_000; // ledger size at which indexes are rebuilt in parallel
+
+    IdMap<Investment> allInvestments; // source of truth, the only map written to disk
 
-    Map<Integer, ArrayList<Investment>> userInvestments;
+    Map<Integer, ArrayList<Investment>> userInvestments; // derived index of investments by user id
 
-    Map<Integer, ArrayList<Investment>> houseInvestments;
+    Map<Integer, ArrayList<Investment>> houseInvestments; // derived index of investments by house id
 
     private final Object lock = new Object();
 
@@ -31,19 +61,63 @@ public class InvestmentFileDAO implements InvestmentDAO {
 
     private String allInvestmentFilename;
 
-    private String userInvestmentFilename;
+    private final boolean binarySnapshot; // keep a memory-mapped binary copy of the ledger
+
+    InvestmentSnapshot mapped; // serves reads until the ledger is first fully needed
+
+    private SegmentedStore<Investment> segments; // rewrites only changed segments, null when the whole file is rewritten
+
+    private static final String INVESTMENTS = "investments"; // journal collection name
+
+    private Journal journal; // change log of the ledger, null when journaling is disabled
 
-    private String houseInvestmentFilename;
+    private int checkpointInterval; // journal entries written before the files are rewritten without a checkpointer
 
+    private Checkpointer checkpointer; // rewrites the files in the background, null to rewrite them while persisting
+
+    /**
+     * Constructor to instantiate the InvestmentFileDAO
+     * @param allInvestmentsFilename the filename containing all investment info
+     * @param objectMapper the object mapper between Investment objects and JSON
+     * @param binarySnapshot true to start from, and keep writing, a binary snapshot of the ledger
+     * @param segmented true to store the ledger in segments and only rewrite the changed ones.
+     * The binary snapshot mirrors the single ledger file, so it is not used with segments
+     * @param journaled true to append each change to a journal instead of rewriting the files
+     * @param checkpointInterval number of journal entries before the files are rewritten,
+     * only used without a checkpointer
+     * @param startupLoader loads the file in parallel with the other DAOs during startup,
+     * null to load it before the constructor returns
+     * @param checkpointer rewrites the files from the journal in the background, null to
+     * rewrite them while persisting a change
+     * @throws IOException if an error occurs when instantiating the file
+     */
     public InvestmentFileDAO(@Value("${allInvestments.file}") String allInvestmentsFilename,
-    @Value("${userInvestmentsFilename.file}") String userInvestmentsFilename,
-    @Value("${houseInvestmentsFilename.file}") String houseInvestmentFilename,
-    ObjectMapper objectMapper) throws IOException {
+    ObjectMapper objectMapper,
+    @Value("${allInvestments.binarySnapshot.enabled:false}") boolean binarySnapshot,
+    @Value("${allInvestments.segmented.enabled:false}") boolean segmented,
+    @Value("${allInvestments.journal.enabled:false}") boolean journaled,
+    @Value("${allInvestments.journal.checkpointInterval:1000}") int checkpointInterval,
+    StartupLoader startupLoader, Checkpointer checkpointer) throws IOException {
         this.allInvestmentFilename = allInvestmentsFilename;
-        this.userInvestmentFilename = userInvestmentsFilename;
-        this.houseInvestmentFilename = houseInvestmentFilename;
         this.objectMapper = objectMapper;
-        load();
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointer = checkpointer;
+        this.binarySnapshot = binarySnapshot && !segmented;
+        if (segmented) {
+            if (binarySnapshot) {
+                LOG.warning("Binary investment snapshot is not used with a segmented ledger");
+            }
+            segments = new SegmentedStore<>(allInvestmentsFilename, objectMapper, Investment[].class,
+                    Investment::getId, SegmentedStore.DEFAULT_SEGMENT_SIZE);
+        }
+        if (journaled) {
+            journal = new Journal(allInvestmentsFilename + ".journal", objectMapper);
+        }
+        if (startupLoader == null) {
+            load();
+        } else {
+            startupLoader.load("investments", this::load);
+        }
     }
 
         /**
@@ -56,42 +130,330 @@ public class InvestmentFileDAO implements InvestmentDAO {
         return id;
     }
 
+    /**
+     * Load the ledger and apply the changes in the journal on top of it
+     *
+     * @throws IOException if an error occurs when reading the file or the journal
+     */
     private void load() throws IOException {
+        loadLedger();
+        if (journal == null) {
+            return;
+        }
 
-        TypeReference<Map<Integer, Investment>> allTypeRef = new TypeReference<Map<Integer,Investment>>() {};
-        TypeReference<Map<Integer, ArrayList<Investment>>> typeRef = new TypeReference<Map<Integer, ArrayList<Investment>>>() {};
+        int[] maxId = {0};
+        int replayed = journal.replay(entry -> {
+            ensureLoaded(); // only materialized when there is something to apply
+            apply(entry);
+            maxId[0] = Math.max(maxId[0], entry.getId());
+        });
+        nextId = Math.max(nextId, maxId[0] + 1);
+        LOG.info("Replayed " + replayed + " investment journal entries");
+        if (checkpointer != null) {
+            checkpointer.register("investments", journal, this::checkpoint);
+        }
+    }
 
-        allInvestments = objectMapper.readValue(allInvestmentFilename, allTypeRef);
-        userInvestments = objectMapper.readValue(userInvestmentFilename, typeRef);
-        houseInvestments = objectMapper.readValue(houseInvestmentFilename, typeRef);
-        nextId = Collections.max(allInvestments.keySet());
+    /**
+     * Apply one journal entry to the ledger and the indexes
+     * @param entry the entry to apply
+     * @throws IOException if the investment in the entry cannot be read
+     */
+    private void apply(JournalEntry entry) throws IOException {
+        if (segments != null) {
+            segments.markDirty(entry.getId()); // not in any segment until the next checkpoint
+        }
+        Investment old = entry.getOp() == JournalEntry.Op.DELETE ? allInvestments.remove(entry.getId())
+                : allInvestments.put(entry.getId(), objectMapper.treeToValue(entry.getValue(), Investment.class));
+        if (old != null) {
+            unindex(old);
+        }
+        if (entry.getOp() == JournalEntry.Op.PUT) {
+            index(allInvestments.get(entry.getId()));
+        }
+    }
+
+    /**
+     * Load all investments from the file and rebuild the user and house indexes from them.
+     * When an up to date binary snapshot exists it is mapped instead, and the JSON file is
+     * not read at all
+     *
+     * @throws IOException if an error occurs when reading the file
+     */
+    private void loadLedger() throws IOException {
+        if (binarySnapshot) {
+            mapped = InvestmentSnapshot.open(snapshotFile(), new File(allInvestmentFilename));
+            if (mapped != null) {
+                int size = mapped.size();
+                nextId = Math.max(size == 0 ? 0 : mapped.idAt(size - 1), 0) + 1;
+                return;
+            }
+        }
+
+        allInvestments = new IdMap<>();
+        userInvestments = new HashMap<>();
+        houseInvestments = new HashMap<>();
+        int count;
+        if (segments != null && segments.exists()) {
+            Set<Integer> recovered = segments.load(allInvestments);
+            if (!recovered.isEmpty() && journal != null) {
+                // bring the previous versions up to the latest checkpoint
+                int replayed = journal.replayPrevious(entry -> {
+                    if (recovered.contains(segments.segmentOf(entry.getId()))) {
+                        segments.markDirty(entry.getId());
+                        if (entry.getOp() == JournalEntry.Op.DELETE) {
+                            allInvestments.remove(entry.getId());
+                        } else {
+                            allInvestments.put(entry.getId(), objectMapper.treeToValue(entry.getValue(), Investment.class));
+                        }
+                    }
+                });
+                LOG.warning("Recovered investment segments " + recovered + " from their previous version and "
+                        + replayed + " retired journal entries");
+            }
+            count = allInvestments.size();
+            userInvestments = buildIndex(true);
+            houseInvestments = buildIndex(false);
+        } else {
+            count = readLedger(new File(allInvestmentFilename));
+            if (segments != null) {
+                // first start in segmented mode, split the ledger into segments
+                segments.markAllDirty(allInvestments);
+                segments.write(segments.collect(allInvestments));
+            }
+        }
+
+        nextId = Math.max(allInvestments.maxKey(), 0);
         nextId++;
-        
+        LOG.info("Loaded " + count + " investments");
 
+        if (binarySnapshot) {
+            saveSnapshot();
+        }
     }
 
-    private boolean saveAll() throws IOException {
-        saveAllArray();
-        saveUserInvests();
-        saveHouseInvests();
-        return true;
+    /**
+     * Stream the ledger file one investment at a time, storing and indexing each as it is read.
+     * Only a single investment is ever held by the parser, so memory is bounded by the ledger
+     * itself rather than by Jackson's copy of the whole file. Date strings are shared between
+     * investments with the same date
+     *
+     * @param file the ledger file, a JSON object mapping each id to its investment
+     * @return the number of investments read
+     * @throws IOException if the file cannot be read or is not a JSON object
+     */
+    private int readLedger(File file) throws IOException {
+        Map<String, String> dates = new HashMap<>();
+        int count = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(file)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return 0; // empty file, empty ledger
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an object of investments in " + file);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int id;
+                try {
+                    id = Integer.parseInt(parser.currentName());
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Investment key is not an id: " + parser.currentName());
+                }
+                parser.nextToken();
+                Investment i = objectMapper.readValue(parser, Investment.class);
+                if (i.getDate() != null) {
+                    i.setDate(dates.computeIfAbsent(i.getDate(), d -> d));
+                }
+
+                Investment old = allInvestments.put(id, i);
+                if (old != null) {
+                    unindex(old);
+                }
+                index(i);
+                count++;
+            }
+        }
+        return count;
     }
 
-    private boolean saveAllArray() throws IOException {
-        objectMapper.writeValue(new File(allInvestmentFilename), allInvestments);
-        return true;
+    /**
+     * Materialize every investment from the mapped snapshot, if that has not happened yet.
+     * Must be called while holding the lock
+     */
+    private void ensureLoaded() {
+        if (mapped == null) {
+            return;
+        }
+
+        allInvestments = new IdMap<>();
+        for (int index = 0; index < mapped.size(); index++) {
+            Investment i = mapped.at(index);
+            allInvestments.put(i.getId(), i);
+        }
+        mapped = null;
+
+        userInvestments = buildIndex(true);
+        houseInvestments = buildIndex(false);
     }
 
-    private boolean saveUserInvests() throws IOException {
-        objectMapper.writeValue(new File(userInvestmentFilename), userInvestments);
-        return true;
+    private File snapshotFile() {
+        return new File(allInvestmentFilename + ".bin");
+    }
+
+    /**
+     * Write the binary snapshot from the current ledger, after the JSON file has been written
+     *
+     * @throws IOException when the snapshot cannot be written
+     */
+    private void saveSnapshot() throws IOException {
+        InvestmentSnapshot.write(snapshotFile(), allInvestments.snapshot(Investment[]::new),
+                new File(allInvestmentFilename));
+    }
+
+    /**
+     * Group every investment by its user or house id. Large ledgers are grouped in parallel,
+     * each list keeps the investments in the same order as the ledger
+     *
+     * @param byUser true to group by user id, false to group by house id
+     * @return the map from user or house id to its investments
+     */
+    private Map<Integer, ArrayList<Investment>> buildIndex(boolean byUser) {
+        Stream<Investment> investments = Arrays.stream(allInvestments.snapshot(Investment[]::new));
+        if (allInvestments.size() >= PARALLEL_REBUILD_THRESHOLD) {
+            investments = investments.parallel();
+        }
+
+        return investments.collect(Collectors.groupingBy(
+                byUser ? Investment::getUserId : Investment::getHouseId,
+                HashMap::new,
+                Collectors.toCollection(ArrayList::new)));
     }
 
-    private boolean saveHouseInvests() throws IOException {
-        objectMapper.writeValue(new File(houseInvestmentFilename), userInvestments);
+    /**
+     * Saves the map of all investments into the file as a JSON object,
+     * or only its changed segments when the ledger is stored in segments.
+     * With the journal the changes are appended to it as one entry instead.
+     * Must be called while holding the lock
+     *
+     * @param ids the ids of the changed investments
+     * @return true if the investments were written successfully
+     *
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private boolean save(int... ids) throws IOException {
+        if (journal != null) {
+            List<JournalEntry> entries = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Investment i = allInvestments.get(id);
+                entries.add(i == null ? JournalEntry.delete(INVESTMENTS, id)
+                        : JournalEntry.put(INVESTMENTS, id, objectMapper.valueToTree(i)));
+                if (segments != null) {
+                    segments.markDirty(id);
+                }
+            }
+            journal.append(entries.size() == 1 ? entries.get(0) : JournalEntry.batch(entries));
+            if (checkpointer == null && journal.size() >= checkpointInterval) {
+                checkpoint();
+            }
+            return true;
+        }
+
+        if (segments != null) {
+            for (int id : ids) {
+                segments.markDirty(id);
+            }
+            segments.write(segments.collect(allInvestments));
+            return true;
+        }
+        writeLedger(allInvestments.snapshot(Investment[]::new));
         return true;
     }
 
+    /**
+     * Write the ledger file, and the binary snapshot after it
+     * @param investments every investment in id order
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private void writeLedger(Investment[] investments) throws IOException {
+        if (binarySnapshot) {
+            // drop the old snapshot first so it can never outlive the JSON it mirrors
+            Files.deleteIfExists(snapshotFile().toPath());
+        }
+
+        Checkpointer.writeAtomically(new File(allInvestmentFilename), f -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(f, JsonEncoding.UTF8)) {
+                gen.writeStartObject();
+                for (Investment i : investments) {
+                    gen.writeFieldName(Integer.toString(i.getId()));
+                    objectMapper.writeValue(gen, i);
+                }
+                gen.writeEndObject();
+            }
+        });
+
+        if (binarySnapshot) {
+            InvestmentSnapshot.write(snapshotFile(), investments, new File(allInvestmentFilename));
+        }
+    }
+
+    /**
+     * Rewrite the files from the ledger as it is now and truncate the journal.
+     * The lock is only held to copy the ledger, or its changed segments, and rotate the journal
+     *
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private void checkpoint() throws IOException {
+        List<SegmentedStore.Segment<Investment>> changed = null;
+        Investment[] investments = null;
+        synchronized (lock) {
+            ensureLoaded();
+            if (segments != null) {
+                changed = segments.collect(allInvestments);
+            } else {
+                investments = allInvestments.snapshot(Investment[]::new);
+            }
+            journal.rotate();
+        }
+
+        if (changed != null) {
+            segments.write(changed);
+        } else {
+            writeLedger(investments);
+        }
+        journal.finishCheckpoint();
+    }
+
+    /**
+     * Add an investment to the user and house indexes
+     * @param i the investment to index
+     */
+    private void index(Investment i) {
+        userInvestments.computeIfAbsent(i.getUserId(), k -> new ArrayList<>()).add(i);
+        houseInvestments.computeIfAbsent(i.getHouseId(), k -> new ArrayList<>()).add(i);
+    }
+
+    /**
+     * Remove an investment from the user and house indexes
+     * @param i the investment to remove
+     */
+    private void unindex(Investment i) {
+        removeFrom(userInvestments, i.getUserId(), i);
+        removeFrom(houseInvestments, i.getHouseId(), i);
+    }
+
+    private static void removeFrom(Map<Integer, ArrayList<Investment>> index, int key, Investment i) {
+        ArrayList<Investment> list = index.get(key);
+        if (list == null) {
+            return;
+        }
+        list.remove(i);
+        if (list.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
 
     /**
      * Create and save a new {@linkplain Investment investment} to the system
@@ -107,22 +469,12 @@ public class InvestmentFileDAO implements InvestmentDAO {
             throws IOException {
 
         synchronized (lock) {
+            ensureLoaded();
             Investment newI = new Investment(getNextId(), user_id, house_id, date, money_invested);
             allInvestments.put(newI.getId(), newI);
+            index(newI);
 
-            if (!userInvestments.containsKey(user_id)) {
-                userInvestments.put(user_id, new ArrayList<Investment>());
-            }
-
-            userInvestments.get(user_id).add(newI);
-
-            if (!houseInvestments.containsKey(house_id)) {
-                houseInvestments.put(house_id, new ArrayList<Investment>());
-            }
-
-            houseInvestments.get(house_id).add(newI);
-
-            saveAll();
+            save(newI.getId());
 
             return newI;
         }
@@ -139,28 +491,48 @@ public class InvestmentFileDAO implements InvestmentDAO {
     @Override
     public Investment createInvestment(Investment investment) throws IOException {
         synchronized (lock) {
-            int uid = investment.getUserId();
-            int hid = investment.getHouseId();
-
+            ensureLoaded();
             Investment newI = new Investment(investment.getId(), investment.getUserId(),
             investment.getHouseId(), investment.getDate(), investment.getMoneyInvested());
-            allInvestments.put(newI.getId(), newI);
-
-            if (!userInvestments.containsKey(uid)) {
-                userInvestments.put(uid, new ArrayList<Investment>());
+            Investment old = allInvestments.put(newI.getId(), newI);
+            if (old != null) {
+                unindex(old);
             }
+            index(newI);
 
-            userInvestments.get(uid).add(newI);
+            save(newI.getId());
 
-            if (!houseInvestments.containsKey(hid)) {
-                houseInvestments.put(hid, new ArrayList<Investment>());
-            }
-
-            houseInvestments.get(hid).add(newI);
+            return newI;
+        }
+    }
 
-            saveAll();
+    /**
+     * Create several new {@linkplain Investment investments}, each under a new id, and save
+     * them as a single change
+     * @param investments the investments to create, their ids are ignored
+     * @return the created investments, in the same order
+     * @throws IOException if there is an error with storage
+     */
+    @Override
+    public Investment[] createInvestments(List<Investment> investments) throws IOException {
+        synchronized (lock) {
+            ensureLoaded();
+            Investment[] created = new Investment[investments.size()];
+            int[] ids = new int[created.length];
+            for (int n = 0; n < created.length; n++) {
+                Investment i = investments.get(n);
+                Investment newI = new Investment(getNextId(), i.getUserId(), i.getHouseId(), i.getDate(),
+                        i.getMoneyInvested());
+                allInvestments.put(newI.getId(), newI);
+                index(newI);
+                created[n] = newI;
+                ids[n] = newI.getId();
+            }
 
-            return newI;
+            if (ids.length > 0) {
+                save(ids);
+            }
+            return created;
         }
     }
 
@@ -184,18 +556,14 @@ public class InvestmentFileDAO implements InvestmentDAO {
     @Override
     public boolean removeInvestment(int id) throws IOException {
         synchronized (lock) {
+            ensureLoaded();
             if (!allInvestments.containsKey(id)) {
                 return false;
             }
-            Investment i = allInvestments.get(id);
-            int uid = i.getUserId();
-            int hid = i.getHouseId();
+            Investment i = allInvestments.remove(id);
+            unindex(i);
 
-            allInvestments.remove(id);
-            userInvestments.remove(uid);
-            houseInvestments.remove(hid);
-
-            return saveAll();
+            return save(id);
         }
     }
 
@@ -205,10 +573,43 @@ public class InvestmentFileDAO implements InvestmentDAO {
      */
     @Override
     public Investment[] getInvestments() {
-        ArrayList<Investment> investmentArrayList = new ArrayList<>(allInvestments.values());
-        Investment[] investmentList = new Investment[investmentArrayList.size()];
-        investmentArrayList.toArray(investmentList);
-        return investmentList;
+        synchronized (lock) {
+            ensureLoaded();
+            return allInvestments.snapshot(Investment[]::new);
+        }
+    }
+
+    /**
+     * Get the investments with an id greater than the given one, in id order.
+     * Pages are read from the mapped snapshot while it still serves reads
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return up to limit investments, empty once there are none left
+     */
+    @Override
+    public List<Investment> getInvestmentsAfter(int afterId, int limit) {
+        synchronized (lock) {
+            if (mapped == null) {
+                return allInvestments.valuesAfter(afterId, limit);
+            }
+
+            // first index with an id above afterId, the snapshot is sorted by id
+            int low = 0;
+            int high = mapped.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mapped.idAt(mid) <= afterId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            List<Investment> page = new ArrayList<>();
+            for (int index = low; index < mapped.size() && page.size() < limit; index++) {
+                page.add(mapped.at(index));
+            }
+            return page;
+        }
     }
 
     /**
@@ -218,13 +619,10 @@ public class InvestmentFileDAO implements InvestmentDAO {
      */
     @Override
     public ArrayList<Investment> getUserInvestments(int user_id) {
-        if (!userInvestments.containsKey(user_id)) {
-            return null;
+        synchronized (lock) {
+            ensureLoaded();
+            return copy(userInvestments.get(user_id));
         }
-
-        ArrayList<Investment> userIs = userInvestments.get(user_id);
-
-        return userIs;
     }
 
     /**
@@ -234,14 +632,63 @@ public class InvestmentFileDAO implements InvestmentDAO {
      */
     @Override
     public ArrayList<Investment> getHouseInvestments(int house_id) {
-        if (!houseInvestments.containsKey(house_id)) {
-            return null;
+        synchronized (lock) {
+            ensureLoaded();
+            return copy(houseInvestments.get(house_id));
+        }
+    }
+
+    /**
+     * Copy a list of the user or house index, which changes under the lock once it is released
+     * @param indexed the list of the index, null if the key has no investments
+     * @return a copy of the list, null if the key has no investments
+     */
+    private static ArrayList<Investment> copy(ArrayList<Investment> indexed) {
+        return indexed == null ? null : new ArrayList<>(indexed);
+    }
+
+    @Override
+    public List<Investment> getUserInvestmentsAfter(int user_id, int afterId, int limit) {
+        synchronized (lock) {
+            ensureLoaded();
+            return pageAfter(userInvestments.get(user_id), afterId, limit);
         }
+    }
 
-        ArrayList<Investment> houseIs = houseInvestments.get(house_id);
+    @Override
+    public List<Investment> getHouseInvestmentsAfter(int house_id, int afterId, int limit) {
+        synchronized (lock) {
+            ensureLoaded();
+            return pageAfter(houseInvestments.get(house_id), afterId, limit);
+        }
+    }
 
-        return houseIs;
-    
+    /**
+     * Pick a page out of a list of the user or house index, which is kept in the order the
+     * investments were added rather than in id order
+     * @param indexed the list of the index, null if the key has no investments
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return the investments of the page in id order
+     */
+    private static List<Investment> pageAfter(ArrayList<Investment> indexed, int afterId, int limit) {
+        List<Investment> page = new ArrayList<>();
+        if (indexed == null || limit <= 0) {
+            return page;
+        }
+        // keep the lowest ids after the cursor in a heap whose head is the highest of them
+        PriorityQueue<Investment> lowest = new PriorityQueue<>(Comparator.comparingInt(Investment::getId).reversed());
+        for (Investment i : indexed) {
+            if (i.getId() > afterId) {
+                lowest.add(i);
+                if (lowest.size() > limit) {
+                    lowest.poll();
+                }
+            }
+        }
+        page.addAll(lowest);
+        page.sort(Comparator.comparingInt(Investment::getId));
+        return page;
     }
 
     /**
@@ -252,8 +699,11 @@ public class InvestmentFileDAO implements InvestmentDAO {
      */
     @Override
     public Investment getInvestment(int id) throws IOException {
-        synchronized (allInvestments) {
-            return allInvestments.getOrDefault(id, null);
+        synchronized (lock) {
+            if (mapped != null) {
+                return mapped.get(id); // single lookup straight from the mapping
+            }
+            return allInvestments.get(id);
         }
     }
 
@@ -0,0 +1,184 @@
+package com.lenders.app.persistence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Investment;
+
+/**
+ * Imports investments from newline delimited JSON, one investment per line.
+ * The input is read one line at a time, so only a single batch is ever held in memory.
+ * Each line is checked against the existing houses and users, and the valid investments
+ * are created in batches with {@link InvestmentDAO#createInvestments(List)}, one commit per batch.
+ * Progress is logged after every batch.
+ *
+ * @author Matthew Morrison
+ */
+@Component
+public class InvestmentImporter {
+
+    private static final Logger LOG = Logger.getLogger(InvestmentImporter.class.getName());
+
+    private static final int MAX_ERRORS = 100; // rejected lines reported in the result
+
+    /**
+     * The outcome of an import
+     * @param lines the number of lines read, blank lines included
+     * @param imported the number of investments created
+     * @param rejected the number of lines that were not imported
+     * @param batches the number of batches committed
+     * @param errors why lines were rejected, for the first rejected lines only
+     */
+    public record Result(int lines, int imported, int rejected, int batches, List<String> errors) {}
+
+    private final InvestmentDAO investmentDAO;
+
+    private final HouseDAO houseDAO;
+
+    private final LenderDAO lenderDAO;
+
+    private final BuyerDAO buyerDAO;
+
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+
+    /**
+     * Create the importer
+     * @param investmentDAO receives the imported investments
+     * @param houseDAO the houses investments must refer to
+     * @param lenderDAO users that may own investments
+     * @param buyerDAO users that may own investments
+     * @param objectMapper reads each line into an investment
+     * @param batchSize the number of investments created per commit
+     */
+    public InvestmentImporter(InvestmentDAO investmentDAO, HouseDAO houseDAO, LenderDAO lenderDAO,
+            BuyerDAO buyerDAO, ObjectMapper objectMapper,
+            @Value("${investments.import.batchSize:1000}") int batchSize) {
+        this.investmentDAO = investmentDAO;
+        this.houseDAO = houseDAO;
+        this.lenderDAO = lenderDAO;
+        this.buyerDAO = buyerDAO;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Import every investment in the input. The ids in the input are ignored and each
+     * investment is given a new one. Batches committed before a storage error stay imported
+     * @param in newline delimited JSON investments, read until its end
+     * @return the outcome of the import
+     * @throws IOException if the input cannot be read or a batch cannot be saved
+     */
+    public Result importInvestments(InputStream in) throws IOException {
+        Map<Integer, Boolean> houses = new HashMap<>(); // existence checks already made
+        Map<Integer, Boolean> users = new HashMap<>();
+        List<Investment> batch = new ArrayList<>(batchSize);
+        List<String> errors = new ArrayList<>();
+        int lines = 0;
+        int imported = 0;
+        int rejected = 0;
+        int batches = 0;
+        long start = System.nanoTime();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            String error;
+            try {
+                Investment i = objectMapper.readValue(line, Investment.class);
+                error = i == null ? "not an investment: null" : validate(i, houses, users);
+                if (error == null) {
+                    batch.add(i);
+                }
+            } catch (JsonProcessingException e) {
+                error = "not an investment: " + e.getOriginalMessage();
+            }
+            if (error != null) {
+                rejected++;
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add("line " + lines + ": " + error);
+                }
+            }
+
+            if (batch.size() >= batchSize) {
+                imported += commit(batch);
+                batches++;
+                LOG.info("Imported " + imported + " investments in " + batches + " batches, rejected "
+                        + rejected + ", " + lines + " lines read");
+            }
+        }
+        if (!batch.isEmpty()) {
+            imported += commit(batch);
+            batches++;
+        }
+
+        LOG.info("Import finished: " + imported + " investments in " + batches + " batches, rejected "
+                + rejected + " of " + lines + " lines in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new Result(lines, imported, rejected, batches, errors);
+    }
+
+    /**
+     * Create the investments of a batch as a single commit and empty it
+     * @param batch the investments to create
+     * @return the number of investments created
+     * @throws IOException if the batch cannot be saved
+     */
+    private int commit(List<Investment> batch) throws IOException {
+        int created = investmentDAO.createInvestments(batch).length;
+        batch.clear();
+        return created;
+    }
+
+    /**
+     * Check that an investment refers to an existing house and user and invests money
+     * @param i the investment to check
+     * @param houses the houses already checked
+     * @param users the users already checked
+     * @return why the investment is invalid, null if it is valid
+     * @throws IOException if a house or user cannot be read
+     */
+    private String validate(Investment i, Map<Integer, Boolean> houses, Map<Integer, Boolean> users)
+            throws IOException {
+        if (!(i.getMoneyInvested() > 0) || Float.isInfinite(i.getMoneyInvested())) { // NaN fails the comparison
+            return "money_invested must be a positive amount";
+        }
+
+        Boolean house = houses.get(i.getHouseId());
+        if (house == null) {
+            house = houseDAO.getHouse(i.getHouseId()) != null;
+            houses.put(i.getHouseId(), house);
+        }
+        if (!house) {
+            return "house " + i.getHouseId() + " does not exist";
+        }
+
+        Boolean user = users.get(i.getUserId());
+        if (user == null) {
+            user = lenderDAO.getLender(i.getUserId()) != null || buyerDAO.getBuyer(i.getUserId()) != null;
+            users.put(i.getUserId(), user);
+        }
+        if (!user) {
+            return "user " + i.getUserId() + " does not exist";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+package com.lenders.app.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.lenders.app.model.Investment;
+
+/**
+ * Binary snapshot of the investment ledger, written next to the JSON file and read back
+ * through a memory-mapped {@link FileChannel}. Opening a snapshot only maps the file and reads
+ * its header, so startup does not depend on the size of the ledger; investments are
+ * materialized from the mapping one at a time as they are needed.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * header   magic, version, record count, string count (4 ints),
+ *          JSON file length and last modified time (2 longs)
+ * records  id, user_id, house_id (ints), money_invested (float), date (int index
+ *          into the string table, -1 for null); 20 bytes each, sorted by id
+ * strings  offset of each string (ints), then each string as a length and UTF-8 bytes
+ * </pre>
+ * The JSON file's length and modification time are recorded so that a snapshot left behind
+ * by an older version of the JSON file is never used.
+ *
+ * @author Matthew Morrison
+ */
+public class InvestmentSnapshot {
+
+    private static final Logger LOG = Logger.getLogger(InvestmentSnapshot.class.getName());
+
+    private static final int MAGIC = 0x4C494E56; // "LINV"
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 * 4 + 2 * 8;
+
+    private static final int RECORD_SIZE = 5 * 4;
+
+    private final MappedByteBuffer buffer;
+
+    private final int count;
+
+    private final int stringCount;
+
+    private final int stringsOffset;
+
+    private InvestmentSnapshot(MappedByteBuffer buffer, int count, int stringCount) {
+        this.buffer = buffer;
+        this.count = count;
+        this.stringCount = stringCount;
+        this.stringsOffset = HEADER_SIZE + count * RECORD_SIZE;
+    }
+
+    /**
+     * Write a snapshot of the given investments
+     * @param file the snapshot file to write
+     * @param investments every investment in the ledger, in id order
+     * @param source the JSON file the snapshot mirrors, which must already be written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(File file, Investment[] investments, File source) throws IOException {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Investment i : investments) {
+            if (i.getDate() != null && !stringIndex.containsKey(i.getDate())) {
+                stringIndex.put(i.getDate(), strings.size());
+                strings.add(i.getDate());
+            }
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(investments.length);
+            out.writeInt(strings.size());
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+
+            for (Investment i : investments) {
+                out.writeInt(i.getId());
+                out.writeInt(i.getUserId());
+                out.writeInt(i.getHouseId());
+                out.writeFloat(i.getMoneyInvested());
+                out.writeInt(i.getDate() == null ? -1 : stringIndex.get(i.getDate()));
+            }
+
+            List<byte[]> encoded = new ArrayList<>(strings.size());
+            int offset = 0;
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                out.writeInt(offset);
+                offset += 4 + bytes.length;
+            }
+            for (byte[] bytes : encoded) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map a snapshot file, if it exists and matches the current JSON file
+     * @param file the snapshot file
+     * @param source the JSON file the snapshot mirrors
+     * @return the mapped snapshot, or null if it is missing, unreadable or out of date
+     * @throws IOException if the file cannot be mapped
+     */
+    public static InvestmentSnapshot open(File file, File source) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            LOG.warning("Ignoring unrecognized investment snapshot " + file);
+            return null;
+        }
+        if (buffer.getLong(16) != source.length() || buffer.getLong(24) != source.lastModified()) {
+            LOG.info("Ignoring out of date investment snapshot " + file);
+            return null;
+        }
+        return new InvestmentSnapshot(buffer, buffer.getInt(8), buffer.getInt(12));
+    }
+
+    /**
+     * Get the number of investments in the snapshot
+     * @return the number of investments
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the id of the investment at a position
+     * @param index the position of the investment, in id order
+     * @return the id of the investment
+     */
+    public int idAt(int index) {
+        return buffer.getInt(HEADER_SIZE + index * RECORD_SIZE);
+    }
+
+    /**
+     * Materialize the investment at a position
+     * @param index the position of the investment, in id order
+     * @return a new investment object read from the snapshot
+     */
+    public Investment at(int index) {
+        int pos = HEADER_SIZE + index * RECORD_SIZE;
+        return new Investment(buffer.getInt(pos), buffer.getInt(pos + 4), buffer.getInt(pos + 8),
+                string(buffer.getInt(pos + 16)), buffer.getFloat(pos + 12));
+    }
+
+    /**
+     * Find and materialize a single investment without reading the rest of the snapshot
+     * @param id the id of the investment
+     * @return the investment, or null if the snapshot does not contain it
+     */
+    public Investment get(int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = idAt(mid);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return at(mid);
+            }
+        }
+        return null;
+    }
+
+    private String string(int index) {
+        if (index < 0 || index >= stringCount) {
+            return null;
+        }
+        int start = stringsOffset + stringCount * 4 + buffer.getInt(stringsOffset + index * 4);
+        byte[] bytes = new byte[buffer.getInt(start)];
+        ByteBuffer view = buffer.slice(start + 4, bytes.length);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,336 @@
+package com.lenders.app.persistence;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Append-only log of {@linkplain JournalEntry change records} kept next to a JSON data file.
+ * Each entry is written as one line of compact JSON, so a mutation costs one small append
+ * instead of a rewrite of the whole data file. The data file is only rewritten at a checkpoint,
+ * after which the journal is truncated. An append returns only once its entry is forced to the
+ * disk, so a change that was acknowledged survives a power failure, not only a crash of the process.
+ * <p>
+ * A checkpoint first {@linkplain #rotate() rotates} the journal: the entries written so far are
+ * moved aside to a second file and new entries go to an empty journal, so appends can carry on
+ * while the snapshot is written. Once the snapshot is safely on disk the moved entries are
+ * {@linkplain #finishCheckpoint() retired}. If the process stops in between, both files are
+ * replayed; every entry holds the full value of a record, so replaying entries that are already
+ * part of the snapshot changes nothing. The entries retired by the latest checkpoint are kept
+ * until the next one, so a {@linkplain SegmentedStore segment} damaged while that checkpoint
+ * wrote it can be rebuilt from its previous version and {@linkplain #replayPrevious(EntryHandler)
+ * those entries}.
+ *
+ * @author Matthew Morrison
+ */
+public class Journal implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(Journal.class.getName());
+
+    /**
+     * Receives each entry read back from the journal during a replay
+     */
+    @FunctionalInterface
+    public interface EntryHandler {
+        void apply(JournalEntry entry) throws IOException;
+    }
+
+    /**
+     * Writes the full snapshot of the data during a checkpoint
+     */
+    @FunctionalInterface
+    public interface SnapshotWriter {
+        void write() throws IOException;
+    }
+
+    private final File file;
+
+    private final File folding; // entries moved aside by the checkpoint in progress
+
+    private final File retired; // entries written before the latest checkpoint
+
+    private final ObjectMapper objectMapper;
+
+    private Writer writer;
+
+    private FileOutputStream out; // the stream under the writer, forced to the disk after each append
+
+    private int size; // number of entries appended since the last checkpoint
+
+    private long bytes; // about how many bytes were appended since the last checkpoint
+
+    private long oldest = System.nanoTime(); // when the first entry since the last checkpoint was appended
+
+    /**
+     * Open (or create) the journal stored in the given file
+     * @param filename the name of the journal file
+     * @param objectMapper the object mapper used to write each entry
+     * @throws IOException if the journal file cannot be opened
+     */
+    public Journal(String filename, ObjectMapper objectMapper) throws IOException {
+        this.file = new File(filename);
+        this.folding = new File(filename + ".old");
+        this.retired = new File(filename + ".prev");
+        this.objectMapper = objectMapper;
+        // cut off an entry torn by a crash, so the next append starts on a line of its own
+        truncateTorn(folding);
+        truncateTorn(file);
+        this.writer = openWriter(true);
+        this.size = countLines(folding) + countLines(file);
+        this.bytes = file.length() + folding.length();
+    }
+
+    /**
+     * Truncate a journal file back to the end of its last complete line
+     * @param f the file, ignored if it does not exist
+     * @throws IOException if the file cannot be read or truncated
+     */
+    private static void truncateTorn(File f) throws IOException {
+        if (!f.exists()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            long end = raf.length();
+            byte[] buf = new byte[8192];
+            long pos = end;
+            while (pos > 0) {
+                int n = (int) Math.min(buf.length, pos);
+                pos -= n;
+                raf.seek(pos);
+                raf.readFully(buf, 0, n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (buf[i] == '\n') {
+                        truncate(raf, f, pos + i + 1, end);
+                        return;
+                    }
+                }
+            }
+            truncate(raf, f, 0, end);
+        }
+    }
+
+    private static void truncate(RandomAccessFile raf, File f, long length, long end) throws IOException {
+        if (length < end) {
+            LOG.warning("Dropping torn final entry of " + (end - length) + " bytes from " + f);
+            raf.setLength(length);
+        }
+    }
+
+    /**
+     * Count the entries of a journal file, one per line
+     * @param f the file, ignored if it does not exist
+     * @return the number of lines
+     * @throws IOException if the file cannot be read
+     */
+    private static int countLines(File f) throws IOException {
+        if (!f.exists()) {
+            return 0;
+        }
+        int lines = 0;
+        try (InputStream in = new FileInputStream(f)) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    private Writer openWriter(boolean append) throws IOException {
+        out = new FileOutputStream(file, append);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read every entry back from the journal in the order it was written, starting with the
+     * entries of a checkpoint that did not finish. Batch entries are handed over one change at
+     * a time. A torn final line, left behind by a crash during an append, is ignored; it is
+     * also cut off when the journal is opened, so no later entry is appended onto it
+     *
+     * @param handler receives each entry
+     * @return the number of entries replayed
+     * @throws IOException if the journal cannot be read or is corrupt before its final line
+     */
+    public synchronized int replay(EntryHandler handler) throws IOException {
+        int count = 0;
+        if (folding.exists()) {
+            count += replay(folding, handler);
+        }
+        count += replay(file, handler);
+        return count;
+    }
+
+    /**
+     * Read back the entries retired by the latest checkpoint, which come before every entry
+     * read by {@link #replay(EntryHandler)}
+     *
+     * @param handler receives each entry
+     * @return the number of entries replayed
+     * @throws IOException if the retired entries cannot be read
+     */
+    public synchronized int replayPrevious(EntryHandler handler) throws IOException {
+        return retired.exists() ? replay(retired, handler) : 0;
+    }
+
+    private int replay(File file, EntryHandler handler) throws IOException {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            String torn = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (torn != null) {
+                    throw new IOException("Corrupt journal entry in " + file + ": " + torn);
+                }
+
+                JournalEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, JournalEntry.class);
+                } catch (JsonProcessingException e) {
+                    torn = line;
+                    continue;
+                }
+                if (entry.getOp() == JournalEntry.Op.BATCH) {
+                    for (JournalEntry change : entry.getEntries()) {
+                        handler.apply(change);
+                    }
+                    count += entry.getEntries().size();
+                } else {
+                    handler.apply(entry);
+                    count++;
+                }
+            }
+            if (torn != null) {
+                LOG.warning("Ignoring torn final entry in " + file);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Append a single entry to the end of the journal and force it to the disk
+     * @param entry the entry to append
+     * @throws IOException if the entry cannot be written
+     */
+    public synchronized void append(JournalEntry entry) throws IOException {
+        String line = objectMapper.writeValueAsString(entry);
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+        out.getChannel().force(false);
+        if (size == 0) {
+            oldest = System.nanoTime();
+        }
+        size++;
+        bytes += line.length() + 1;
+    }
+
+    /**
+     * Rotate the journal, write a full snapshot and then drop the rotated entries.
+     * Entries appended while the snapshot is written go to the new journal, so the snapshot
+     * must hold at least every change made before this method was called
+     *
+     * @param snapshotWriter writes the full snapshot of the data
+     * @throws IOException if the snapshot or the truncation fails
+     */
+    public void checkpoint(SnapshotWriter snapshotWriter) throws IOException {
+        rotate();
+        snapshotWriter.write();
+        finishCheckpoint();
+    }
+
+    /**
+     * Move the entries written so far aside and start an empty journal. If an earlier
+     * checkpoint did not finish, the entries are added to the ones it moved aside
+     *
+     * @throws IOException if the journal cannot be moved or reopened
+     */
+    public synchronized void rotate() throws IOException {
+        writer.close();
+        if (folding.exists()) {
+            // on the disk before the journal is emptied, so a power failure loses neither copy
+            try (FileChannel moved = FileChannel.open(folding.toPath(), StandardOpenOption.APPEND)) {
+                ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+                while (entries.hasRemaining()) {
+                    moved.write(entries);
+                }
+                moved.force(false);
+            }
+            writer = openWriter(false);
+        } else {
+            Files.move(file.toPath(), folding.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            writer = openWriter(true);
+        }
+        size = 0;
+        bytes = 0;
+    }
+
+    /**
+     * Retire the entries moved aside by {@link #rotate()} once the snapshot holding them is on disk,
+     * replacing the entries retired by the checkpoint before
+     *
+     * @throws IOException if the moved entries cannot be retired
+     */
+    public synchronized void finishCheckpoint() throws IOException {
+        if (folding.exists()) {
+            Files.move(folding.toPath(), retired.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Get the number of entries appended since the last checkpoint
+     * @return the number of entries in the journal
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get when the oldest entry appended since the last checkpoint was appended, or when the
+     * journal was opened for entries left from before. Only meaningful while {@link #size()} is positive
+     * @return the {@link System#nanoTime()} of the oldest entry
+     */
+    public synchronized long oldestNanos() {
+        return oldest;
+    }
+
+    /**
+     * Get about how many bytes were appended since the last checkpoint
+     * @return the approximate size of the journal in bytes
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
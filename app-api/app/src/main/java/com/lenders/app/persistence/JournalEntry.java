@@ -0,0 +1,109 @@
+package com.lenders.app.persistence;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Represents a single change record appended to a {@linkplain Journal journal}.
+ * A batch entry groups the changes of one logical operation, possibly to several collections,
+ * into a single record, so they are written with one append and replayed all or not at all
+ *
+ * @author Matthew Morrison
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalEntry {
+
+    /**
+     * The kind of change a journal entry records
+     */
+    public enum Op {
+        PUT,
+        DELETE,
+        BATCH
+    }
+
+    @JsonProperty("op") private Op op;
+    @JsonProperty("collection") private String collection;
+    @JsonProperty("id") private int id;
+    @JsonProperty("value") private JsonNode value;
+    @JsonProperty("entries") private List<JournalEntry> entries;
+
+    /**
+     * Create a new journal entry
+     * @param op the kind of change
+     * @param collection the name of the collection the record belongs to
+     * @param id the id of the changed record
+     * @param value the new value of the record, null for deletes
+     */
+    public JournalEntry(@JsonProperty("op") Op op,
+                        @JsonProperty("collection") String collection,
+                        @JsonProperty("id") int id,
+                        @JsonProperty("value") JsonNode value) {
+        this.op = op;
+        this.collection = collection;
+        this.id = id;
+        this.value = value;
+    }
+
+    /**
+     * Create a batch entry
+     * @param entries the changes of the batch, in the order they were made
+     */
+    private JournalEntry(List<JournalEntry> entries) {
+        this.op = Op.BATCH;
+        this.entries = entries;
+    }
+
+    /**
+     * Create an entry recording that a record was created or replaced
+     * @param collection the name of the collection the record belongs to
+     * @param id the id of the record
+     * @param value the record serialized as a JSON tree
+     * @return the new journal entry
+     */
+    public static JournalEntry put(String collection, int id, JsonNode value) {
+        return new JournalEntry(Op.PUT, collection, id, value);
+    }
+
+    /**
+     * Create an entry recording that a record was removed
+     * @param collection the name of the collection the record belonged to
+     * @param id the id of the record
+     * @return the new journal entry
+     */
+    public static JournalEntry delete(String collection, int id) {
+        return new JournalEntry(Op.DELETE, collection, id, null);
+    }
+
+    /**
+     * Create an entry recording several changes made by one operation
+     * @param entries the put and delete entries of the operation, in the order they were made
+     * @return the new journal entry
+     */
+    public static JournalEntry batch(List<JournalEntry> entries) {
+        return new JournalEntry(entries);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public JsonNode getValue() {
+        return value;
+    }
+
+    public List<JournalEntry> getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,119 @@
+package com.lenders.app.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Holds an {@link IdMap} that is only read from storage the first time it is used and is
+ * dropped again once nobody has used it for a while, so rarely used data does not slow down
+ * startup or stay on the heap.
+ * <p>
+ * This class does no locking of its own. The owning DAO calls {@link #get()} while holding the
+ * lock that excludes its writers, and releases the map from the callback given to the
+ * constructor, which must take the same lock and only call {@link #releaseIfIdle()} when every
+ * change to the map has been written to storage.
+ *
+ * @author Matthew Morrison
+ */
+public class LazyCollection<T> implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(LazyCollection.class.getName());
+
+    /**
+     * Reads the full map from storage
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        IdMap<T> load() throws IOException;
+    }
+
+    private final String name;
+
+    private final Loader<T> loader;
+
+    private final long idleNanos;
+
+    private final ScheduledExecutorService releaser; // null when the map is kept once loaded
+
+    private volatile IdMap<T> map; // null until loaded and after being released
+
+    private volatile long lastAccess;
+
+    /**
+     * Create a collection that is not loaded yet
+     * @param name the name of the collection, used in the log and for the release thread
+     * @param idleMillis how long the map may go unused before it is released, 0 to keep it
+     * @param loader reads the map from storage
+     * @param release takes the owner's lock and calls {@link #releaseIfIdle()}
+     */
+    public LazyCollection(String name, long idleMillis, Loader<T> loader, Runnable release) {
+        this.name = name;
+        this.loader = loader;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        if (idleMillis > 0) {
+            this.releaser = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, name + "-release");
+                t.setDaemon(true);
+                return t;
+            });
+            releaser.scheduleWithFixedDelay(release, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.releaser = null;
+        }
+    }
+
+    /**
+     * Get the map, reading it from storage first if it is not in memory.
+     * Must be called while holding the owner's lock
+     * @return the map
+     * @throws IOException if the map cannot be read
+     */
+    public IdMap<T> get() throws IOException {
+        IdMap<T> m = map;
+        if (m == null) {
+            long start = System.nanoTime();
+            m = loader.load();
+            map = m;
+            LOG.info("Loaded " + m.size() + " " + name + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        lastAccess = System.nanoTime();
+        return m;
+    }
+
+    /**
+     * Get the map without loading it
+     * @return the map, or null if it is not in memory
+     */
+    public IdMap<T> getIfLoaded() {
+        IdMap<T> m = map;
+        if (m != null) {
+            lastAccess = System.nanoTime();
+        }
+        return m;
+    }
+
+    /**
+     * Drop the map if it has not been used for the idle time.
+     * Must be called while holding the owner's lock with every change written to storage
+     * @return true if the map was released
+     */
+    public boolean releaseIfIdle() {
+        if (map == null || System.nanoTime() - lastAccess < idleNanos) {
+            return false;
+        }
+        map = null;
+        LOG.info("Released idle " + name);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (releaser != null) {
+            releaser.shutdownNow();
+        }
+    }
+}
@@ -65,7 +65,8 @@ public interface LenderDAO {
 
     /**
      * Get all {@linkplain Lender Lenders} from the system
-     * @return an array of all lenders, empty if none exist
+     * @return a shared array of all lenders, empty if none exist.
+     * The array is reused between calls and must not be modified
      */
     Lender[] getAllLenders();
 
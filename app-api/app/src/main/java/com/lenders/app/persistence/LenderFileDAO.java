@@ -2,12 +2,13 @@ package com.lenders.app.persistence;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lenders.app.model.Buyer;
@@ -18,11 +19,13 @@ import com.lenders.app.model.Lender;
  * 
  * @author Matthew Morrison
  */
+@Component
+@Profile("!embedded")
 public class LenderFileDAO implements LenderDAO {
 
      private static final Logger LOG = Logger.getLogger(LenderFileDAO.class.getName());
 
-     Map<Integer, Lender> lenders;
+     IdMap<Lender> lenders;
 
      private ObjectMapper objectMapper;
 
@@ -30,10 +33,40 @@ public class LenderFileDAO implements LenderDAO {
 
      private String filename;
 
-     public LenderFileDAO(@Value("${lenders.file}") String filename, ObjectMapper objectMapper) throws IOException {
+     private GroupCommitWriter groupCommit; // batches saves, null when every save is written synchronously
+
+     private SegmentedStore<Lender> segments; // rewrites only changed segments, null when the whole file is rewritten
+
+     /**
+      * Constructor to instantiate the LenderFileDAO
+      * @param filename the filename containing all lender info
+      * @param objectMapper the object mapper between Lender objects and JSON
+      * @param groupCommitEnabled true to batch concurrent saves into a single background write
+      * @param groupCommitInterval milliseconds between background writes
+      * @param segmented true to store the lenders in segments and only rewrite the changed ones
+      * @param startupLoader loads the file in parallel with the other DAOs during startup,
+      * null to load it before the constructor returns
+      * @throws IOException if an error occurs when instantiating the file
+      */
+     public LenderFileDAO(@Value("${lenders.file}") String filename, ObjectMapper objectMapper,
+     @Value("${lenders.groupCommit.enabled:false}") boolean groupCommitEnabled,
+     @Value("${lenders.groupCommit.intervalMillis:5}") long groupCommitInterval,
+    @Value("${lenders.segmented.enabled:false}") boolean segmented,
+    StartupLoader startupLoader) throws IOException {
         this.filename = filename;
         this.objectMapper = objectMapper;
-        load();
+        if (segmented) {
+            segments = new SegmentedStore<>(filename, objectMapper, Lender[].class, Lender::getId,
+                    SegmentedStore.DEFAULT_SEGMENT_SIZE);
+        }
+        if (startupLoader == null) {
+            load();
+        } else {
+            startupLoader.load("lenders", this::load);
+        }
+        if (groupCommitEnabled) {
+            groupCommit = new GroupCommitWriter("lenders-group-commit", groupCommitInterval, this::flush);
+        }
     }
 
     /**
@@ -52,36 +85,86 @@ public class LenderFileDAO implements LenderDAO {
      * @throws IOException if an error occurs when reading the file
      */
     private void load() throws IOException {
-        lenders = new TreeMap<>();
+        lenders = new IdMap<>();
         nextId = 0;
 
-        Lender[] lenderArray = objectMapper.readValue(new File(filename), Lender[].class);
-
-        for (Lender l: lenderArray) {
-            lenders.put(l.getId(), l);
-
-            if (l.getId() > nextId) {
-                nextId = l.getId();
+        if (segments != null && segments.exists()) {
+            segments.load(lenders);
+        } else {
+            File file = new File(filename);
+            Lender[] lenderArray = file.length() == 0 ? new Lender[0] : objectMapper.readValue(file, Lender[].class);
+            for (Lender l: lenderArray) {
+                lenders.put(l.getId(), l);
+            }
+            if (segments != null) {
+                // first start in segmented mode, split the file into segments
+                segments.markAllDirty(lenders);
+                segments.write(segments.collect(lenders));
             }
         }
 
+        nextId = Math.max(lenders.maxKey(), 0);
         ++nextId;
 
     }
 
     /**
-     * Saves the lender map into the file as an array of JSON objects
+     * Saves the lender map into the file as an array of JSON objects,
+     * or only its changed segments when the lenders are stored in segments
      *
      * @return true if the lenders were written successfully
      *
      * @throws IOException when file cannot be accessed or written to
      */
     private boolean save() throws IOException {
+        if (segments != null) {
+            segments.write(segments.collect(lenders));
+            return true;
+        }
         Lender[] lenders = getAllLenders();
-        objectMapper.writeValue(new File(filename), lenders);
+        Checkpointer.writeAtomically(new File(filename), f -> objectMapper.writeValue(f, lenders));
         return true;
     }
 
+    /**
+     * Takes a snapshot of the lender map and writes it outside of the lock, used by the group commit writer
+     *
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private void flush() throws IOException {
+        if (segments != null) {
+            List<SegmentedStore.Segment<Lender>> changed;
+            synchronized (lenders) {
+                changed = segments.collect(lenders);
+            }
+            segments.write(changed);
+            return;
+        }
+        Lender[] snapshot = getAllLenders();
+        Checkpointer.writeAtomically(new File(filename), f -> objectMapper.writeValue(f, snapshot));
+    }
+
+    /**
+     * Request that the lender map be saved. Must be called while holding the lock on the map.
+     * With group commit the returned future completes once a background write includes
+     * the change, otherwise the file is written before returning
+     *
+     * @param id the id of the changed lender
+     * @return a future to wait on, outside of the lock, until the change is saved
+     *
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private CompletableFuture<Void> requestSave(int id) throws IOException {
+        if (segments != null) {
+            segments.markDirty(id);
+        }
+        if (groupCommit == null) {
+            save();
+            return CompletableFuture.completedFuture(null);
+        }
+        return groupCommit.commit();
+    }
+
     /**
      * Create and save a new {@linkplain Lender Lender} to the system
      * @param password password of the lender account
@@ -98,13 +181,16 @@ public class LenderFileDAO implements LenderDAO {
     @Override
     public Lender createLender(String password, String fn, String ln, String ssn, String email, String number,
             String business_name, float funds_available) throws IOException {
+        Lender newL;
+        CompletableFuture<Void> saved;
         synchronized (lenders) {
             int id = getNextId();
-            Lender newL = new Lender(id, password, fn, ln, ssn, email, number, business_name, funds_available);
+            newL = new Lender(id, password, fn, ln, ssn, email, number, business_name, funds_available);
             lenders.put(id, newL);
-            save();
-            return newL;
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return newL;
     }
 
     /**
@@ -115,13 +201,16 @@ public class LenderFileDAO implements LenderDAO {
      */
     @Override
     public Lender createLender(Lender lender) throws IOException {
+        Lender newL;
+        CompletableFuture<Void> saved;
         synchronized (lenders) {
-            Lender newL = new Lender(lender.getId(), lender.getPassword(), lender.getFirst_name(), lender.getLast_name(), 
+            newL = new Lender(lender.getId(), lender.getPassword(), lender.getFirst_name(), lender.getLast_name(), 
             lender.getSsn(), lender.getEmail(), lender.getPhone_number(), lender.getBusiness_name(), lender.getFunds_available());
             lenders.put(newL.getId(), newL);
-            save();
-            return newL;
+            saved = requestSave(newL.getId());
         }
+        GroupCommitWriter.await(saved);
+        return newL;
     }
 
     /**
@@ -132,13 +221,16 @@ public class LenderFileDAO implements LenderDAO {
      */
     @Override
     public boolean deleteLender(int id) throws IOException {
+        CompletableFuture<Void> saved;
         synchronized (lenders) {
-            if (lenders.containsKey(id)) {
-                lenders.remove(id);
-                return save();
+            if (!lenders.containsKey(id)) {
+                return false;
             }
-            return false;
+            lenders.remove(id);
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return true;
     }
 
     /**
@@ -151,12 +243,14 @@ public class LenderFileDAO implements LenderDAO {
      */
     @Override
     public Lender updatePassword(int id, String oldPassword, String newPassword) throws IOException {
+        Lender l;
+        CompletableFuture<Void> saved;
         synchronized (lenders) {
             if(!lenders.containsKey(id)) {
                 return null;
             }
 
-            Lender l = getLender(id);
+            l = getLender(id);
             String oldPass = l.getPassword();
 
             // TODO find way to check if password is wrong vs admin does not exist
@@ -166,9 +260,10 @@ public class LenderFileDAO implements LenderDAO {
 
             l.setPassword(newPassword);
             lenders.put(id, l);
-            save();
-            return l;
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return l;
     }
 
     /**
@@ -180,15 +275,17 @@ public class LenderFileDAO implements LenderDAO {
      */
     @Override
     public Lender updateLenderInfo(int id, Lender newLenderInfo) throws IOException {
+        CompletableFuture<Void> saved;
         synchronized (lenders) {
             if (!lenders.containsKey(id)) {
                 return null;
             }
 
             lenders.put(id, newLenderInfo);
-            save();
-            return newLenderInfo;
+            saved = requestSave(id);
         }
+        GroupCommitWriter.await(saved);
+        return newLenderInfo;
     }
 
     /**
@@ -197,11 +294,9 @@ public class LenderFileDAO implements LenderDAO {
      */
     @Override
     public Lender[] getAllLenders() {
-        ArrayList<Lender> lenderArrayList = new ArrayList<>(lenders.values());
-
-        Lender[] lenderList = new Lender[lenderArrayList.size()];
-        lenderArrayList.toArray(lenderList);
-        return lenderList;
+        synchronized (lenders) {
+            return lenders.snapshot(Lender[]::new);
+        }
     }
 
     /**
@@ -213,7 +308,7 @@ public class LenderFileDAO implements LenderDAO {
     @Override
     public Lender getLender(int id) throws IOException {
         synchronized (lenders) {
-            return lenders.getOrDefault(id, null);
+            return lenders.get(id);
         }
     }
     
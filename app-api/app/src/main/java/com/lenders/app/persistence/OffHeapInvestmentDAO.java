@@ -0,0 +1,724 @@
+package com.lenders.app.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Investment;
+
+/**
+ * Investment persistence for ledgers too large to keep as objects on the heap.
+ * Each field is stored in its own column of 4 byte values in a direct {@link ByteBuffer},
+ * one row per investment, and {@linkplain Investment investment} objects are only created
+ * when they are returned. The per user and per house indexes hold row numbers in primitive
+ * int lists, so heap use does not grow with the number of investments.
+ * <p>
+ * The ledger file has the same format as the one used by {@link InvestmentFileDAO}.
+ * Changes are appended to a {@link Journal} and the file is rewritten, one investment at
+ * a time, at each checkpoint. The columns are append-only until they are compacted, so a
+ * checkpoint only copies the removed rows and the row count under the lock and writes the
+ * file from the columns as they were at that point without holding it.
+ *
+ * @author Matthew Morrison
+ */
+@Component
+@Profile("offheap")
+public class OffHeapInvestmentDAO implements InvestmentDAO {
+
+    private static final Logger LOG = Logger.getLogger(OffHeapInvestmentDAO.class.getName());
+
+    private static final String INVESTMENTS = "investments"; // journal collection name
+
+    private static final int MIN_ROWS = 1024;
+
+    private static final int SPARSE_SLACK = 1024; // ids this far past 4x the size still grow the row index
+
+    private static final int NO_ROW = -1;
+
+    private static final int NO_DATE = Integer.MIN_VALUE; // epoch day of a null date
+
+    private static final int OTHER_DATE = Integer.MIN_VALUE + 1; // date kept as text in otherDates
+
+    private ByteBuffer ids; // columns, 4 bytes per row
+
+    private ByteBuffer userIds;
+
+    private ByteBuffer houseIds;
+
+    private ByteBuffer epochDays;
+
+    private ByteBuffer amounts;
+
+    private int rows; // rows written, including removed ones
+
+    private final BitSet removed = new BitSet(); // rows that no longer hold an investment
+
+    private int live; // rows that still hold an investment
+
+    private ByteBuffer rowById; // row of each id below its capacity, NO_ROW when absent
+
+    private final Map<Integer, Integer> sparseRows = new HashMap<>(); // row of ids outside rowById
+
+    private final Map<Integer, IntList> userRows = new HashMap<>();
+
+    private final Map<Integer, IntList> houseRows = new HashMap<>();
+
+    private final Map<Integer, String> otherDates = new HashMap<>(); // dates that are not ISO dates, by row
+
+    private int nextId;
+
+    private final Object lock = new Object();
+
+    private final ObjectMapper objectMapper;
+
+    private final String allInvestmentFilename;
+
+    private final Journal journal;
+
+    private final int checkpointInterval; // journal entries written before the file is rewritten without a checkpointer
+
+    private final Checkpointer checkpointer; // rewrites the file in the background, null to rewrite it while persisting
+
+    /**
+     * The columns as they were when a checkpoint started. Rows below the row count are never
+     * written again, so the buffers can be read while new rows are appended
+     */
+    private record Columns(ByteBuffer ids, ByteBuffer userIds, ByteBuffer houseIds, ByteBuffer epochDays,
+            ByteBuffer amounts, int rows, BitSet removed, Map<Integer, String> otherDates) {
+
+        Investment at(int row) {
+            int pos = row * 4;
+            return new Investment(ids.getInt(pos), userIds.getInt(pos), houseIds.getInt(pos),
+                    date(epochDays.getInt(pos), otherDates, row), amounts.getFloat(pos));
+        }
+    }
+
+    /**
+     * Growable list of primitive ints, used for the row numbers of a user or house
+     */
+    static final class IntList {
+
+        private int[] values = new int[4];
+
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void removeValue(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    System.arraycopy(values, i + 1, values, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Constructor to instantiate the OffHeapInvestmentDAO
+     * @param allInvestmentsFilename the filename containing all investment info
+     * @param objectMapper the object mapper between Investment objects and JSON
+     * @param checkpointInterval number of journal entries before the file is rewritten,
+     * only used without a checkpointer
+     * @param startupLoader loads the file in parallel with the other DAOs during startup,
+     * null to load it before the constructor returns
+     * @param checkpointer rewrites the file from the journal in the background, null to
+     * rewrite it while persisting a change
+     * @throws IOException if an error occurs when reading the file or the journal
+     */
+    public OffHeapInvestmentDAO(@Value("${allInvestments.file}") String allInvestmentsFilename,
+    ObjectMapper objectMapper,
+    @Value("${allInvestments.offHeap.checkpointInterval:10000}") int checkpointInterval,
+    StartupLoader startupLoader, Checkpointer checkpointer) throws IOException {
+        this.allInvestmentFilename = allInvestmentsFilename;
+        this.objectMapper = objectMapper;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointer = checkpointer;
+        this.journal = new Journal(allInvestmentsFilename + ".journal", objectMapper);
+        allocate(MIN_ROWS);
+        if (startupLoader == null) {
+            load();
+            replayJournal();
+        } else {
+            startupLoader.load("investments", () -> {
+                load();
+                replayJournal();
+            });
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = ByteBuffer.allocateDirect(capacity * 4);
+        userIds = ByteBuffer.allocateDirect(capacity * 4);
+        houseIds = ByteBuffer.allocateDirect(capacity * 4);
+        epochDays = ByteBuffer.allocateDirect(capacity * 4);
+        amounts = ByteBuffer.allocateDirect(capacity * 4);
+        rowById = emptyRowIndex(capacity);
+        rows = 0;
+        live = 0;
+        removed.clear();
+        sparseRows.clear();
+        userRows.clear();
+        houseRows.clear();
+        otherDates.clear();
+    }
+
+    private static ByteBuffer emptyRowIndex(int capacity) {
+        ByteBuffer index = ByteBuffer.allocateDirect(capacity * 4);
+        for (int i = 0; i < capacity; i++) {
+            index.putInt(i * 4, NO_ROW);
+        }
+        return index;
+    }
+
+    /**
+     * Copy a column into a larger direct buffer
+     * @param column the column to copy
+     * @param used the number of bytes of the column in use
+     * @param capacity the new capacity in rows
+     * @return the larger column
+     */
+    private static ByteBuffer grow(ByteBuffer column, int used, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocateDirect(capacity * 4);
+        larger.put(0, column, 0, used);
+        return larger;
+    }
+
+    private void ensureRows(int needed) {
+        int capacity = ids.capacity() / 4;
+        if (needed <= capacity) {
+            return;
+        }
+        capacity = Math.max(capacity * 2, needed);
+        int used = rows * 4;
+        ids = grow(ids, used, capacity);
+        userIds = grow(userIds, used, capacity);
+        houseIds = grow(houseIds, used, capacity);
+        epochDays = grow(epochDays, used, capacity);
+        amounts = grow(amounts, used, capacity);
+    }
+
+    /**
+     * Load every investment from the file, one at a time, straight into the columns
+     *
+     * @throws IOException if the file cannot be read or is not a JSON object
+     */
+    private void load() throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(new File(allInvestmentFilename))) {
+            JsonToken token = parser.nextToken();
+            if (token != null && token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an object of investments in " + allInvestmentFilename);
+            }
+
+            while (token != null && parser.nextToken() == JsonToken.FIELD_NAME) {
+                parser.nextToken();
+                put(objectMapper.readValue(parser, Investment.class));
+            }
+        }
+        LOG.info("Loaded " + live + " investments off heap");
+    }
+
+    private void replayJournal() throws IOException {
+        int replayed = journal.replay(entry -> {
+            if (entry.getOp() == JournalEntry.Op.DELETE) {
+                drop(rowOf(entry.getId()));
+            } else {
+                put(objectMapper.treeToValue(entry.getValue(), Investment.class));
+            }
+        });
+        LOG.info("Replayed " + replayed + " investment journal entries");
+        if (checkpointer != null) {
+            checkpointer.register("investments", journal, this::checkpoint);
+        }
+    }
+
+    /**
+     * Record a change in the journal, rewriting the file once the journal holds enough entries
+     * when there is no checkpointer. Must be called while holding the lock
+     *
+     * @param entry the change to record
+     * @throws IOException if the journal or the file cannot be written
+     */
+    private void persist(JournalEntry entry) throws IOException {
+        journal.append(entry);
+        if (checkpointer == null && journal.size() >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Rewrite the file from the columns as they are now and truncate the journal.
+     * The lock is only held to capture the columns and rotate the journal, and again
+     * afterwards to compact the columns if most of their rows were removed
+     *
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private void checkpoint() throws IOException {
+        Columns columns;
+        synchronized (lock) {
+            columns = new Columns(ids, userIds, houseIds, epochDays, amounts, rows,
+                    (BitSet) removed.clone(), new HashMap<>(otherDates));
+            journal.rotate();
+        }
+
+        Checkpointer.writeAtomically(new File(allInvestmentFilename), f -> save(f, columns));
+        journal.finishCheckpoint();
+
+        synchronized (lock) {
+            if (removed.cardinality() > rows / 2) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Saves every investment of the captured columns into a file as a JSON object,
+     * materializing one at a time
+     *
+     * @param file the file to write
+     * @param columns the columns to write
+     * @throws IOException when file cannot be accessed or written to
+     */
+    private void save(File file, Columns columns) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            for (int row = 0; row < columns.rows(); row++) {
+                if (!columns.removed().get(row)) {
+                    gen.writeFieldName(Integer.toString(columns.ids().getInt(row * 4)));
+                    objectMapper.writeValue(gen, columns.at(row));
+                }
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Rewrite the columns without the removed rows
+     */
+    private void compact() {
+        ByteBuffer oldIds = ids, oldUsers = userIds, oldHouses = houseIds, oldDays = epochDays, oldAmounts = amounts;
+        BitSet oldRemoved = (BitSet) removed.clone();
+        Map<Integer, String> oldOther = new HashMap<>(otherDates);
+        int oldRows = rows;
+
+        allocate(Math.max(live * 2, MIN_ROWS));
+        for (int row = 0; row < oldRows; row++) {
+            if (!oldRemoved.get(row)) {
+                int pos = row * 4;
+                append(oldIds.getInt(pos), oldUsers.getInt(pos), oldHouses.getInt(pos),
+                        oldDays.getInt(pos), oldAmounts.getFloat(pos), oldOther.get(row));
+            }
+        }
+    }
+
+    private int rowOf(int id) {
+        if (id >= 0 && id < rowById.capacity() / 4) {
+            return rowById.getInt(id * 4);
+        }
+        return sparseRows.getOrDefault(id, NO_ROW);
+    }
+
+    private void setRow(int id, int row) {
+        int capacity = rowById.capacity() / 4;
+        if (id >= capacity && row != NO_ROW && id <= 4 * (live + 1) + SPARSE_SLACK) {
+            ByteBuffer larger = emptyRowIndex(Math.max(capacity * 2, id + 1));
+            larger.put(0, rowById, 0, rowById.capacity());
+            rowById = larger;
+            capacity = larger.capacity() / 4;
+            for (Iterator<Map.Entry<Integer, Integer>> it = sparseRows.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Integer, Integer> e = it.next();
+                if (e.getKey() >= 0 && e.getKey() < capacity) {
+                    rowById.putInt(e.getKey() * 4, e.getValue());
+                    it.remove();
+                }
+            }
+        }
+
+        if (id >= 0 && id < capacity) {
+            rowById.putInt(id * 4, row);
+        } else if (row == NO_ROW) {
+            sparseRows.remove(id);
+        } else {
+            sparseRows.put(id, row);
+        }
+    }
+
+    /**
+     * Store an investment in a new row, replacing the row of any investment with the same id
+     * @param i the investment to store
+     */
+    private void put(Investment i) {
+        drop(rowOf(i.getId()));
+
+        int epochDay = NO_DATE;
+        String other = null;
+        if (i.getDate() != null) {
+            try {
+                LocalDate date = LocalDate.parse(i.getDate());
+                if (date.toString().equals(i.getDate())) {
+                    epochDay = Math.toIntExact(date.toEpochDay());
+                } else {
+                    epochDay = OTHER_DATE;
+                    other = i.getDate();
+                }
+            } catch (DateTimeParseException | ArithmeticException e) {
+                epochDay = OTHER_DATE;
+                other = i.getDate();
+            }
+        }
+        append(i.getId(), i.getUserId(), i.getHouseId(), epochDay, i.getMoneyInvested(), other);
+    }
+
+    private void append(int id, int userId, int houseId, int epochDay, float amount, String other) {
+        ensureRows(rows + 1);
+        int row = rows++;
+        int pos = row * 4;
+        ids.putInt(pos, id);
+        userIds.putInt(pos, userId);
+        houseIds.putInt(pos, houseId);
+        epochDays.putInt(pos, epochDay);
+        amounts.putFloat(pos, amount);
+        if (other != null) {
+            otherDates.put(row, other);
+        }
+
+        setRow(id, row);
+        userRows.computeIfAbsent(userId, k -> new IntList()).add(row);
+        houseRows.computeIfAbsent(houseId, k -> new IntList()).add(row);
+        live++;
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    /**
+     * Mark a row as removed and take it out of every index
+     * @param row the row to remove, nothing happens for NO_ROW
+     */
+    private void drop(int row) {
+        if (row == NO_ROW) {
+            return;
+        }
+        int pos = row * 4;
+        removed.set(row);
+        live--;
+        setRow(ids.getInt(pos), NO_ROW);
+        removeFrom(userRows, userIds.getInt(pos), row);
+        removeFrom(houseRows, houseIds.getInt(pos), row);
+        otherDates.remove(row);
+    }
+
+    private static void removeFrom(Map<Integer, IntList> index, int key, int row) {
+        IntList list = index.get(key);
+        if (list == null) {
+            return;
+        }
+        list.removeValue(row);
+        if (list.size() == 0) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Create the investment object for a row
+     * @param row the row to read
+     * @return a new investment holding the row's values
+     */
+    private Investment materialize(int row) {
+        int pos = row * 4;
+        return new Investment(ids.getInt(pos), userIds.getInt(pos), houseIds.getInt(pos),
+                date(epochDays.getInt(pos), otherDates, row), amounts.getFloat(pos));
+    }
+
+    /**
+     * Decode the date column of a row
+     * @param epochDay the value of the date column
+     * @param otherDates the dates kept as text, by row
+     * @param row the row
+     * @return the date of the investment
+     */
+    private static String date(int epochDay, Map<Integer, String> otherDates, int row) {
+        if (epochDay == NO_DATE) {
+            return null;
+        } else if (epochDay == OTHER_DATE) {
+            return otherDates.get(row);
+        }
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    private ArrayList<Investment> materialize(IntList rowList) {
+        if (rowList == null) {
+            return null;
+        }
+        ArrayList<Investment> investments = new ArrayList<>(rowList.size());
+        for (int i = 0; i < rowList.size(); i++) {
+            investments.add(materialize(rowList.get(i)));
+        }
+        return investments;
+    }
+
+    /**
+     * Create and save a new {@linkplain Investment investment} to the system
+     * @param user_id the user id associated with the investment
+     * @param house_id the house id associated with the investment
+     * @param date the date of the investment
+     * @param money_invested the amount of money invested
+     * @return new {@linkplain Investment investment} object if successful
+     * @throws IOException if there is an error with storage
+     */
+    @Override
+    public Investment createInvestment(int user_id, int house_id, String date, float money_invested)
+            throws IOException {
+        synchronized (lock) {
+            return createInvestment(new Investment(nextId, user_id, house_id, date, money_invested));
+        }
+    }
+
+    /**
+     * Create and save a new {@linkplain Investment investment} to the system using an investment object
+     * @param investment the investment object to save
+     * @return the investment object if successful
+     * @throws IOException if there is an error with storage
+     */
+    @Override
+    public Investment createInvestment(Investment investment) throws IOException {
+        synchronized (lock) {
+            put(investment);
+            persist(JournalEntry.put(INVESTMENTS, investment.getId(), objectMapper.valueToTree(investment)));
+            return materialize(rowOf(investment.getId()));
+        }
+    }
+
+    /**
+     * Create several new {@linkplain Investment investments}, each under a new id, and record
+     * them as a single journal entry
+     * @param investments the investments to create, their ids are ignored
+     * @return the created investments, in the same order
+     * @throws IOException if there is an error with storage
+     */
+    @Override
+    public Investment[] createInvestments(List<Investment> investments) throws IOException {
+        synchronized (lock) {
+            Investment[] created = new Investment[investments.size()];
+            List<JournalEntry> entries = new ArrayList<>(created.length);
+            for (int n = 0; n < created.length; n++) {
+                Investment i = investments.get(n);
+                Investment newI = new Investment(nextId, i.getUserId(), i.getHouseId(), i.getDate(),
+                        i.getMoneyInvested());
+                put(newI);
+                created[n] = materialize(rowOf(newI.getId()));
+                entries.add(JournalEntry.put(INVESTMENTS, newI.getId(), objectMapper.valueToTree(newI)));
+            }
+
+            if (!entries.isEmpty()) {
+                persist(entries.size() == 1 ? entries.get(0) : JournalEntry.batch(entries));
+            }
+            return created;
+        }
+    }
+
+    /**
+     * Accept an investment and officially add it to the system
+     * @param id the id of the investment
+     * @return the investment object if successful
+     * @throws IOException if there is an error with storage
+     */
+    @Override
+    public Investment acceptInvestment(int id) throws IOException {
+        throw new UnsupportedOperationException("Unimplemented method 'acceptInvestment'");
+    }
+
+    /**
+     * Remove an investment from storage
+     * @param id the id of the investment
+     * @return true if successful, false otherwise
+     */
+    @Override
+    public boolean removeInvestment(int id) throws IOException {
+        synchronized (lock) {
+            int row = rowOf(id);
+            if (row == NO_ROW) {
+                return false;
+            }
+            drop(row);
+            persist(JournalEntry.delete(INVESTMENTS, id));
+            return true;
+        }
+    }
+
+    /**
+     * Get every investment object. The objects are created for this call and not kept,
+     * so the whole ledger is only on the heap while the caller holds the array
+     * @return an array of all investments in id order, can be empty if none exist
+     */
+    @Override
+    public Investment[] getInvestments() {
+        synchronized (lock) {
+            Investment[] investments = new Investment[live];
+            int next = 0;
+            for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+                investments[next++] = materialize(row);
+            }
+            Arrays.sort(investments, Comparator.comparingInt(Investment::getId));
+            return investments;
+        }
+    }
+
+    /**
+     * Get the investments with an id greater than the given one, in id order.
+     * Dense ids are walked in the row index, the few sparse ids are sorted first
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return up to limit investments, empty once there are none left
+     */
+    @Override
+    public List<Investment> getInvestmentsAfter(int afterId, int limit) {
+        synchronized (lock) {
+            List<Investment> page = new ArrayList<>();
+            int[] sparse = sparseRows.keySet().stream().mapToInt(Integer::intValue)
+                    .filter(id -> id > afterId).sorted().toArray();
+            int next = 0;
+            // negative ids come before the row index, the other sparse ids after it
+            while (next < sparse.length && sparse[next] < 0 && page.size() < limit) {
+                page.add(materialize(sparseRows.get(sparse[next++])));
+            }
+            int capacity = rowById.capacity() / 4;
+            if (afterId != Integer.MAX_VALUE) {
+                for (int id = Math.max(afterId + 1, 0); id < capacity && page.size() < limit; id++) {
+                    int row = rowById.getInt(id * 4);
+                    if (row != NO_ROW) {
+                        page.add(materialize(row));
+                    }
+                }
+            }
+            while (next < sparse.length && page.size() < limit) {
+                page.add(materialize(sparseRows.get(sparse[next++])));
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Get all the investments associated with a specific user
+     * @param user_id the user id to search for
+     * @return a list of all investments made by the user, null if there are none
+     */
+    @Override
+    public ArrayList<Investment> getUserInvestments(int user_id) {
+        synchronized (lock) {
+            return materialize(userRows.get(user_id));
+        }
+    }
+
+    /**
+     * Get all investments associated with a specific housing unit
+     * @param house_id the house id to search for
+     * @return a list of all investments with the house unit, null if there are none
+     */
+    @Override
+    public ArrayList<Investment> getHouseInvestments(int house_id) {
+        synchronized (lock) {
+            return materialize(houseRows.get(house_id));
+        }
+    }
+
+    @Override
+    public List<Investment> getUserInvestmentsAfter(int user_id, int afterId, int limit) {
+        synchronized (lock) {
+            return pageAfter(userRows.get(user_id), afterId, limit);
+        }
+    }
+
+    @Override
+    public List<Investment> getHouseInvestmentsAfter(int house_id, int afterId, int limit) {
+        synchronized (lock) {
+            return pageAfter(houseRows.get(house_id), afterId, limit);
+        }
+    }
+
+    /**
+     * Materialize a page of the rows of a user or house, which are kept in row order rather
+     * than in id order
+     * @param rowList the rows of the user or house, null if there are none
+     * @param afterId only investments with a greater id are returned
+     * @param limit the maximum number of investments to return
+     * @return the investments of the page in id order
+     */
+    private List<Investment> pageAfter(IntList rowList, int afterId, int limit) {
+        List<Investment> page = new ArrayList<>();
+        if (rowList == null || limit <= 0) {
+            return page;
+        }
+        // keep the rows with the lowest ids after the cursor in a heap whose head has the highest of them
+        Comparator<Integer> byId = Comparator.comparingInt(row -> ids.getInt(row * 4));
+        PriorityQueue<Integer> lowest = new PriorityQueue<>(byId.reversed());
+        for (int i = 0; i < rowList.size(); i++) {
+            int row = rowList.get(i);
+            if (ids.getInt(row * 4) > afterId) {
+                lowest.add(row);
+                if (lowest.size() > limit) {
+                    lowest.poll();
+                }
+            }
+        }
+        List<Integer> rows = new ArrayList<>(lowest);
+        rows.sort(byId);
+        for (int row : rows) {
+            page.add(materialize(row));
+        }
+        return page;
+    }
+
+    /**
+     * Get a specific investment with its id
+     * @param id the investment id
+     * @return the investment of the respective id, null if it does not exist
+     * @throws IOException if there is an error with storage
+     */
+    @Override
+    public Investment getInvestment(int id) throws IOException {
+        synchronized (lock) {
+            int row = rowOf(id);
+            return row == NO_ROW ? null : materialize(row);
+        }
+    }
+
+    @Override
+    public Investment updateInvestment(Investment investment) throws IOException {
+        throw new UnsupportedOperationException("Unimplemented method 'updateInvestment'");
+    }
+}
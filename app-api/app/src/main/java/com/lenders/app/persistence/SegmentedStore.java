@@ -0,0 +1,311 @@
+package com.lenders.app.persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * On-disk layout that splits a collection into segment files by id range, so a change to one
+ * record only rewrites the segment holding it instead of the whole collection.
+ * Segment {@code n} holds the records with ids from {@code n * segmentSize} up to the next
+ * segment, as a JSON array in the file {@code n.json} of a directory next to the data file.
+ * <p>
+ * The DAO marks the id of every record it changes as dirty. {@link #collect(IdMap)} then copies
+ * the records of the dirty segments, and {@link #write(List)} writes them, so the copy can be
+ * taken under the DAO's lock and the files written after releasing it. A segment stays dirty
+ * until it is written, unless it changed again after it was copied, so a write that fails is
+ * made up for by the next one.
+ * <p>
+ * Each segment file starts with a line holding the CRC32C checksum of the JSON that follows it.
+ * When a segment is rewritten, its previous version is kept as {@code n.json.prev}. Loading
+ * verifies every segment in parallel. A segment that is missing, fails its checksum or cannot be
+ * parsed is replaced by its previous version, and its number is reported to the DAO. The DAO
+ * then replays the journal entries of that segment on top of the previous version. Only the
+ * damaged segments are read twice, so recovery time depends on the size of the damage.
+ *
+ * @param <T> the type of the records
+ *
+ * @author Matthew Morrison
+ */
+public class SegmentedStore<T> {
+
+    private static final Logger LOG = Logger.getLogger(SegmentedStore.class.getName());
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1024; // ids per segment file
+
+    private final File directory;
+
+    private final ObjectMapper objectMapper;
+
+    private final Class<T[]> arrayType;
+
+    private final ToIntFunction<T> idOf;
+
+    private final int segmentSize;
+
+    private final TreeMap<Integer, Long> dirty = new TreeMap<>(); // segment -> change that made it dirty, until written
+
+    private long changes; // changes marked so far, numbers the marks of the dirty segments
+
+    private static final String CHECKSUM_PREFIX = "crc32c:";
+
+    private static final String PREVIOUS = ".prev"; // suffix of the previous version of a segment
+
+    /**
+     * The records of one segment, copied to be written to disk
+     * @param number the segment number
+     * @param records the records of the segment in id order, empty if the segment has none left
+     * @param change the change that made the segment dirty when it was copied
+     */
+    public record Segment<T>(int number, T[] records, long change) {}
+
+    /**
+     * Create the store for a data file
+     * @param filename the data file, whose segments are kept in the directory filename + ".segments"
+     * @param objectMapper the object mapper between records and JSON
+     * @param arrayType the array type a segment is read as
+     * @param idOf gets the id of a record
+     * @param segmentSize the number of ids covered by each segment
+     */
+    public SegmentedStore(String filename, ObjectMapper objectMapper, Class<T[]> arrayType,
+            ToIntFunction<T> idOf, int segmentSize) {
+        this.directory = new File(filename + ".segments");
+        this.objectMapper = objectMapper;
+        this.arrayType = arrayType;
+        this.idOf = idOf;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Check whether the collection has been written as segments yet
+     * @return true if the segment directory exists
+     */
+    public boolean exists() {
+        return directory.isDirectory();
+    }
+
+    /**
+     * Read every segment into a map, verifying the segments in parallel. Damaged segments are
+     * replaced by their previous version
+     * @param into the map to add the records to
+     * @return the numbers of the segments read from their previous version, whose later changes
+     * must be replayed from the journal
+     * @throws IOException if a segment and its previous version cannot be read
+     */
+    public Set<Integer> load(IdMap<T> into) throws IOException {
+        String[] names = directory.list((dir, name) -> name.endsWith(".json") || name.endsWith(".json" + PREVIOUS));
+        if (names == null) {
+            return Set.of();
+        }
+        TreeSet<Integer> numbers = new TreeSet<>();
+        for (String name : names) {
+            numbers.add(Integer.parseInt(name.substring(0, name.indexOf('.'))));
+        }
+
+        List<Loaded<T>> loaded;
+        try {
+            loaded = numbers.parallelStream().map(this::read).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Set<Integer> recovered = new TreeSet<>();
+        for (Loaded<T> segment : loaded) {
+            for (T record : segment.records()) {
+                into.put(idOf.applyAsInt(record), record);
+            }
+            if (segment.recovered()) {
+                recovered.add(segment.number());
+            }
+        }
+        synchronized (this) {
+            for (int number : recovered) {
+                dirty.put(number, ++changes); // rewrite the recovered segments with the next write
+            }
+        }
+        LOG.info("Loaded " + into.size() + " records from " + loaded.size() + " segments in " + directory);
+        return recovered;
+    }
+
+    /**
+     * The records read from one segment
+     * @param number the segment number
+     * @param records the records of the segment
+     * @param recovered true if they were read from the previous version of the segment
+     */
+    private record Loaded<T>(int number, T[] records, boolean recovered) {}
+
+    /**
+     * Read and verify one segment, falling back to its previous version if it is damaged
+     * @param number the segment number
+     * @return the records of the segment
+     * @throws UncheckedIOException if neither version of the segment can be read
+     */
+    private Loaded<T> read(int number) {
+        File file = new File(directory, number + ".json");
+        try {
+            return new Loaded<>(number, read(file), false);
+        } catch (IOException e) {
+            LOG.warning("Segment " + file + " is damaged, reading its previous version: " + e);
+        }
+
+        File previous = new File(directory, number + ".json" + PREVIOUS);
+        try {
+            return new Loaded<>(number, read(previous), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Segment " + file + " and its previous version are both damaged", e);
+        }
+    }
+
+    /**
+     * Read a segment file, checking the checksum on its first line. Segments written before
+     * checksums were added have none and are read as they are
+     * @param file the segment file
+     * @return the records of the segment
+     * @throws IOException if the file is missing, fails its checksum or cannot be parsed
+     */
+    private T[] read(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        int start = 0;
+        if (content.length > 0 && content[0] == CHECKSUM_PREFIX.charAt(0)) {
+            int newline = 0;
+            while (newline < content.length && content[newline] != '\n') {
+                newline++;
+            }
+            String header = new String(content, 0, newline, StandardCharsets.US_ASCII);
+            if (!header.startsWith(CHECKSUM_PREFIX) || newline == content.length) {
+                throw new IOException("Invalid segment header");
+            }
+            start = newline + 1;
+            long expected;
+            try {
+                expected = Long.parseLong(header.substring(CHECKSUM_PREFIX.length()), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid segment checksum " + header);
+            }
+            if (checksum(content, start, content.length - start) != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+        }
+        return objectMapper.readValue(content, start, content.length - start, arrayType);
+    }
+
+    private static long checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Get the segment a record belongs to
+     * @param id the id of the record
+     * @return the number of the segment holding it
+     */
+    public int segmentOf(int id) {
+        return Math.floorDiv(id, segmentSize);
+    }
+
+    /**
+     * Mark the segment holding a record as changed
+     * @param id the id of the changed record
+     */
+    public synchronized void markDirty(int id) {
+        dirty.put(segmentOf(id), ++changes);
+    }
+
+    /**
+     * Mark the segment of every record in a map as changed, used to write a collection as
+     * segments for the first time
+     * @param map the map holding every record
+     */
+    public synchronized void markAllDirty(IdMap<T> map) {
+        map.forEachEntry((id, value) -> dirty.put(segmentOf(id), ++changes));
+    }
+
+    /**
+     * Copy the records of every dirty segment. They stay dirty until {@link #write(List)} has
+     * written them. Must be called while holding the lock that guards the map
+     * @param map the map holding every record
+     * @return the segments to write
+     */
+    public synchronized List<Segment<T>> collect(IdMap<T> map) {
+        List<Segment<T>> segments = new ArrayList<>(dirty.size());
+        for (Map.Entry<Integer, Long> segment : dirty.entrySet()) {
+            int number = segment.getKey();
+            List<T> records = new ArrayList<>();
+            long first = (long) number * segmentSize;
+            for (long id = first; id < first + segmentSize; id++) {
+                T record = map.get((int) id);
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+            @SuppressWarnings("unchecked")
+            T[] array = records.toArray((T[]) Array.newInstance(arrayType.getComponentType(), records.size()));
+            segments.add(new Segment<>(number, array, segment.getValue()));
+        }
+        return segments;
+    }
+
+    /**
+     * Mark a written segment clean, unless it changed again after it was copied
+     * @param segment the written segment
+     */
+    private synchronized void written(Segment<T> segment) {
+        dirty.remove(segment.number(), segment.change());
+    }
+
+    /**
+     * Write collected segments, each to a temporary file that then replaces the segment.
+     * The replaced version is kept as the previous version of the segment.
+     * Segments left without records are deleted. Each segment is marked clean once written,
+     * the segments left unwritten by a failure stay dirty
+     * @param segments the segments to write
+     * @throws IOException if a segment cannot be written
+     */
+    public void write(List<Segment<T>> segments) throws IOException {
+        Files.createDirectories(directory.toPath());
+        for (Segment<T> segment : segments) {
+            File file = new File(directory, segment.number() + ".json");
+            File previous = new File(directory, segment.number() + ".json" + PREVIOUS);
+            if (segment.records().length == 0) {
+                Files.deleteIfExists(previous.toPath());
+                Files.deleteIfExists(file.toPath());
+                written(segment);
+                continue;
+            }
+
+            byte[] json = objectMapper.writeValueAsBytes(segment.records());
+            String header = CHECKSUM_PREFIX + Long.toHexString(checksum(json, 0, json.length)) + "\n";
+            File tmp = new File(directory, segment.number() + ".json.tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(header.getBytes(StandardCharsets.US_ASCII));
+                out.write(json);
+            }
+            if (file.exists()) {
+                Files.move(file.toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            written(segment);
+        }
+    }
+}
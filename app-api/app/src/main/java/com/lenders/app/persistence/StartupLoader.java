@@ -0,0 +1,101 @@
+package com.lenders.app.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the data files of the DAOs in parallel while the application starts.
+ * Each DAO hands its load to {@link #load(String, Loader, CompletableFuture...)} from its
+ * constructor instead of running it, so Spring can go on creating the other DAOs. Once every
+ * singleton has been created, {@link #afterSingletonsInstantiated()} waits for all loads to
+ * finish and fails the startup if any of them failed. The web server only starts accepting
+ * requests, and the application only reports itself ready, after that point, so startup takes
+ * about as long as the slowest file instead of the sum of all of them.
+ * <p>
+ * The DAOs are not used by anything during startup, so no DAO method waits on its load.
+ *
+ * @author Matthew Morrison
+ */
+@Component
+public class StartupLoader implements SmartInitializingSingleton {
+
+    private static final Logger LOG = Logger.getLogger(StartupLoader.class.getName());
+
+    private final ExecutorService executor;
+
+    private final List<CompletableFuture<Void>> loads = new ArrayList<>();
+
+    private final long started = System.nanoTime();
+
+    /**
+     * Reads a data file into a DAO
+     */
+    @FunctionalInterface
+    public interface Loader {
+        void load() throws IOException;
+    }
+
+    /**
+     * Create the loader and the threads it loads on
+     * @param threads the number of loads to run at once, 0 for one per processor
+     */
+    public StartupLoader(@Value("${startup.loadThreads:0}") int threads) {
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = Executors.newFixedThreadPool(count, r -> {
+            Thread t = new Thread(r, "startup-loader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start a load once the loads it depends on have finished
+     * @param name the name of the data being loaded, used in the log
+     * @param loader reads the data
+     * @param after loads that must finish first
+     * @return a future completed when the load has finished
+     */
+    public synchronized CompletableFuture<Void> load(String name, Loader loader, CompletableFuture<?>... after) {
+        CompletableFuture<Void> load = CompletableFuture.allOf(after).thenRunAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                loader.load();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load " + name, e);
+            }
+            LOG.info("Loaded " + name + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }, executor);
+        loads.add(load);
+        return load;
+    }
+
+    /**
+     * Wait for every load to finish, failing the startup if one of them failed
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        CompletableFuture<?>[] all;
+        synchronized (this) {
+            all = loads.toArray(new CompletableFuture<?>[0]);
+        }
+        try {
+            CompletableFuture.allOf(all).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Startup loading failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        LOG.info("Loaded " + all.length + " data files in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+}
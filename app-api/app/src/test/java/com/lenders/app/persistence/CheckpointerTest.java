@@ -0,0 +1,168 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.lenders.app.model.House;
+
+/**
+ * Test the Checkpointer class and the journal rotation it relies on
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class CheckpointerTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private String houseFile;
+
+    private String applFile;
+
+    private Checkpointer checkpointer;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        houseFile = dir.resolve("houses.json").toString();
+        applFile = dir.resolve("houseApplications.json").toString();
+        Files.writeString(Path.of(houseFile), "[]");
+        Files.writeString(Path.of(applFile), "[]");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (checkpointer != null) {
+            checkpointer.close();
+        }
+    }
+
+    private House newHouse(String address) {
+        return new House(0, address, 14623, "Rochester", 1200, false,
+                LocalDate.of(2024, 6, 1), 150000, 70, 20000, 15000, "new roof",
+                LocalDate.of(2024, 9, 1), 1800, House.Condition.FAIR,
+                House.ExitStrategy.FIX_AND_RENT, House.Type.SINGLE_RESIDENTIAL, 9.5f);
+    }
+
+    private Checkpointer.Stats awaitCheckpoint() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            List<Checkpointer.Stats> stats = checkpointer.stats();
+            if (!stats.isEmpty() && stats.get(0).checkpoints() > 0) {
+                return stats.get(0);
+            }
+            Thread.sleep(10);
+        }
+        fail("no checkpoint ran");
+        return null;
+    }
+
+    @Test
+    public void testEntryCountTriggersBackgroundCheckpoint() throws Exception {
+        checkpointer = new Checkpointer(2, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1, false, 0, null, checkpointer);
+        dao.createHouse(newHouse("1 Main St"));
+        // the request thread never checkpoints, even past the interval it would use on its own
+        assertEquals("[]", Files.readString(Path.of(houseFile)));
+        dao.createHouse(newHouse("2 Main St"));
+
+        Checkpointer.Stats stats = awaitCheckpoint();
+        assertEquals("houses", stats.name());
+        assertEquals(0, stats.failures());
+        assertEquals(2, objectMapper.readValue(new File(houseFile), House[].class).length);
+        assertEquals(0, new File(houseFile + ".journal").length());
+        assertFalse(new File(houseFile + ".journal.old").exists());
+    }
+
+    @Test
+    public void testAgeTriggersBackgroundCheckpoint() throws Exception {
+        checkpointer = new Checkpointer(Integer.MAX_VALUE, Long.MAX_VALUE, 50, 10);
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, checkpointer);
+        House appl = dao.createHouseApplication(newHouse("1 Main St"));
+
+        awaitCheckpoint();
+        House[] appls = objectMapper.readValue(new File(applFile), House[].class);
+        assertEquals(1, appls.length);
+        assertEquals(appl.getId(), appls[0].getId());
+    }
+
+    @Test
+    public void testAgeCountsFromTheOldestEntry() throws Exception {
+        checkpointer = new Checkpointer(Integer.MAX_VALUE, Long.MAX_VALUE, 500, 10);
+        Journal journal = new Journal(dir.resolve("test.journal").toString(), objectMapper);
+        checkpointer.register("test", journal, () -> {
+            journal.rotate();
+            journal.finishCheckpoint();
+        });
+
+        // the first entry after a quiet spell still waits its full age
+        Thread.sleep(700);
+        journal.append(JournalEntry.delete("houses", 1));
+        Thread.sleep(200);
+        assertEquals(0, checkpointer.stats().get(0).checkpoints());
+        assertEquals(1, awaitCheckpoint().checkpoints());
+        journal.close();
+    }
+
+    @Test
+    public void testFailedCheckpointIsRetriedAfterRotating() throws Exception {
+        checkpointer = new Checkpointer(1, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        Journal journal = new Journal(dir.resolve("test.journal").toString(), objectMapper);
+        journal.append(JournalEntry.delete("houses", 1));
+        int[] attempts = {0};
+        checkpointer.register("test", journal, () -> {
+            journal.rotate();
+            if (attempts[0]++ == 0) {
+                throw new IOException("disk full"); // the journal is empty now, only the retry writes the entry
+            }
+            journal.finishCheckpoint();
+        });
+
+        Checkpointer.Stats stats = awaitCheckpoint();
+        assertEquals(1, stats.failures());
+        assertEquals(2, attempts[0]);
+        assertFalse(new File(dir.resolve("test.journal.old").toString()).exists());
+        journal.close();
+    }
+
+    @Test
+    public void testRotatedEntriesAreReplayedUntilTheCheckpointFinishes() throws IOException {
+        String journalFile = dir.resolve("test.journal").toString();
+        Journal journal = new Journal(journalFile, objectMapper);
+        journal.append(JournalEntry.delete("houses", 1));
+        journal.rotate();
+        journal.append(JournalEntry.delete("houses", 2));
+        assertEquals(1, journal.size());
+        journal.close();
+
+        // the snapshot was never written, so both the rotated and the new entries are replayed
+        Journal reopened = new Journal(journalFile, objectMapper);
+        List<Integer> ids = new ArrayList<>();
+        assertEquals(2, reopened.replay(entry -> ids.add(entry.getId())));
+        assertEquals(List.of(1, 2), ids);
+
+        // once the snapshot is written, neither the rotated nor the new entries are replayed
+        reopened.rotate();
+        reopened.finishCheckpoint();
+        assertEquals(0, reopened.replay(entry -> ids.add(entry.getId())));
+        reopened.close();
+    }
+}
@@ -0,0 +1,217 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.lenders.app.model.House;
+import com.lenders.app.model.Investment;
+import com.lenders.app.model.Lender;
+
+/**
+ * Tests for the DAOs backed by the EmbeddedStore
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class EmbeddedDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private String storeFile;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        storeFile = dir.resolve("lenders.mv.db").toString();
+    }
+
+    private House newHouse(String address) {
+        return new House(0, address, 14623, "Rochester", 1200, false,
+                LocalDate.of(2024, 6, 1), 150000, 70, 20000, 15000, "new roof",
+                LocalDate.of(2024, 9, 1), 1800, House.Condition.FAIR,
+                House.ExitStrategy.FIX_AND_RENT, House.Type.SINGLE_RESIDENTIAL, 9.5f);
+    }
+
+    @Test
+    public void testHousesSurviveReopen() throws IOException {
+        House kept;
+        House accepted;
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            kept = dao.createHouse(newHouse("1 Main St"));
+            House appl = dao.createHouseApplication(newHouse("2 Main St"));
+            accepted = dao.acceptApplication(appl.getId(), 7.5f);
+            assertNull(dao.acceptApplication(appl.getId(), 7.5f));
+        }
+
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            assertEquals("1 Main St", dao.getHouse(kept.getId()).getAddress());
+            assertEquals(7.5f, dao.getHouse(accepted.getId()).getInterest());
+            assertEquals(0, dao.getApplHouses().length);
+            assertNotEquals(accepted.getId(), dao.createHouse(newHouse("3 Main St")).getId());
+        }
+    }
+
+    @Test
+    public void testRangePagesFollowChangesAndReopen() throws IOException {
+        HouseQuery atLeastNine = new HouseQuery(null, null, null, null, null,
+                List.of(new HouseQuery.Range(HouseField.INTEREST, 9.0, null)));
+        HousePage topTwo = new HousePage(HouseField.INTEREST, true, null, null, 2);
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            float[] interests = {8.0f, 11.0f, 9.5f, 12.0f, 9.0f};
+            for (int i = 0; i < interests.length; i++) {
+                House h = newHouse((i + 1) + " Main St");
+                h.setInterest(interests[i]);
+                dao.createHouse(h);
+            }
+
+            House[] top = dao.searchHouses(atLeastNine, topTwo);
+            assertEquals(12.0f, top[0].getInterest());
+            assertEquals(11.0f, top[1].getInterest());
+            House[] next = dao.searchHouses(atLeastNine,
+                    new HousePage(HouseField.INTEREST, true, 11.0, top[1].getId(), 2));
+            assertEquals(9.5f, next[0].getInterest());
+            assertEquals(9.0f, next[1].getInterest());
+
+            top[0].setInterest(7.0f);
+            dao.updatehouse(top[0]);
+            dao.deleteHouse(top[1].getId());
+            assertEquals(2, dao.searchHouses(atLeastNine).length);
+            assertEquals(1, dao.searchHouses(new HouseQuery(null, null, null, null, null),
+                    new HousePage(null, false, null, top[0].getId(), 10)).length);
+        }
+
+        // the indexes are built again from the store
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            House[] top = dao.searchHouses(atLeastNine, topTwo);
+            assertEquals(9.5f, top[0].getInterest());
+            assertEquals(9.0f, top[1].getInterest());
+        }
+    }
+
+    @Test
+    public void testTextSearchFollowsChangesAndReopen() throws IOException {
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            House elm = dao.createHouse(newHouse("5 Elm St"));
+            House appl = dao.createHouseApplication(newHouse("7 Birch Rd"));
+            dao.createHouseApplication(newHouse("9 Birchwood Ln"));
+            assertEquals(1, dao.findHouses("elm roch", 10).length);
+            assertEquals(0, dao.findHouses("birch", 10).length);
+            assertEquals("7 Birch Rd", dao.findApplications("birch", 10)[0].getAddress());
+
+            dao.acceptApplication(appl.getId(), 10.0f);
+            assertEquals("7 Birch Rd", dao.findHouses("birch", 10)[0].getAddress());
+            assertEquals(1, dao.findApplications("birch", 10).length);
+
+            elm.setRehab_overview("granite counters");
+            dao.updatehouse(elm);
+            assertEquals(0, dao.findHouses("roof elm", 10).length);
+            dao.deleteHouse(elm.getId());
+            assertEquals(0, dao.findHouses("granite", 10).length);
+        }
+
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            assertEquals(1, dao.findHouses("rochester", 10).length);
+            assertEquals(1, dao.findApplications("birchwood", 10).length);
+        }
+    }
+
+    @Test
+    public void testCompletionsFollowChangesAndReopen() throws IOException {
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            dao.createHouse(newHouse("5 Elm St"));
+            House other = dao.createHouse(newHouse("7 Elm St"));
+            House appl = dao.createHouseApplication(newHouse("9 Elm St"));
+            assertEquals(new HouseAutocomplete.Suggestion("Rochester", 2), dao.completeCity("ro", 5)[0]);
+
+            dao.acceptApplication(appl.getId(), 10.0f);
+            other.setCity("Buffalo");
+            dao.updatehouse(other);
+            assertEquals(2, dao.completeCity("r", 5)[0].count());
+            assertEquals(1, dao.completeCity("b", 5).length);
+            dao.deleteHouse(other.getId());
+            assertEquals(0, dao.completeCity("buf", 5).length);
+        }
+
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedHouseDAO dao = new EmbeddedHouseDAO(store, objectMapper);
+            assertEquals(0, dao.completeCity("buf", 5).length);
+            assertEquals(1, dao.completeAddress("9 ELM", 5).length);
+        }
+    }
+
+    @Test
+    public void testInvestmentIndexes() throws IOException {
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedInvestmentDAO dao = new EmbeddedInvestmentDAO(store, objectMapper);
+            Investment a = dao.createInvestment(1, 10, "2024-06-01", 500f);
+            dao.createInvestment(2, 10, "2024-06-02", 250f);
+            dao.createInvestment(1, 11, "2024-06-03", 100f);
+
+            assertEquals(2, dao.getUserInvestments(1).size());
+            assertEquals(2, dao.getHouseInvestments(10).size());
+            assertNull(dao.getUserInvestments(3));
+
+            assertTrue(dao.removeInvestment(a.getId()));
+            assertFalse(dao.removeInvestment(a.getId()));
+            assertEquals(1, dao.getUserInvestments(1).size());
+            assertEquals(2, dao.getInvestments().length);
+        }
+    }
+
+    @Test
+    public void testLenderUpdatePassword() throws IOException {
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedLenderDAO dao = new EmbeddedLenderDAO(store, objectMapper);
+            Lender l = dao.createLender("old", "First", "Last", "000-00-0000",
+                    "lender@example.com", "555-0100", null, 1000);
+
+            assertNull(dao.updatePassword(l.getId(), "wrong", "new"));
+            assertNotNull(dao.updatePassword(l.getId(), "old", "new"));
+            assertEquals("new", dao.getLender(l.getId()).getPassword());
+        }
+    }
+
+    @Test
+    public void testOwnerPagesInIdOrder() throws IOException {
+        try (EmbeddedStore store = new EmbeddedStore(storeFile)) {
+            EmbeddedInvestmentDAO dao = new EmbeddedInvestmentDAO(store, objectMapper);
+            for (int id : new int[] {5, -3, 2, 9, -7}) {
+                dao.createInvestment(new Investment(id, 1, 10, "2024-06-01", 100f));
+            }
+            dao.createInvestment(new Investment(4, 2, 11, "2024-06-01", 100f));
+
+            List<Integer> ids = new ArrayList<>();
+            List<Investment> page = dao.getUserInvestmentsAfter(1, Integer.MIN_VALUE, 2);
+            while (!page.isEmpty()) {
+                assertTrue(page.size() <= 2);
+                page.forEach(i -> ids.add(i.getId()));
+                page = dao.getUserInvestmentsAfter(1, ids.get(ids.size() - 1), 2);
+            }
+            assertEquals(List.of(-7, -3, 2, 5, 9), ids);
+            assertEquals(List.of(4), dao.getHouseInvestmentsAfter(11, -1, 2).stream().map(Investment::getId).toList());
+            assertEquals(List.of(), dao.getHouseInvestmentsAfter(12, Integer.MIN_VALUE, 2));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.lenders.app.persistence;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.lenders.app.model.House;
+
+/**
+ * Measures the latency percentiles of address completions on a {@link HouseAutocomplete}
+ * while the counts keep changing. Not run as part of the test suite:
+ * <pre>
+ * mvn test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes com.lenders.app.persistence.HouseAutocompleteBenchmark
+ * </pre>
+ *
+ * @author Matthew Morrison
+ */
+public class HouseAutocompleteBenchmark {
+
+    private static final int HOUSES = 1_000_000;
+
+    private static final int QUERIES = 200_000;
+
+    private static final String[] STREETS = {"Main St", "Park Ave", "Lake Rd", "Elm St", "Maple Dr", "Oak Ln",
+        "Ridge Rd", "Monroe Ave", "East Ave", "Culver Rd", "Winton Rd", "Clinton Ave"};
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        IdMap<House> houses = new IdMap<>();
+        for (int id = 0; id < HOUSES; id++) {
+            houses.put(id, house(id, random));
+        }
+        HouseAutocomplete completions = new HouseAutocomplete();
+        long start = System.nanoTime();
+        completions.rebuild(houses, House::getAddress);
+        System.out.printf("built %,d addresses in %d ms%n", HOUSES, (System.nanoTime() - start) / 1_000_000);
+
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            long[] latencies = new long[QUERIES];
+            long updates = 0;
+            for (int q = 0; q < QUERIES; q++) {
+                if (q % 10 == 0) { // one change for every ten keystrokes
+                    long before = System.nanoTime();
+                    completions.put(random.nextInt(HOUSES), address(random));
+                    updates += System.nanoTime() - before;
+                }
+                String address = address(random);
+                String prefix = address.substring(0, 1 + random.nextInt(address.length()));
+                long before = System.nanoTime();
+                completions.complete(prefix, 5);
+                latencies[q] = System.nanoTime() - before;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("round %d: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, %.1f us/update%n", round,
+                    latencies[QUERIES / 2] / 1e3, latencies[QUERIES * 99 / 100] / 1e3,
+                    latencies[QUERIES * 999 / 1000] / 1e3, updates / 1e3 / (QUERIES / 10));
+        }
+    }
+
+    private static House house(int id, Random random) {
+        return new House(id, address(random), 14600, "Rochester", 1200, false, LocalDate.of(2024, 6, 1), 150000,
+                70, 20000, 15000, "", LocalDate.of(2024, 9, 1), 1800, House.Condition.FAIR,
+                House.ExitStrategy.FIX_AND_RENT, House.Type.SINGLE_RESIDENTIAL, 9.5f);
+    }
+
+    private static String address(Random random) {
+        return (1 + random.nextInt(9999)) + " " + STREETS[random.nextInt(STREETS.length)];
+    }
+}
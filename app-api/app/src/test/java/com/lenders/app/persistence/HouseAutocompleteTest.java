@@ -0,0 +1,89 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the HouseAutocomplete persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class HouseAutocompleteTest {
+
+    private static final String[] STREETS = {"Main St", "Maine Ave", "Mill Rd", "Elm St", "Elmwood Ave", "M"};
+
+    @Test
+    public void testCompletionsMatchFullScan() {
+        Random random = new Random(3);
+        HouseAutocomplete completions = new HouseAutocomplete();
+        Map<Integer, String> listed = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            int id = random.nextInt(400);
+            if (random.nextInt(3) == 0) {
+                completions.remove(id);
+                listed.remove(id);
+            } else {
+                // few distinct values, so counts pile up and ties happen
+                String text = random.nextInt(4) + " " + STREETS[random.nextInt(STREETS.length)];
+                completions.put(id, text);
+                listed.put(id, text);
+            }
+
+            String prefix = random.nextInt(6) + " " + STREETS[random.nextInt(STREETS.length)];
+            prefix = prefix.substring(0, random.nextInt(prefix.length() + 1)).toUpperCase(Locale.ROOT);
+            int limit = 1 + random.nextInt(HouseAutocomplete.MAX_SUGGESTIONS);
+            assertEquals(expected(listed, prefix, limit), Arrays.asList(completions.complete(prefix, limit)), prefix);
+        }
+    }
+
+    private List<HouseAutocomplete.Suggestion> expected(Map<Integer, String> listed, String prefix, int limit) {
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, String> texts = new HashMap<>();
+        for (String text : listed.values()) {
+            counts.merge(text.toLowerCase(Locale.ROOT), 1, Integer::sum);
+            texts.putIfAbsent(text.toLowerCase(Locale.ROOT), text);
+        }
+        List<HouseAutocomplete.Suggestion> matches = new ArrayList<>();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            if (count.getKey().startsWith(prefix.toLowerCase(Locale.ROOT))) {
+                matches.add(new HouseAutocomplete.Suggestion(texts.get(count.getKey()), count.getValue()));
+            }
+        }
+        matches.sort(Comparator.comparingInt(HouseAutocomplete.Suggestion::count).reversed()
+                .thenComparing(HouseAutocomplete.Suggestion::text));
+        return matches.subList(0, Math.min(limit, matches.size()));
+    }
+
+    @Test
+    public void testCaseAndSpacingAreIgnored() {
+        HouseAutocomplete completions = new HouseAutocomplete();
+        completions.put(1, "Rochester");
+        completions.put(2, " rochester  ");
+        completions.put(3, "Rome");
+        completions.put(4, null);
+        completions.put(5, "New   York");
+
+        HouseAutocomplete.Suggestion[] ro = completions.complete("  RO", 5);
+        assertEquals(new HouseAutocomplete.Suggestion("Rochester", 2), ro[0]);
+        assertEquals(new HouseAutocomplete.Suggestion("Rome", 1), ro[1]);
+        assertEquals(1, completions.complete("new y", 5).length);
+        assertEquals(0, completions.complete("x", 5).length);
+        assertEquals(3, completions.complete("", 5).length);
+
+        completions.remove(1);
+        completions.remove(2);
+        assertEquals(1, completions.complete("ro", 5).length);
+    }
+}
@@ -0,0 +1,349 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.lenders.app.model.ApplicationApproval;
+import com.lenders.app.model.House;
+
+/**
+ * Tests for the HouseFileDAO persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class HouseFileDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private String houseFile;
+
+    private String applFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        houseFile = dir.resolve("houses.json").toString();
+        applFile = dir.resolve("houseApplications.json").toString();
+        Files.writeString(Path.of(houseFile), "[]");
+        Files.writeString(Path.of(applFile), "[]");
+    }
+
+    private House newHouse(String address) {
+        return newHouse(0, address);
+    }
+
+    private House newHouse(int id, String address) {
+        return new House(id, address, 14623, "Rochester", 1200, false,
+                LocalDate.of(2024, 6, 1), 150000, 70, 20000, 15000, "new roof",
+                LocalDate.of(2024, 9, 1), 1800, House.Condition.FAIR,
+                House.ExitStrategy.FIX_AND_RENT, House.Type.SINGLE_RESIDENTIAL, 9.5f);
+    }
+
+    @Test
+    public void testJournalReplayRestoresChanges() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House kept = dao.createHouse(newHouse("1 Main St"));
+        House removed = dao.createHouse(newHouse("2 Main St"));
+        House appl = dao.createHouseApplication(newHouse("3 Main St"));
+        dao.deleteHouse(removed.getId());
+
+        // nothing but the journal has been written
+        assertEquals("[]", Files.readString(Path.of(houseFile)));
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertEquals("1 Main St", reopened.getHouse(kept.getId()).getAddress());
+        assertNull(reopened.getHouse(removed.getId()));
+        assertEquals("3 Main St", reopened.getAppl(appl.getId()).getAddress());
+    }
+
+    @Test
+    public void testCheckpointRewritesFilesAndTruncatesJournal() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 2, false, 0, null, null);
+        dao.createHouse(newHouse("1 Main St"));
+        dao.createHouseApplication(newHouse("2 Main St"));
+
+        assertEquals(0, new File(houseFile + ".journal").length());
+        assertEquals(1, objectMapper.readValue(new File(houseFile), House[].class).length);
+        assertEquals(1, objectMapper.readValue(new File(applFile), House[].class).length);
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 2, false, 0, null, null);
+        assertEquals(1, reopened.getHouses().length);
+        assertEquals(1, reopened.getApplHouses().length);
+    }
+
+    @Test
+    public void testAcceptApplicationMovesHouse() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House appl = dao.createHouseApplication(newHouse("1 Main St"));
+
+        House accepted = dao.acceptApplication(appl.getId(), 11.0f);
+
+        assertEquals(11.0f, accepted.getInterest());
+        assertNull(dao.getAppl(appl.getId()));
+        assertNull(dao.acceptApplication(appl.getId(), 11.0f));
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertEquals(0, reopened.getApplHouses().length);
+        assertEquals(11.0f, reopened.getHouse(accepted.getId()).getInterest());
+    }
+
+    @Test
+    public void testAcceptApplicationIsOneJournalEntry() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House appl = dao.createHouseApplication(newHouse("1 Main St"));
+        Path journal = Path.of(houseFile + ".journal");
+        String before = Files.readString(journal);
+
+        dao.acceptApplication(appl.getId(), 11.0f);
+
+        String written = Files.readString(journal).substring(before.length());
+        assertEquals(1, written.lines().count());
+
+        // a crash part way through the entry loses the whole acceptance, never only half of it
+        Files.writeString(journal, before + written.substring(0, written.length() / 2));
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertEquals(0, reopened.getHouses().length);
+        assertEquals("1 Main St", reopened.getAppl(appl.getId()).getAddress());
+    }
+
+    @Test
+    public void testAcceptApplicationsIsOneCommit() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House first = dao.createHouseApplication(newHouse("1 Main St"));
+        House second = dao.createHouseApplication(newHouse("2 Main St"));
+        House third = dao.createHouseApplication(newHouse("3 Main St"));
+        Path journal = Path.of(houseFile + ".journal");
+        long before = Files.readString(journal).lines().count();
+
+        House[] accepted = dao.acceptApplications(List.of(new ApplicationApproval(first.getId(), 8.0f),
+                new ApplicationApproval(99, 9.0f), new ApplicationApproval(third.getId(), 10.0f),
+                new ApplicationApproval(first.getId(), 11.0f)));
+
+        assertEquals(before + 1, Files.readString(journal).lines().count());
+        assertEquals(8.0f, accepted[0].getInterest());
+        assertNull(accepted[1]);
+        assertEquals(10.0f, accepted[2].getInterest());
+        assertNull(accepted[3]);
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertEquals(2, reopened.getHouses().length);
+        assertEquals("3 Main St", reopened.getHouse(accepted[2].getId()).getAddress());
+        assertEquals(1, reopened.getApplHouses().length);
+        assertNotNull(reopened.getAppl(second.getId()));
+    }
+
+    @Test
+    public void testTornEntryIsCutBeforeNextAppend() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House first = dao.createHouse(newHouse("1 Main St"));
+        Path journal = Path.of(houseFile + ".journal");
+        // a crash in the middle of an append
+        Files.writeString(journal, "{\"op\":\"DELETE\",\"coll", StandardOpenOption.APPEND);
+
+        HouseFileDAO afterCrash = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House second = afterCrash.createHouse(newHouse("2 Main St"));
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertNotNull(reopened.getHouse(first.getId()));
+        assertNotNull(reopened.getHouse(second.getId()));
+        assertFalse(Files.readString(journal).contains("\"coll{"));
+    }
+
+    @Test
+    public void testSearchFollowsChanges() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House first = dao.createHouse(newHouse("1 Main St"));
+        House second = dao.createHouse(newHouse("2 Main St"));
+        House appl = dao.createHouseApplication(newHouse("3 Main St"));
+        HouseQuery rochester = new HouseQuery("rochester", 14623, Set.of(House.Condition.FAIR), null, null);
+        assertEquals(2, dao.searchHouses(rochester).length);
+
+        second.setCity("Buffalo");
+        dao.updatehouse(second);
+        dao.acceptApplication(appl.getId(), 11.0f);
+        House[] matches = dao.searchHouses(rochester);
+        assertEquals(2, matches.length);
+        assertEquals(first.getId(), matches[0].getId());
+        assertEquals("3 Main St", matches[1].getAddress());
+
+        dao.deleteHouse(first.getId());
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertEquals(1, reopened.searchHouses(rochester).length);
+        assertEquals(1, reopened.searchHouses(new HouseQuery(" BUFFALO", null, null, null, null)).length);
+        assertEquals(0, reopened.searchHouses(new HouseQuery("Albany", null, null, null, null)).length);
+        assertEquals(2, reopened.searchHouses(new HouseQuery(null, null, null, null, null)).length);
+    }
+
+    @Test
+    public void testRangePagesFollowChanges() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        float[] interests = {8.0f, 11.0f, 9.5f, 12.0f, 9.0f};
+        for (int i = 0; i < interests.length; i++) {
+            House h = newHouse((i + 1) + " Main St");
+            h.setInterest(interests[i]);
+            dao.createHouse(h);
+        }
+        HouseQuery atLeastNine = new HouseQuery(null, null, null, null, null,
+                List.of(new HouseQuery.Range(HouseField.INTEREST, 9.0, null)));
+        HousePage topTwo = new HousePage(HouseField.INTEREST, true, null, null, 2);
+
+        House[] top = dao.searchHouses(atLeastNine, topTwo);
+        assertEquals(12.0f, top[0].getInterest());
+        assertEquals(11.0f, top[1].getInterest());
+        House[] next = dao.searchHouses(atLeastNine,
+                new HousePage(HouseField.INTEREST, true, 11.0, top[1].getId(), 2));
+        assertEquals(2, next.length);
+        assertEquals(9.5f, next[0].getInterest());
+        assertEquals(9.0f, next[1].getInterest());
+
+        top[0].setInterest(7.0f);
+        dao.updatehouse(top[0]);
+        dao.deleteHouse(top[1].getId());
+        House[] after = dao.searchHouses(atLeastNine, topTwo);
+        assertEquals(9.5f, after[0].getInterest());
+        assertEquals(9.0f, after[1].getInterest());
+        assertEquals(2, dao.searchHouses(atLeastNine).length);
+
+        House[] byId = dao.searchHouses(new HouseQuery(null, null, null, null, null),
+                new HousePage(null, false, null, top[0].getId(), 10));
+        assertEquals(1, byId.length);
+    }
+
+    @Test
+    public void testTextSearchFollowsChanges() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House elm = dao.createHouse(newHouse("5 Elm St"));
+        House appl = dao.createHouseApplication(newHouse("7 Birch Rd"));
+        dao.createHouseApplication(newHouse("9 Birchwood Ln"));
+        assertEquals(1, dao.findHouses("elm roch", 10).length);
+        assertEquals(0, dao.findHouses("birch", 10).length);
+        assertEquals(2, dao.findApplications("birch", 10).length);
+        assertEquals("7 Birch Rd", dao.findApplications("birch", 10)[0].getAddress());
+
+        dao.acceptApplication(appl.getId(), 10.0f);
+        assertEquals("7 Birch Rd", dao.findHouses("birch", 10)[0].getAddress());
+        assertEquals("9 Birchwood Ln", dao.findApplications("birch", 10)[0].getAddress());
+        assertEquals(1, dao.findApplications("birch", 10).length);
+
+        elm.setRehab_overview("granite counters");
+        dao.updatehouse(elm);
+        assertEquals(0, dao.findHouses("roof elm", 10).length);
+        assertEquals(1, dao.findHouses("granite", 10).length);
+        dao.deleteHouse(elm.getId());
+        assertEquals(0, dao.findHouses("granite", 10).length);
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertEquals(1, reopened.findHouses("rochester", 10).length);
+        assertEquals(1, reopened.findApplications("birchwood", 10).length);
+    }
+
+    @Test
+    public void testCompletionsFollowChanges() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        dao.createHouse(newHouse("5 Elm St"));
+        House other = dao.createHouse(newHouse("7 Elm St"));
+        House appl = dao.createHouseApplication(newHouse("9 Elm St"));
+        assertEquals(new HouseAutocomplete.Suggestion("Rochester", 2), dao.completeCity("ro", 5)[0]);
+        assertEquals(2, dao.completeAddress("5", 5).length + dao.completeAddress("7 elm", 5).length);
+
+        dao.acceptApplication(appl.getId(), 10.0f);
+        other.setCity("Buffalo");
+        dao.updatehouse(other);
+        assertEquals(2, dao.completeCity("r", 5)[0].count());
+        assertEquals(1, dao.completeCity("b", 5).length);
+
+        dao.deleteHouse(other.getId());
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertEquals(0, reopened.completeCity("buf", 5).length);
+        assertEquals(1, reopened.completeAddress("9 ELM", 5).length);
+    }
+
+    @Test
+    public void testSegmentedCheckpointKeepsReplayedChanges() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 3, true, 0, null, null);
+        House first = dao.createHouse(newHouse("1 Main St"));
+
+        // restart before a checkpoint, the replayed change must reach a segment at the next one
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 3, true, 0, null, null);
+        reopened.createHouse(newHouse("2 Main St"));
+        reopened.createHouseApplication(newHouse("3 Main St"));
+        assertEquals(0, new File(houseFile + ".journal").length());
+
+        HouseFileDAO afterCheckpoint = new HouseFileDAO(houseFile, applFile, objectMapper, true, 3, true, 0, null, null);
+        assertEquals("1 Main St", afterCheckpoint.getHouse(first.getId()).getAddress());
+        assertEquals(2, afterCheckpoint.getHouses().length);
+        assertEquals(1, afterCheckpoint.getApplHouses().length);
+    }
+
+    @Test
+    public void testApplicationsLoadOnFirstUse() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        House appl = dao.createHouseApplication(newHouse("1 Main St"));
+        dao.createHouse(newHouse("2 Main St"));
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 0, null, null);
+        assertNull(reopened.houseApplications.getIfLoaded());
+        assertEquals(1, reopened.getHouses().length);
+        assertNull(reopened.houseApplications.getIfLoaded());
+
+        assertEquals("1 Main St", reopened.getAppl(appl.getId()).getAddress());
+        assertNotNull(reopened.houseApplications.getIfLoaded());
+        // the id of the replayed application is not handed out again
+        assertNotEquals(appl.getId(), reopened.createHouseApplication(newHouse("3 Main St")).getId());
+    }
+
+    @Test
+    public void testIdleApplicationsAreReleasedAndReadBack() throws Exception {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 1000, false, 20, null, null);
+        House appl = dao.createHouseApplication(newHouse("1 Main St"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dao.houseApplications.getIfLoaded() != null && System.currentTimeMillis() < deadline) {
+            // getIfLoaded counts as a use, so wait past the idle time between checks
+            Thread.sleep(100);
+        }
+        assertNull(dao.houseApplications.getIfLoaded());
+
+        // read back from the file and the journal
+        assertEquals("1 Main St", dao.getAppl(appl.getId()).getAddress());
+        assertEquals(1, dao.getApplHouses().length);
+    }
+
+    @Test
+    public void testDamagedSegmentIsRecoveredFromJournal() throws IOException {
+        HouseFileDAO dao = new HouseFileDAO(houseFile, applFile, objectMapper, true, 2, true, 0, null, null);
+        House first = dao.createHouse(newHouse("1 Main St"));
+        dao.createHouse(newHouse("2 Main St"));
+        // the second checkpoint rewrites segment 0 and keeps its previous version
+        dao.updatehouse(newHouse(first.getId(), "10 Main St"));
+        House third = dao.createHouse(newHouse("3 Main St"));
+
+        // damage the segment without breaking its JSON, only the checksum notices
+        Path segment = Path.of(houseFile + ".segments", "0.json");
+        Files.writeString(segment, Files.readString(segment).replace("10 Main St", "99 Main St"));
+
+        HouseFileDAO reopened = new HouseFileDAO(houseFile, applFile, objectMapper, true, 2, true, 0, null, null);
+        assertEquals("10 Main St", reopened.getHouse(first.getId()).getAddress());
+        assertEquals("3 Main St", reopened.getHouse(third.getId()).getAddress());
+        assertEquals(3, reopened.getHouses().length);
+    }
+}
@@ -0,0 +1,66 @@
+package com.lenders.app.persistence;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.lenders.app.model.House;
+
+/**
+ * Measures the latency of combined enum filters on the {@link HouseIndex} bitmaps, and of a
+ * ranged top-K walk of a sorted index.
+ * Not run as part of the test suite:
+ * <pre>
+ * mvn test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes com.lenders.app.persistence.HouseIndexBenchmark
+ * </pre>
+ *
+ * @author Matthew Morrison
+ */
+public class HouseIndexBenchmark {
+
+    private static final int HOUSES = 2_000_000;
+
+    private static final int QUERIES = 1_000;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        IdMap<House> houses = new IdMap<>();
+        for (int id = 1; id <= HOUSES; id++) {
+            houses.put(id, new House(id, id + " Main St", 14600 + random.nextInt(100), "Rochester", 1200, false,
+                    LocalDate.of(2024, 6, 1), 100000 + random.nextInt(200000), 40 + random.nextInt(50), 20000, 15000,
+                    "", LocalDate.of(2024, 9, 1), 1800,
+                    House.Condition.values()[random.nextInt(House.Condition.values().length)],
+                    House.ExitStrategy.values()[random.nextInt(House.ExitStrategy.values().length)],
+                    House.Type.values()[random.nextInt(House.Type.values().length)], 5 + random.nextInt(100) / 10f));
+        }
+        HouseIndex index = new HouseIndex();
+        index.rebuild(houses);
+
+        HouseQuery query = new HouseQuery(null, null, Set.of(House.Condition.FAIR),
+                Set.of(House.ExitStrategy.FIX_AND_RENT), Set.of(House.Type.SINGLE_RESIDENTIAL));
+        HouseQuery ranged = new HouseQuery(null, null, Set.of(House.Condition.FAIR), null, null,
+                List.of(new HouseQuery.Range(HouseField.INTEREST, 9.0, null),
+                        new HouseQuery.Range(HouseField.LTV_PERCENT, null, 70.0)));
+        HousePage topTen = new HousePage(HouseField.INTEREST, true, null, null, 10);
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            long start = System.nanoTime();
+            int matches = 0;
+            for (int q = 0; q < QUERIES; q++) {
+                matches = index.search(query).length;
+            }
+            long searched = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                matches = index.count(query);
+            }
+            long counted = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                index.search(ranged, topTen);
+            }
+            System.out.printf("round %d: %,d matches of %,d houses, %.3f ms/search, %.3f ms/count, %.3f ms/top-10%n",
+                    round, matches, HOUSES, (searched - start) / 1e6 / QUERIES, (counted - searched) / 1e6 / QUERIES,
+                    (System.nanoTime() - counted) / 1e6 / QUERIES);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.lenders.app.model.House;
+
+/**
+ * Tests for the HouseIndex persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class HouseIndexTest {
+
+    private static final String[] CITIES = {"Rochester", "Buffalo", " rochester ", "Albany", null};
+
+    private House randomHouse(int id, Random random) {
+        // few distinct values, so ranges and orders have ties
+        return new House(id, id + " Main St", 14600 + random.nextInt(4), CITIES[random.nextInt(CITIES.length)],
+                1200, false, random.nextInt(10) == 0 ? null : LocalDate.of(2024, 6, 1 + random.nextInt(5)),
+                100000 + 25000 * random.nextInt(8), 50 + 5 * random.nextInt(7), 20000, 15000, "new roof",
+                LocalDate.of(2024, 9, 1), 1000 + 100 * random.nextInt(10),
+                House.Condition.values()[random.nextInt(House.Condition.values().length)],
+                House.ExitStrategy.values()[random.nextInt(House.ExitStrategy.values().length)],
+                House.Type.values()[random.nextInt(House.Type.values().length)], 7 + 0.5f * random.nextInt(8));
+    }
+
+    private List<HouseQuery.Range> someRanges(Random random, Collection<House> houses) {
+        List<HouseQuery.Range> ranges = new ArrayList<>();
+        List<House> sample = new ArrayList<>(houses);
+        while (random.nextInt(3) != 0) {
+            HouseField field = HouseField.values()[random.nextInt(HouseField.values().length)];
+            double a = field.value(sample.get(random.nextInt(sample.size())));
+            double b = field.value(sample.get(random.nextInt(sample.size())));
+            ranges.add(new HouseQuery.Range(field, random.nextInt(3) == 0 || Double.isNaN(a) ? null : a,
+                    random.nextInt(3) == 0 || Double.isNaN(b) ? null : b));
+        }
+        return ranges;
+    }
+
+    private <T> T maybe(Random random, T[] values) {
+        return random.nextBoolean() ? null : values[random.nextInt(values.length)];
+    }
+
+    private <T> Set<T> someOf(Random random, T[] values) {
+        Set<T> some = new HashSet<>();
+        for (T value : values) {
+            if (random.nextInt(3) == 0) {
+                some.add(value);
+            }
+        }
+        return random.nextInt(4) == 0 ? null : some;
+    }
+
+    @Test
+    public void testSearchMatchesFullScan() {
+        Random random = new Random(7);
+        IdMap<House> houses = new IdMap<>();
+        HouseIndex index = new HouseIndex();
+        for (int id = 1; id <= 500; id++) {
+            houses.put(id, randomHouse(id, random));
+        }
+        index.rebuild(houses);
+
+        for (int i = 0; i < 1000; i++) {
+            // a few ids that do not fit the bitmaps
+            int id = random.nextInt(50) == 0 ? -random.nextInt(5) - 1
+                    : random.nextInt(50) == 0 ? Integer.MAX_VALUE - random.nextInt(5) : 1 + random.nextInt(600);
+            if (random.nextInt(4) == 0) {
+                houses.remove(id);
+                index.remove(id);
+            } else {
+                House h = randomHouse(id, random);
+                houses.put(id, h);
+                index.put(h);
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            HouseQuery query = new HouseQuery(random.nextInt(3) == 0 ? maybe(random, CITIES) : null,
+                    random.nextInt(3) == 0 ? maybe(random, new Integer[] {14600, 14601, 14699}) : null,
+                    someOf(random, House.Condition.values()), someOf(random, House.ExitStrategy.values()),
+                    someOf(random, House.Type.values()));
+            if (query.isEmpty()) {
+                continue;
+            }
+            List<Integer> expected = new ArrayList<>();
+            for (House h : houses) {
+                if (query.matches(h)) {
+                    expected.add(h.getId());
+                }
+            }
+            assertEquals(expected, Arrays.stream(index.search(query)).boxed().toList(), query.toString());
+            assertEquals(expected.size(), index.count(query));
+        }
+    }
+
+    @Test
+    public void testPagesMatchSortedScan() {
+        Random random = new Random(11);
+        IdMap<House> houses = new IdMap<>();
+        HouseIndex index = new HouseIndex();
+        for (int id = 1; id <= 400; id++) {
+            houses.put(id, randomHouse(id, random));
+        }
+        index.rebuild(houses);
+        for (int i = 0; i < 600; i++) {
+            int id = random.nextInt(50) == 0 ? -random.nextInt(5) - 1
+                    : random.nextInt(50) == 0 ? Integer.MAX_VALUE - random.nextInt(5) : 1 + random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                houses.remove(id);
+                index.remove(id);
+            } else {
+                House h = randomHouse(id, random);
+                houses.put(id, h);
+                index.put(h);
+            }
+        }
+        List<House> all = new ArrayList<>();
+        houses.forEach(all::add);
+
+        for (int i = 0; i < 500; i++) {
+            HouseQuery query = new HouseQuery(random.nextInt(4) == 0 ? maybe(random, CITIES) : null,
+                    random.nextInt(6) == 0 ? maybe(random, new Integer[] {14600, 14601, 14699}) : null,
+                    someOf(random, House.Condition.values()), someOf(random, House.ExitStrategy.values()),
+                    someOf(random, House.Type.values()), someRanges(random, all));
+            HouseField orderBy = random.nextInt(4) == 0 ? null
+                    : HouseField.values()[random.nextInt(HouseField.values().length)];
+            boolean descending = random.nextBoolean();
+            int limit = 1 + random.nextInt(40);
+            House[] matches = all.stream().filter(query::matches).toArray(House[]::new);
+            List<Integer> expected = Arrays.stream(new HousePage(orderBy, descending, null, null, Integer.MAX_VALUE)
+                    .select(matches)).map(House::getId).toList();
+
+            // follow the cursors page by page
+            List<Integer> paged = new ArrayList<>();
+            HousePage page = new HousePage(orderBy, descending, null, null, limit);
+            while (true) {
+                int[] ids = index.search(query, page);
+                assertEquals(Arrays.stream(page.select(matches)).map(House::getId).toList(),
+                        Arrays.stream(ids).boxed().toList(), query + " " + page);
+                Arrays.stream(ids).forEach(paged::add);
+                if (ids.length < limit) {
+                    break;
+                }
+                House last = houses.get(ids[ids.length - 1]);
+                page = new HousePage(orderBy, descending, orderBy == null ? null : orderBy.value(last),
+                        last.getId(), limit);
+            }
+            assertEquals(expected, paged, query.toString());
+        }
+    }
+
+    @Test
+    public void testHouseChangedInPlaceIsReindexed() {
+        HouseIndex index = new HouseIndex();
+        House h = randomHouse(1, new Random(1));
+        h.setCity("Buffalo");
+        index.put(h);
+
+        h.setCity("Albany");
+        index.put(h);
+
+        assertArrayEquals(new int[0], index.search(new HouseQuery("Buffalo", null, null, null, null)));
+        assertArrayEquals(new int[] {1}, index.search(new HouseQuery("ALBANY", null, null, null, null)));
+
+        h.setInterest(12.0f);
+        index.put(h);
+        HouseQuery highInterest = new HouseQuery(null, null, null, null, null,
+                List.of(new HouseQuery.Range(HouseField.INTEREST, 10.0, null)));
+        assertArrayEquals(new int[] {1}, index.search(highInterest));
+        h.setInterest(9.0f);
+        index.put(h);
+        assertArrayEquals(new int[0], index.search(highInterest));
+    }
+}
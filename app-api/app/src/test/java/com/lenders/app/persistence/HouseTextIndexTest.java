@@ -0,0 +1,94 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Tag;
+
+import com.lenders.app.model.House;
+
+/**
+ * Tests for the HouseTextIndex persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class HouseTextIndexTest {
+
+    private House house(int id, String address, String city, String overview) {
+        return new House(id, address, 14623, city, 1200, false, LocalDate.of(2024, 6, 1), 150000, 70, 20000,
+                15000, overview, LocalDate.of(2024, 9, 1), 1800, House.Condition.FAIR,
+                House.ExitStrategy.FIX_AND_RENT, House.Type.SINGLE_RESIDENTIAL, 9.5f);
+    }
+
+    @Test
+    public void testTermsAreFoldedAndSplit() {
+        assertEquals(List.of("12", "rue", "de", "l", "eglise", "montreal"),
+                HouseTextIndex.terms("12 Rue de l'Église, MONTRÉAL"));
+        assertEquals(List.of(), HouseTextIndex.terms(" -- "));
+        assertEquals(List.of(), HouseTextIndex.terms(null));
+    }
+
+    @Test
+    public void testEveryTermMustMatchAsPrefix() {
+        HouseTextIndex index = new HouseTextIndex();
+        index.put(house(1, "10 Main St", "Rochester", "new roof"));
+        index.put(house(2, "22 Maine Ave", "Buffalo", "kitchen"));
+        index.put(house(3, "5 Elm St", "Rochester", "roof and kitchen"));
+
+        assertArrayEquals(new int[] {1}, index.search("main roch", 10));
+        assertArrayEquals(new int[] {3}, index.search("KITCHEN roof", 10));
+        assertArrayEquals(new int[0], index.search("main albany", 10));
+        assertArrayEquals(new int[0], index.search("  ", 10));
+        assertArrayEquals(new int[] {1}, index.search("roof", 1)); // the shorter text ranks first
+    }
+
+    @Test
+    public void testRanking() {
+        HouseTextIndex index = new HouseTextIndex();
+        index.put(house(1, "1 Oak St", "Rochester", "oak floors"));
+        index.put(house(2, "2 Pine St", "Rochester", "oak floors"));
+        index.put(house(3, "3 Oakwood St", "Rochester", "new windows"));
+        index.put(house(4, "4 Oak St", "Rochester", "new windows"));
+
+        // the address weighs more than the overview, an exact term more than a longer one
+        assertArrayEquals(new int[] {1, 4, 2, 3}, index.search("oak", 10));
+        assertArrayEquals(new int[] {1, 4}, index.search("oak", 2));
+    }
+
+    @Test
+    public void testPrefixExpandsToTheMostFoundTerms() {
+        HouseTextIndex index = new HouseTextIndex();
+        for (int id = 1; id <= 70; id++) {
+            index.put(house(id, id + " Elm St", "Rochester", "bath" + (char) ('a' + id / 26) + (char) ('a' + id % 26)));
+        }
+        index.put(house(71, "71 Elm St", "Rochester", "bathzz"));
+        index.put(house(72, "72 Elm St", "Rochester", "bathzz"));
+
+        // bathzz sorts after the 70 terms found in one house each but is kept with 63 of them
+        List<Integer> ids = Arrays.stream(index.search("bath", 100)).boxed().toList();
+        assertEquals(65, ids.size());
+        assertTrue(ids.containsAll(List.of(71, 72)));
+        assertFalse(ids.contains(70));
+        assertArrayEquals(new int[] {70}, index.search("bathcs", 10)); // a longer prefix finds the rest
+    }
+
+    @Test
+    public void testChangesAreReindexed() {
+        HouseTextIndex index = new HouseTextIndex();
+        House h = house(1, "10 Main St", "Rochester", "new roof");
+        index.put(h);
+        h.setCity("Buffalo");
+        index.put(h);
+        assertArrayEquals(new int[0], index.search("rochester", 10));
+        assertArrayEquals(new int[] {1}, index.search("buffalo", 10));
+
+        index.remove(1);
+        assertArrayEquals(new int[0], index.search("buffalo", 10));
+        index.remove(1);
+    }
+}
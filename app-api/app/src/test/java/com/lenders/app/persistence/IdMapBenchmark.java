@@ -0,0 +1,89 @@
+package com.lenders.app.persistence;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Compares the memory footprint and lookup latency of {@link IdMap} against the
+ * {@link TreeMap} the FileDAOs used to cache records in. Not run as part of the test suite:
+ * <pre>
+ * mvn test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes com.lenders.app.persistence.IdMapBenchmark
+ * </pre>
+ *
+ * @author Matthew Morrison
+ */
+public class IdMapBenchmark {
+
+    private static final int RECORDS = 1_000_000;
+
+    private static final int LOOKUPS = 10_000_000;
+
+    public static void main(String[] args) {
+        Object record = new Object(); // shared value, only the map structure is measured
+        int[] keys = new int[LOOKUPS];
+        Random random = new Random(1);
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = random.nextInt(RECORDS);
+        }
+
+        long before = usedMemory();
+        TreeMap<Integer, Object> treeMap = new TreeMap<>();
+        for (int id = 0; id < RECORDS; id++) {
+            treeMap.put(id, record);
+        }
+        long treeMapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        IdMap<Object> idMap = new IdMap<>();
+        for (int id = 0; id < RECORDS; id++) {
+            idMap.put(id, record);
+        }
+        long idMapBytes = usedMemory() - before;
+
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            System.out.printf("round %d: TreeMap %.1f ns/lookup, IdMap %.1f ns/lookup%n", round,
+                    timeTreeMap(treeMap, keys), timeIdMap(idMap, keys));
+        }
+        System.out.printf("memory for %,d records: TreeMap %,d bytes, IdMap %,d bytes%n",
+                RECORDS, treeMapBytes, idMapBytes);
+    }
+
+    private static double timeTreeMap(Map<Integer, Object> map, int[] keys) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (int key : keys) {
+            if (map.get(key) != null) {
+                hits++;
+            }
+        }
+        return check(hits, System.nanoTime() - start, keys.length);
+    }
+
+    private static double timeIdMap(IdMap<Object> map, int[] keys) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (int key : keys) {
+            if (map.get(key) != null) {
+                hits++;
+            }
+        }
+        return check(hits, System.nanoTime() - start, keys.length);
+    }
+
+    private static double check(int hits, long nanos, int lookups) {
+        if (hits != lookups) {
+            throw new IllegalStateException("missed lookups");
+        }
+        return (double) nanos / lookups;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the IdMap persistence collection
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class IdMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        IdMap<String> map = new IdMap<>();
+        assertNull(map.put(3, "three"));
+        assertEquals("three", map.put(3, "THREE"));
+        assertEquals("THREE", map.get(3));
+        assertTrue(map.containsKey(3));
+        assertEquals(1, map.size());
+
+        assertEquals("THREE", map.remove(3));
+        assertNull(map.get(3));
+        assertNull(map.remove(3));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testSparseIdsKeepIdOrder() {
+        IdMap<Integer> map = new IdMap<>();
+        int[] ids = {5, -7, Integer.MAX_VALUE, 0, 2_000_000, 17, -1};
+        for (int id : ids) {
+            map.put(id, id);
+        }
+
+        List<Integer> values = new ArrayList<>();
+        map.forEachEntry((id, v) -> values.add(v));
+        assertEquals(List.of(-7, -1, 0, 5, 17, 2_000_000, Integer.MAX_VALUE), values);
+        assertEquals(Integer.MAX_VALUE, map.maxKey());
+        assertArrayEquals(values.toArray(new Integer[0]), map.toArray(Integer[]::new));
+    }
+
+    @Test
+    public void testSnapshotIsSharedUntilChanged() {
+        IdMap<String> map = new IdMap<>();
+        map.put(1, "one");
+        String[] first = map.snapshot(String[]::new);
+        assertSame(first, map.snapshot(String[]::new));
+
+        map.put(2, "two");
+        String[] second = map.snapshot(String[]::new);
+        assertNotSame(first, second);
+        assertArrayEquals(new String[] {"one", "two"}, second);
+
+        map.remove(1);
+        assertArrayEquals(new String[] {"two"}, map.snapshot(String[]::new));
+    }
+
+    @Test
+    public void testMaxKeyOfEmptyMap() {
+        assertEquals(-1, new IdMap<String>().maxKey());
+    }
+
+    @Test
+    public void testMatchesTreeMap() {
+        IdMap<Integer> map = new IdMap<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(10) == 0 ? random.nextInt() : random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), map.remove(id));
+            } else {
+                assertEquals(expected.put(id, i), map.put(id, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        List<Integer> values = new ArrayList<>();
+        for (Integer v : map) {
+            values.add(v);
+        }
+        assertEquals(new ArrayList<>(expected.values()), values);
+    }
+
+    @Test
+    public void testValuesAfterPagesInIdOrder() {
+        IdMap<Integer> map = new IdMap<>();
+        int[] ids = {5, -7, Integer.MAX_VALUE, 0, 2_000_000, 17, -1, 3};
+        for (int id : ids) {
+            map.put(id, id);
+        }
+
+        List<Integer> paged = new ArrayList<>();
+        List<Integer> page = map.valuesAfter(Integer.MIN_VALUE, 3);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 3);
+            paged.addAll(page);
+            page = map.valuesAfter(page.get(page.size() - 1), 3);
+        }
+        assertEquals(List.of(-7, -1, 0, 3, 5, 17, 2_000_000, Integer.MAX_VALUE), paged);
+        assertEquals(List.of(17, 2_000_000), map.valuesAfter(5, 2));
+        assertTrue(map.valuesAfter(Integer.MAX_VALUE, 10).isEmpty());
+    }
+}
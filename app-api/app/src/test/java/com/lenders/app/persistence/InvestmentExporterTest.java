@@ -0,0 +1,79 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.lenders.app.model.Investment;
+
+/**
+ * Tests for the InvestmentExporter persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class InvestmentExporterTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private InvestmentExporter exporter;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        String investmentFile = dir.resolve("allInvestments.json").toString();
+        Files.writeString(Path.of(investmentFile), "{}");
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, false, false, false, 1000, null, null);
+        dao.createInvestment(1, 10, "2024-05-31", 100f);
+        dao.createInvestment(2, 10, "2024-06-01", 200f);
+        dao.createInvestment(1, 11, "2024-06-15", 300f);
+        dao.createInvestment(1, 10, null, 400f);
+        dao.createInvestment(2, 11, "2024-07-01", 500f);
+        exporter = new InvestmentExporter(dao, objectMapper, 2);
+    }
+
+    private List<Float> export(InvestmentExporter.Filter filter) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = exporter.export(filter, out);
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(count == 0 ? ndjson.isEmpty() : ndjson.endsWith("\n"));
+
+        List<Float> amounts = ndjson.lines().map(line -> {
+            try {
+                return objectMapper.readValue(line, Investment.class).getMoneyInvested();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }).toList();
+        assertEquals(count, amounts.size());
+        return amounts;
+    }
+
+    @Test
+    public void testExportPagesThroughWholeLedger() throws IOException {
+        assertEquals(List.of(100f, 200f, 300f, 400f, 500f), export(new InvestmentExporter.Filter(null, null, null, null)));
+    }
+
+    @Test
+    public void testExportFilters() throws IOException {
+        assertEquals(List.of(100f, 300f, 400f), export(new InvestmentExporter.Filter(1, null, null, null)));
+        assertEquals(List.of(300f), export(new InvestmentExporter.Filter(1, 11, null, null)));
+        assertEquals(List.of(200f, 300f), export(new InvestmentExporter.Filter(null, null, "2024-06-01", "2024-06-30")));
+        assertEquals(List.of(), export(new InvestmentExporter.Filter(3, null, null, null)));
+    }
+}
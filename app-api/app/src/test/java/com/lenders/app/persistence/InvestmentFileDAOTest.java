@@ -0,0 +1,156 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Investment;
+
+/**
+ * Tests for the InvestmentFileDAO persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class InvestmentFileDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private String investmentFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        investmentFile = dir.resolve("allInvestments.json").toString();
+        Files.writeString(Path.of(investmentFile), "{}");
+    }
+
+    @Test
+    public void testStreamingLoadBuildsIndexes() throws IOException {
+        Files.writeString(Path.of(investmentFile), """
+                {"4":{"id":4,"user_id":1,"house_id":7,"date":"2024-06-01","money_invested":500.0},
+                 "9":{"id":9,"user_id":2,"house_id":7,"date":"2024-06-01","money_invested":250.0},
+                 "12":{"id":12,"user_id":1,"house_id":8,"date":null,"money_invested":100.0}}
+                """);
+
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, false, false, false, 1000, null, null);
+        assertEquals(3, dao.getInvestments().length);
+        assertEquals(2, dao.getUserInvestments(1).size());
+        assertEquals(2, dao.getHouseInvestments(7).size());
+        assertSame(dao.getInvestment(4).getDate(), dao.getInvestment(9).getDate());
+        assertEquals(13, dao.createInvestment(3, 9, "2024-07-01", 50f).getId());
+    }
+
+    @Test
+    public void testStreamingLoadOfEmptyFile() throws IOException {
+        Files.writeString(Path.of(investmentFile), "");
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, false, false, false, 1000, null, null);
+        assertEquals(0, dao.getInvestments().length);
+        assertNull(dao.getUserInvestments(1));
+    }
+
+    @Test
+    public void testBinarySnapshotServesReadsWithoutLoading() throws IOException {
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, true, false, false, 1000, null, null);
+        Investment first = dao.createInvestment(1, 10, "2024-06-01", 500f);
+        Investment second = dao.createInvestment(2, 10, "2024-06-01", 750f);
+        dao.createInvestment(1, 11, null, 250f);
+        assertTrue(new File(investmentFile + ".bin").isFile());
+
+        InvestmentFileDAO reopened = new InvestmentFileDAO(investmentFile, objectMapper, true, false, false, 1000, null, null);
+        assertNotNull(reopened.mapped);
+        Investment read = reopened.getInvestment(second.getId());
+        assertEquals(2, read.getUserId());
+        assertEquals(10, read.getHouseId());
+        assertEquals("2024-06-01", read.getDate());
+        assertEquals(750f, read.getMoneyInvested());
+        assertNull(reopened.getInvestment(99));
+        assertNotNull(reopened.mapped);
+
+        // listing the ledger materializes it, and new ids continue after the snapshot
+        assertEquals(2, reopened.getUserInvestments(1).size());
+        assertNull(reopened.mapped);
+        assertNull(reopened.getInvestment(3).getDate());
+        assertEquals(first.getId() + 3, reopened.createInvestment(3, 12, "2024-07-01", 100f).getId());
+    }
+
+    @Test
+    public void testOutOfDateSnapshotIsIgnored() throws IOException {
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, true, false, false, 1000, null, null);
+        dao.createInvestment(1, 10, "2024-06-01", 500f);
+
+        // the JSON file changes behind the snapshot's back
+        InvestmentFileDAO plain = new InvestmentFileDAO(investmentFile, objectMapper, false, false, false, 1000, null, null);
+        plain.createInvestment(2, 20, "2024-06-02", 600f);
+
+        InvestmentFileDAO reopened = new InvestmentFileDAO(investmentFile, objectMapper, true, false, false, 1000, null, null);
+        assertNull(reopened.mapped);
+        assertEquals(2, reopened.getInvestments().length);
+    }
+
+    @Test
+    public void testJournalReplayRestoresLedgerAndIndexes() throws IOException {
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, false, false, true, 1000, null, null);
+        Investment kept = dao.createInvestment(1, 10, "2024-06-01", 500f);
+        Investment removed = dao.createInvestment(1, 11, "2024-06-02", 250f);
+        dao.removeInvestment(removed.getId());
+
+        // nothing but the journal has been written
+        assertEquals("{}", Files.readString(Path.of(investmentFile)));
+
+        InvestmentFileDAO reopened = new InvestmentFileDAO(investmentFile, objectMapper, false, false, true, 1000, null, null);
+        assertEquals(500f, reopened.getInvestment(kept.getId()).getMoneyInvested());
+        assertNull(reopened.getInvestment(removed.getId()));
+        assertEquals(1, reopened.getUserInvestments(1).size());
+        assertTrue(reopened.getHouseInvestments(11) == null || reopened.getHouseInvestments(11).isEmpty());
+        assertTrue(reopened.createInvestment(2, 10, null, 50f).getId() > removed.getId());
+    }
+
+    @Test
+    public void testJournalCheckpointRewritesLedger() throws IOException {
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, true, false, true, 2, null, null);
+        dao.createInvestment(1, 10, "2024-06-01", 500f);
+        dao.createInvestment(2, 10, "2024-06-01", 750f);
+
+        assertEquals(0, new File(investmentFile + ".journal").length());
+        assertTrue(new File(investmentFile + ".bin").isFile());
+
+        InvestmentFileDAO reopened = new InvestmentFileDAO(investmentFile, objectMapper, true, false, true, 2, null, null);
+        assertNotNull(reopened.mapped);
+        assertEquals(2, reopened.getInvestments().length);
+    }
+
+    @Test
+    public void testOwnerPagesInIdOrder() throws IOException {
+        InvestmentFileDAO dao = new InvestmentFileDAO(investmentFile, objectMapper, false, false, false, 1000, null, null);
+        for (int id : new int[] {5, -3, 2, 9, -7}) {
+            dao.createInvestment(new Investment(id, 1, 10, "2024-06-01", 100f));
+        }
+        dao.createInvestment(new Investment(4, 2, 11, "2024-06-01", 100f));
+
+        List<Integer> ids = new ArrayList<>();
+        List<Investment> page = dao.getUserInvestmentsAfter(1, Integer.MIN_VALUE, 2);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            page.forEach(i -> ids.add(i.getId()));
+            page = dao.getUserInvestmentsAfter(1, ids.get(ids.size() - 1), 2);
+        }
+        assertEquals(List.of(-7, -3, 2, 5, 9), ids);
+        assertEquals(List.of(4), dao.getHouseInvestmentsAfter(11, -1, 2).stream().map(Investment::getId).toList());
+        assertEquals(List.of(), dao.getHouseInvestmentsAfter(12, Integer.MIN_VALUE, 2));
+    }
+}
@@ -0,0 +1,108 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.lenders.app.model.House;
+
+/**
+ * Tests for the InvestmentImporter persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class InvestmentImporterTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private InvestmentFileDAO investmentDAO;
+
+    private InvestmentImporter importer;
+
+    private int houseId;
+
+    private int lenderId;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        for (String file : new String[] {"houses.json", "houseApplications.json", "lenders.json", "buyers.json"}) {
+            Files.writeString(dir.resolve(file), "[]");
+        }
+        Files.writeString(dir.resolve("allInvestments.json"), "{}");
+
+        HouseFileDAO houseDAO = new HouseFileDAO(dir.resolve("houses.json").toString(),
+                dir.resolve("houseApplications.json").toString(), objectMapper, true, 1000, false, 0, null, null);
+        LenderFileDAO lenderDAO = new LenderFileDAO(dir.resolve("lenders.json").toString(), objectMapper,
+                false, 5, false, null);
+        BuyerFileDAO buyerDAO = new BuyerFileDAO(dir.resolve("buyers.json").toString(), objectMapper,
+                false, 5, false, null);
+        investmentDAO = new InvestmentFileDAO(dir.resolve("allInvestments.json").toString(), objectMapper,
+                false, false, true, 1000, null, null);
+
+        houseId = houseDAO.createHouse(new House(0, "1 Main St", 14623, "Rochester", 1200, false,
+                LocalDate.of(2024, 6, 1), 150000, 70, 20000, 15000, "new roof",
+                LocalDate.of(2024, 9, 1), 1800, House.Condition.FAIR,
+                House.ExitStrategy.FIX_AND_RENT, House.Type.SINGLE_RESIDENTIAL, 9.5f)).getId();
+        lenderId = lenderDAO.createLender("pw", "Ada", "Lovelace", "123-45-6789", "ada@example.com",
+                "555-0100", null, 1000f).getId();
+        importer = new InvestmentImporter(investmentDAO, houseDAO, lenderDAO, buyerDAO, objectMapper, 2);
+    }
+
+    private String line(int userId, int houseId, float amount) {
+        return "{\"id\":0,\"user_id\":" + userId + ",\"house_id\":" + houseId
+                + ",\"date\":\"2024-06-01\",\"money_invested\":" + amount + "}\n";
+    }
+
+    @Test
+    public void testImportCommitsValidLinesInBatches() throws IOException {
+        String input = line(lenderId, houseId, 100f) + line(lenderId, houseId, 200f) + "\n"
+                + line(lenderId, houseId + 1, 300f) + "{not json\n" + line(lenderId + 1, houseId, 400f)
+                + line(lenderId, houseId, 0f) + line(lenderId, houseId, 500f);
+        Path journal = dir.resolve("allInvestments.json.journal");
+
+        InvestmentImporter.Result result = importer.importInvestments(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(8, result.lines());
+        assertEquals(3, result.imported());
+        assertEquals(4, result.rejected());
+        assertEquals(2, result.batches());
+        assertEquals(4, result.errors().size());
+        assertTrue(result.errors().get(0).startsWith("line 4: house"));
+        assertEquals(2, Files.readString(journal).lines().count());
+        assertEquals(3, investmentDAO.getUserInvestments(lenderId).size());
+    }
+
+    @Test
+    public void testNullAndNotANumberLinesAreRejected() throws IOException {
+        String input = "null\n" + line(lenderId, houseId, 100f).replace("100.0", "\"NaN\"")
+                + line(lenderId, houseId, 100f).replace("100.0", "\"Infinity\"") + line(lenderId, houseId, 100f);
+
+        InvestmentImporter.Result result = importer.importInvestments(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, result.imported());
+        assertEquals(3, result.rejected());
+        assertEquals("line 1: not an investment: null", result.errors().get(0));
+        assertEquals("line 2: money_invested must be a positive amount", result.errors().get(1));
+        assertEquals("line 3: money_invested must be a positive amount", result.errors().get(2));
+        assertEquals(1, investmentDAO.getUserInvestments(lenderId).size());
+    }
+}
@@ -0,0 +1,118 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Lender;
+
+/**
+ * Tests for the LenderFileDAO persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class LenderFileDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private String lenderFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        lenderFile = dir.resolve("lenders.json").toString();
+        Files.writeString(Path.of(lenderFile), "[]");
+    }
+
+    @Test
+    public void testGroupCommitPersistsConcurrentSignups() throws Exception {
+        LenderFileDAO dao = new LenderFileDAO(lenderFile, objectMapper, true, 5, false, null);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Lender>> created = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String email = "lender" + i + "@example.com";
+            created.add(pool.submit(() -> dao.createLender("pw", "First", "Last", "000-00-0000",
+                    email, "555-0100", null, 1000)));
+        }
+
+        // every create has returned, so every lender must already be on disk
+        for (Future<Lender> f : created) {
+            f.get();
+        }
+        pool.shutdown();
+
+        Lender[] onDisk = objectMapper.readValue(new File(lenderFile), Lender[].class);
+        assertEquals(50, onDisk.length);
+    }
+
+    @Test
+    public void testGroupCommitUpdatePassword() throws IOException {
+        LenderFileDAO dao = new LenderFileDAO(lenderFile, objectMapper, true, 5, false, null);
+        Lender l = dao.createLender("old", "First", "Last", "000-00-0000",
+                "lender@example.com", "555-0100", null, 1000);
+
+        assertNull(dao.updatePassword(l.getId(), "wrong", "new"));
+        assertNotNull(dao.updatePassword(l.getId(), "old", "new"));
+
+        LenderFileDAO reopened = new LenderFileDAO(lenderFile, objectMapper, false, 5, false, null);
+        assertEquals("new", reopened.getLender(l.getId()).getPassword());
+    }
+
+    @Test
+    public void testSegmentedSaveRewritesOnlyChangedSegment() throws IOException {
+        LenderFileDAO dao = new LenderFileDAO(lenderFile, objectMapper, false, 5, true, null);
+        dao.createLender(new Lender(1, "old", "First", "Last", "000-00-0000",
+                "one@example.com", "555-0100", null, 1000));
+        dao.createLender(new Lender(5000, "pw", "First", "Last", "000-00-0000",
+                "two@example.com", "555-0100", null, 1000));
+
+        File untouched = new File(lenderFile + ".segments", "4.json");
+        assertTrue(untouched.setLastModified(1_000_000_000_000L));
+        assertNotNull(dao.updatePassword(1, "old", "new"));
+        assertEquals(1_000_000_000_000L, untouched.lastModified());
+
+        LenderFileDAO reopened = new LenderFileDAO(lenderFile, objectMapper, false, 5, true, null);
+        assertEquals("new", reopened.getLender(1).getPassword());
+        assertEquals(2, reopened.getAllLenders().length);
+    }
+
+    @Test
+    public void testFailedSegmentWriteIsMadeUpByTheNextSave() throws IOException {
+        LenderFileDAO dao = new LenderFileDAO(lenderFile, objectMapper, false, 5, true, null);
+        dao.createLender(new Lender(1, "old", "First", "Last", "000-00-0000",
+                "one@example.com", "555-0100", null, 1000));
+        dao.createLender(new Lender(5000, "pw", "First", "Last", "000-00-0000",
+                "two@example.com", "555-0100", null, 1000));
+
+        // a directory in the way of the temporary file fails the write of segment 0
+        Path obstacle = Path.of(lenderFile + ".segments", "0.json.tmp");
+        Files.createDirectories(obstacle.resolve("in-the-way"));
+        assertThrows(IOException.class, () -> dao.updatePassword(1, "old", "new"));
+        Files.delete(obstacle.resolve("in-the-way"));
+        Files.delete(obstacle);
+
+        // a change to another segment also writes the one that failed
+        assertNotNull(dao.updatePassword(5000, "pw", "new"));
+        LenderFileDAO reopened = new LenderFileDAO(lenderFile, objectMapper, false, 5, true, null);
+        assertEquals("new", reopened.getLender(1).getPassword());
+        assertEquals("new", reopened.getLender(5000).getPassword());
+    }
+}
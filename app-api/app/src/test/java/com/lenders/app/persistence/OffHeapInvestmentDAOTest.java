@@ -0,0 +1,120 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lenders.app.model.Investment;
+
+/**
+ * Tests for the OffHeapInvestmentDAO persistence class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class OffHeapInvestmentDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+
+    private String investmentFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        investmentFile = dir.resolve("allInvestments.json").toString();
+        Files.writeString(Path.of(investmentFile), "{}");
+    }
+
+    @Test
+    public void testCreateGetAndIndexes() throws IOException {
+        OffHeapInvestmentDAO dao = new OffHeapInvestmentDAO(investmentFile, objectMapper, 1000, null, null);
+        Investment a = dao.createInvestment(1, 10, "2024-06-01", 500f);
+        Investment b = dao.createInvestment(2, 10, "June 2nd", 250f);
+        Investment c = dao.createInvestment(1, 11, null, 100f);
+
+        assertEquals("2024-06-01", dao.getInvestment(a.getId()).getDate());
+        assertEquals("June 2nd", dao.getInvestment(b.getId()).getDate());
+        assertNull(dao.getInvestment(c.getId()).getDate());
+        assertEquals(250f, dao.getInvestment(b.getId()).getMoneyInvested());
+        assertEquals(2, dao.getUserInvestments(1).size());
+        assertEquals(2, dao.getHouseInvestments(10).size());
+        assertNull(dao.getUserInvestments(3));
+
+        assertTrue(dao.removeInvestment(a.getId()));
+        assertFalse(dao.removeInvestment(a.getId()));
+        assertNull(dao.getInvestment(a.getId()));
+        assertEquals(1, dao.getUserInvestments(1).size());
+        assertEquals(2, dao.getInvestments().length);
+    }
+
+    @Test
+    public void testJournalReplayAndCheckpoint() throws IOException {
+        OffHeapInvestmentDAO dao = new OffHeapInvestmentDAO(investmentFile, objectMapper, 3, null, null);
+        Investment a = dao.createInvestment(1, 10, "2024-06-01", 500f);
+        Investment b = dao.createInvestment(2, 10, "2024-06-02", 250f);
+
+        // only journaled so far
+        OffHeapInvestmentDAO reopened = new OffHeapInvestmentDAO(investmentFile, objectMapper, 3, null, null);
+        assertEquals(2, reopened.getInvestments().length);
+
+        dao.removeInvestment(a.getId());
+
+        // the checkpoint wrote a ledger the file DAO can read
+        InvestmentFileDAO fileDAO = new InvestmentFileDAO(investmentFile, objectMapper, false, false, false, 1000, null, null);
+        Investment[] onDisk = fileDAO.getInvestments();
+        assertEquals(1, onDisk.length);
+        assertEquals(b.getId(), onDisk[0].getId());
+    }
+
+    @Test
+    public void testSparseIdsAndCompaction() throws IOException {
+        OffHeapInvestmentDAO dao = new OffHeapInvestmentDAO(investmentFile, objectMapper, 10, null, null);
+        dao.createInvestment(new Investment(2_000_000_000, 5, 6, "2024-01-01", 1f));
+        for (int i = 0; i < 100; i++) {
+            dao.createInvestment(new Investment(i, i % 3, 7, "2024-01-01", i));
+        }
+        for (int i = 0; i < 90; i++) {
+            dao.removeInvestment(i);
+        }
+
+        Investment[] remaining = dao.getInvestments();
+        assertEquals(11, remaining.length);
+        assertEquals(90, remaining[0].getId());
+        assertEquals(2_000_000_000, remaining[10].getId());
+        assertEquals(10, dao.getHouseInvestments(7).size());
+        assertEquals(99f, dao.getInvestment(99).getMoneyInvested());
+    }
+
+    @Test
+    public void testOwnerPagesInIdOrder() throws IOException {
+        OffHeapInvestmentDAO dao = new OffHeapInvestmentDAO(investmentFile, objectMapper, 1000, null, null);
+        for (int id : new int[] {5, -3, 2, 9, -7}) {
+            dao.createInvestment(new Investment(id, 1, 10, "2024-06-01", 100f));
+        }
+        dao.createInvestment(new Investment(4, 2, 11, "2024-06-01", 100f));
+
+        List<Integer> ids = new ArrayList<>();
+        List<Investment> page = dao.getUserInvestmentsAfter(1, Integer.MIN_VALUE, 2);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            page.forEach(i -> ids.add(i.getId()));
+            page = dao.getUserInvestmentsAfter(1, ids.get(ids.size() - 1), 2);
+        }
+        assertEquals(List.of(-7, -3, 2, 5, 9), ids);
+        assertEquals(List.of(4), dao.getHouseInvestmentsAfter(11, -1, 2).stream().map(Investment::getId).toList());
+        assertEquals(List.of(), dao.getHouseInvestmentsAfter(12, Integer.MIN_VALUE, 2));
+    }
+}
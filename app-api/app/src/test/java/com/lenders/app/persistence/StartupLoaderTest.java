@@ -0,0 +1,72 @@
+package com.lenders.app.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the StartupLoader class
+ *
+ * @author Matthew Morrison
+ */
+@Tag("Persistence-tier")
+public class StartupLoaderTest {
+
+    @Test
+    void testLoadsRunInParallel() {
+        StartupLoader loader = new StartupLoader(2);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        StartupLoader.Loader waitForOther = () -> {
+            bothStarted.countDown();
+            try {
+                if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new IOException("loads did not overlap");
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        };
+
+        loader.load("first", waitForOther);
+        loader.load("second", waitForOther);
+
+        loader.afterSingletonsInstantiated();
+        assertEquals(0, bothStarted.getCount());
+    }
+
+    @Test
+    void testDependentLoadRunsAfterItsDependencies() {
+        StartupLoader loader = new StartupLoader(4);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> a = loader.load("a", () -> order.add("a"));
+        CompletableFuture<Void> b = loader.load("b", () -> order.add("b"));
+        loader.load("after", () -> order.add("after"), a, b);
+
+        loader.afterSingletonsInstantiated();
+        assertEquals(3, order.size());
+        assertEquals("after", order.get(2));
+    }
+
+    @Test
+    void testFailedLoadFailsStartup() {
+        StartupLoader loader = new StartupLoader(1);
+        loader.load("broken", () -> {
+            throw new IOException("corrupt file");
+        });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                loader::afterSingletonsInstantiated);
+        assertTrue(e.getCause().getMessage().contains("broken"));
+    }
+}